@@ -1,13 +1,21 @@
 package walmartlabs.productmatching.autorulegenerator.driver;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import walmartlabs.productmatching.autorulegenerator.model.Dataset;
 import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
 import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNode;
+import walmartlabs.productmatching.autorulegenerator.model.MatchingRule;
 import walmartlabs.productmatching.autorulegenerator.utils.DecisionTreeUtils;
 import walmartlabs.productmatching.autorulegenerator.utils.input.ItemPairDatasetReader;
+import walmartlabs.productmatching.autorulegenerator.utils.input.ScoredDatasetCache;
+import walmartlabs.productmatching.autorulegenerator.utils.match.MatchUtils;
+import walmartlabs.productmatching.autorulegenerator.utils.match.SimilarityScoreCache;
+import walmartlabs.productmatching.autorulegenerator.utils.tree.DecisionTreeLearningOptions;
+import walmartlabs.productmatching.autorulegenerator.utils.tree.TrainingStatistics;
 
 /**
  * Driver class that encapsulates the entire workflow for auto-generation of rules from a dataset.
@@ -30,7 +38,18 @@ public class RuleExtractionDriver {
 		String mismatchPairsFileName = args[1].trim();
 		File matchPairsFile = new File(matchPairsFileName);
 		File mismatchPairsFile = new File(mismatchPairsFileName);
-		Dataset trainDataset = ItemPairDatasetReader.parseDataset(matchPairsFile, mismatchPairsFile, "Restaurant Dataset");
+		
+		// Both files are parsed at once, in chunks, and the tree is learnt on the same pool
+		ForkJoinPool pool = new ForkJoinPool();
+		
+		// Attribute values repeat a lot across itempairs, so remember the scores already computed
+		SimilarityScoreCache scoreCache = new SimilarityScoreCache(1 << 20);
+		MatchUtils.setSimilarityScoreCache(scoreCache);
+		// Scored itempairs are cached next to the input files, and reused until either file changes
+		ScoredDatasetCache datasetCache = new ScoredDatasetCache(new File(matchPairsFileName + ".scored"));
+		Dataset trainDataset = ItemPairDatasetReader.parseDataset(matchPairsFile, mismatchPairsFile, "Restaurant Dataset", datasetCache, 
+				pool);
+		System.out.println("Score cache : " + scoreCache);
 		
 		// Step2: Build the decision tree from the training dataset
 		System.out.println("Generating the decision tree ..");
@@ -39,8 +58,18 @@ public class RuleExtractionDriver {
 		// to avoid overfitting.
 		int leafThreshold = (int)(1*trainDataset.getExamplePairs().size()/100);
 		System.out.println("Threshold is : " + leafThreshold);
-		DecisionTreeNode ruleDTree = 
-			DecisionTreeUtils.learnRuleDecisionTree(trainDataset.getExamplePairs(), trainDataset.getFeatures(), leafThreshold);
+		DecisionTreeLearningOptions learningOptions = new DecisionTreeLearningOptions(leafThreshold);
+		TrainingStatistics trainingStats = new TrainingStatistics();
+		learningOptions.setTrainingListener(trainingStats);
+		learningOptions.setForkJoinPool(pool);
+		DecisionTreeNode ruleDTree = null;
+		try {
+			ruleDTree = DecisionTreeUtils.learnRuleDecisionTree(trainDataset, learningOptions);
+		}
+		finally {
+			pool.shutdown();
+		}
+		System.out.println(trainingStats.getSummary());
 		
 		// Step3: Print the decision tree.
 		System.out.println("Printing the decision tree ..");
@@ -53,10 +82,8 @@ public class RuleExtractionDriver {
 		int totalMismatchedPairs = datasetStats.get(DecisionTreeClassLabel.MISMATCH); 
 		DecisionTreeUtils.generateMatchingRules(ruleDTree, "", totalMatchedPairs, totalMismatchedPairs);
 		
-		// TODO
-		/*
-		List<ItemMatchRule> matchingRules = DecisionTreeUtils.extractMatchingRules(ruleDTree);
-		*/
+		List<MatchingRule> matchingRules = DecisionTreeUtils.extractMatchingRules(ruleDTree);
+		System.out.println("Extracted " + matchingRules.size() + " matching rules");
 		
 		// Step5: Test the accuracy of rules on the test dataset.
 		// TODO
@@ -9,6 +9,10 @@ import com.google.common.collect.Maps;
 /**
  * Represents the dataset to be evaluated.
  * 
+ * The features of the dataset are the instances of its feature registry. A dataset made without
+ * a registry takes the one of the schema of its example pairs, and only gets a registry of its
+ * own if its example pairs have no schema.
+ * 
  * @author excelsior
  *
  */
@@ -16,14 +20,36 @@ public class Dataset {
 	private String name;
 	private List<Feature> features = Lists.newArrayList();
 	private List<ExamplePair> examplePairs = Lists.newArrayList();
+	private FeatureRegistry featureRegistry;
 	
 	public Dataset(String name, List<Feature> features, List<ExamplePair> examplePairs)
+	{
+		this(name, features, examplePairs, getFeatureRegistry(examplePairs));
+	}
+	
+	public Dataset(String name, List<Feature> features, List<ExamplePair> examplePairs, FeatureRegistry featureRegistry)
 	{
 		this.name = name;
-		this.features = Lists.newArrayList(features);
+		this.featureRegistry = featureRegistry;
+		setFeatures(features);
 		this.examplePairs = Lists.newArrayList(examplePairs);
 	}
 
+	/**
+	 * Registry of the schema of the first example pair that has one, or else a new registry.
+	 */
+	private static FeatureRegistry getFeatureRegistry(List<ExamplePair> examplePairs)
+	{
+		for(ExamplePair exPair : examplePairs) {
+			Example sourceEx = exPair.getSourceItem();
+			if(sourceEx != null && sourceEx.getSchema() != null) {
+				return sourceEx.getSchema().getFeatureRegistry();
+			}
+		}
+		
+		return new FeatureRegistry();
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
@@ -45,8 +71,19 @@ public class Dataset {
 		return features;
 	}
 	
+	/**
+	 * Sets the features of the dataset, as the instances of its registry.
+	 */
 	public void setFeatures(List<Feature> features) {
-		this.features = features;
+		List<Feature> canonicalFeatures = Lists.newArrayListWithCapacity(features.size());
+		for(Feature feature : features) {
+			canonicalFeatures.add(featureRegistry.getCanonicalFeature(feature));
+		}
+		this.features = canonicalFeatures;
+	}
+	
+	public FeatureRegistry getFeatureRegistry() {
+		return featureRegistry;
 	}
 	
 	public List<ExamplePair> getExamplePairs() {
@@ -12,6 +12,10 @@ import com.google.common.collect.Lists;
  * equivalent to a rule, a conjunction of all the features nodes in the path. Depending on the
  * final classification node on the path, it can either be a MATCH or MISMATCH rule.
  * 
+ * A learnt node does not hold a copy of its example pairs. It refers to a slice of the row
+ * indices shared by the whole tree, along with the class counts of the slice, and the example
+ * pairs are only looked up when asked for (e.g. for debugging).
+ * 
  * @author excelsior
  *
  */
@@ -20,10 +24,20 @@ public class DecisionTreeNode {
 	// What is the best feature selected at the current decision tree node ?
 	private Feature bestFeature = null;
 	
-	// What are the examples pairs that reached this node ?
+	// What are the examples pairs that reached this node ? They are the rows [fromRow, toRow) 
+	// of the shared row indices, or all the example pairs if there are no row indices.
 	private List<ExamplePair> examplePairs = Lists.newArrayList();
-	// What are the features that reached this node ?
+	private int[] rows = null;
+	private int fromRow = 0;
+	private int toRow = 0;
+	// How many of them are MATCH and MISMATCH pairs ?
+	private int matches = 0;
+	private int mismatches = 0;
+	
+	// What are the features that reached this node ? They are the given indices of the shared
+	// features, or all of them if there are no indices.
 	private List<Feature> features = Lists.newArrayList();
+	private int[] featureIndices = null;
 	
 	// Is this the final leaf/classification node or intermediate feature node ?
 	private DecisionTreeNodeType nodeType = DecisionTreeNodeType.FEATURE_NODE;
@@ -42,10 +56,27 @@ public class DecisionTreeNode {
 	
 	public DecisionTreeNode(List<ExamplePair> examplePairs, List<Feature> features)
 	{
-		this.examplePairs = examplePairs;
+		setExamples(examplePairs);
 		this.features = features;
 	}
 	
+	/**
+	 * Creates a node for the example pairs at rows [fromRow, toRow) of row indices shared with
+	 * the rest of the tree.
+	 */
+	public DecisionTreeNode(List<ExamplePair> allExamplePairs, int[] rows, int fromRow, int toRow, int matches, 
+			List<Feature> allFeatures, int[] featureIndices)
+	{
+		this.examplePairs = allExamplePairs;
+		this.rows = rows;
+		this.fromRow = fromRow;
+		this.toRow = toRow;
+		this.matches = matches;
+		this.mismatches = (toRow - fromRow) - matches;
+		this.features = allFeatures;
+		this.featureIndices = featureIndices;
+	}
+	
 	@Override
 	public String toString()
 	{
@@ -60,20 +91,84 @@ public class DecisionTreeNode {
 		this.bestFeature = bestFeature;
 	}
 
+	/**
+	 * Returns the example pairs that reached this node. For a learnt node, the list is built
+	 * afresh from the shared rows on every call.
+	 */
 	public List<ExamplePair> getExamples() {
-		return examplePairs;
+		if(rows == null) {
+			return examplePairs;
+		}
+		
+		List<ExamplePair> nodeExamplePairs = Lists.newArrayListWithCapacity(toRow - fromRow);
+		for(int pos = fromRow; pos < toRow; pos++) {
+			nodeExamplePairs.add(examplePairs.get(rows[pos]));
+		}
+		return nodeExamplePairs;
 	}
 
 	public void setExamples(List<ExamplePair> examplePairs) {
 		this.examplePairs = examplePairs;
+		this.rows = null;
+		this.fromRow = 0;
+		this.toRow = examplePairs == null ? 0 : examplePairs.size();
+		
+		matches = 0;
+		if(examplePairs != null) {
+			for(ExamplePair exPair : examplePairs) {
+				if(exPair.getClassLabel().equals(DecisionTreeClassLabel.MATCH)) {
+					++matches;
+				}
+			}
+		}
+		mismatches = (toRow - fromRow) - matches;
+	}
+	
+	/**
+	 * Sets the class counts of a node that does not keep its example pairs, e.g. one learnt
+	 * incrementally.
+	 */
+	public void setClassCounts(int matches, int mismatches) {
+		this.matches = matches;
+		this.mismatches = mismatches;
+	}
+
+	/**
+	 * Number of MATCH example pairs that reached this node.
+	 */
+	public int getMatches() {
+		return matches;
+	}
+	
+	/**
+	 * Number of MISMATCH example pairs that reached this node.
+	 */
+	public int getMismatches() {
+		return mismatches;
+	}
+	
+	/**
+	 * Number of example pairs that reached this node.
+	 */
+	public int getNumExamples() {
+		return matches + mismatches;
 	}
 
 	public List<Feature> getFeatures() {
-		return features;
+		if(featureIndices == null) {
+			return features;
+		}
+		
+		List<Feature> nodeFeatures = Lists.newArrayListWithCapacity(featureIndices.length);
+		for(int featureIndex : featureIndices) {
+			nodeFeatures.add(features.get(featureIndex));
+		}
+		return nodeFeatures;
 	}
 
 	public void setFeatures(List<Feature> features) {
 		this.features = features;
+		this.featureIndices = null;
 	}
 
 	public DecisionTreeNodeType getNodeType() {
@@ -1,75 +1,147 @@
 package walmartlabs.productmatching.autorulegenerator.model;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import com.google.common.base.Objects;
 import com.google.common.collect.Maps;
 
 /**
  * Represents a specific labelled example in the dataset.
- * 
+ *
+ * The values of an example are either kept in a map of its own, by feature, or in an array
+ * indexed by the attribute ordinals of a schema shared by the examples of the dataset. Array
+ * values are dense, one per attribute of the schema, or sparse, for the attributes at the given
+ * ordinals only. Either way, a missing value is null, and the feature value map is a view of
+ * the array.
+ *
  * @author excelsior
  *
  */
 public class Example implements Comparable<Example> {
+	private static String MISSING_VALUE = "NA";
+
 	private String id;
-	private Map<Feature, String> featureValueMap = Maps.newHashMap();
-	
+	private Map<Feature, String> featureValueMap;
+
+	private ExampleSchema schema;
+	private String[] values;
+	// Ascending ordinals of the values of a sparse example, null if dense
+	private int[] attrIndexes;
+
 	public Example(Map<Feature, String> featureValueMap) {
 		super();
 		this.featureValueMap = featureValueMap;
 	}
-	
+
 	public Example(String id, Map<Feature, String> featureValueMap) {
 		super();
 		this.id = id;
 		this.featureValueMap = featureValueMap;
 	}
-	
+
+	/**
+	 * Example with a value for each attribute of the schema, by ordinal. The array is used as is.
+	 */
+	public Example(String id, ExampleSchema schema, String[] values) {
+		super();
+		this.id = id;
+		this.schema = schema;
+		this.values = values;
+	}
+
+	/**
+	 * Example with values for the attributes at the given ordinals only, which must be in
+	 * ascending order. The arrays are used as is.
+	 */
+	public Example(String id, ExampleSchema schema, int[] attrIndexes, String[] values) {
+		super();
+		this.id = id;
+		this.schema = schema;
+		this.attrIndexes = attrIndexes;
+		this.values = values;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("Example [id=").append(id).append(", featureValueMap=")
-				.append(featureValueMap).append("]");
+				.append(getFeatureValueMap()).append("]");
 		return builder.toString();
 	}
 
 	public int hashcode()
 	{
-		return Objects.hashCode(id, featureValueMap);
+		return Objects.hashCode(id, getFeatureValueMap());
 	}
-	
+
 	public boolean equals(Object obj)
 	{
 	    if (obj == null) return false;
 	    if (getClass() != obj.getClass()) return false;
 	    final Example that = (Example) obj;
-	    return 	Objects.equal(this.id, that.id) && 
-	    		Objects.equal(this.featureValueMap, that.featureValueMap);		
+	    return 	Objects.equal(this.id, that.id) &&
+	    		Objects.equal(this.getFeatureValueMap(), that.getFeatureValueMap());
 	}
-	
+
 	/**
 	 * Returns the value for a specific attribute name, if it exists.
 	 */
 	public String getValueForAttribute(String attrName)
 	{
-		String attrValue = "NA";
+		if(schema != null) {
+			String attrValue = getValue(schema.getAttributeIndex(attrName));
+			return attrValue != null ? attrValue : MISSING_VALUE;
+		}
+
+		String attrValue = MISSING_VALUE;
 		for(Map.Entry<Feature, String> entry : getFeatureValueMap().entrySet()) {
 			if(entry.getKey().getAttrName().toLowerCase().equals(attrName.toLowerCase())) {
 				attrValue = entry.getValue();
 				break;
 			}
 		}
-		
+
 		return attrValue;
 	}
-	
+
+	/**
+	 * Value of the attribute with this ordinal in the schema, or null if the example has none.
+	 */
+	public String getValue(int attrIndex)
+	{
+		if(attrIndex < 0) {
+			return null;
+		}
+		if(attrIndexes != null) {
+			int valueIndex = Arrays.binarySearch(attrIndexes, attrIndex);
+			return valueIndex >= 0 ? values[valueIndex] : null;
+		}
+		return attrIndex < values.length ? values[attrIndex] : null;
+	}
+
+	public ExampleSchema getSchema() {
+		return schema;
+	}
+
 	public Map<Feature, String> getFeatureValueMap() {
+		if(schema != null) {
+			return new SchemaValueMap();
+		}
 		return featureValueMap;
 	}
 
 	public void setFeatureValueMap(Map<Feature, String> featureValueMap) {
 		this.featureValueMap = featureValueMap;
+		this.schema = null;
+		this.values = null;
+		this.attrIndexes = null;
 	}
 
 	public String getId() {
@@ -83,5 +155,104 @@ public class Example implements Comparable<Example> {
 	public int compareTo(Example that) {
 		return this.getId().compareTo(that.getId());
 	}
-	
+
+	/**
+	 * Read only view of the values of the example by feature, each feature of an attribute
+	 * mapping to the value of the attribute.
+	 */
+	private class SchemaValueMap extends AbstractMap<Feature, String> {
+		@Override
+		public boolean containsKey(Object key)
+		{
+			return get(key) != null;
+		}
+
+		@Override
+		public String get(Object key)
+		{
+			if(!(key instanceof Feature)) {
+				return null;
+			}
+			return getValue(schema.getAttributeIndex((Feature)key));
+		}
+
+		@Override
+		public Set<Map.Entry<Feature, String>> entrySet()
+		{
+			return new AbstractSet<Map.Entry<Feature, String>>() {
+				@Override
+				public Iterator<Map.Entry<Feature, String>> iterator()
+				{
+					return new SchemaValueIterator();
+				}
+
+				@Override
+				public int size()
+				{
+					int size = 0;
+					for(Iterator<Map.Entry<Feature, String>> it = iterator(); it.hasNext(); it.next()) {
+						++size;
+					}
+					return size;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Goes through the values of the example in the order of the ordinals, and through the
+	 * features of the attribute of each value.
+	 */
+	private class SchemaValueIterator implements Iterator<Map.Entry<Feature, String>> {
+		private int valueIndex = -1;
+		private List<Feature> features = null;
+		private int featureIndex = 0;
+
+		SchemaValueIterator()
+		{
+			advance();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return features != null;
+		}
+
+		@Override
+		public Map.Entry<Feature, String> next()
+		{
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Map.Entry<Feature, String> entry = Maps.immutableEntry(features.get(featureIndex++), values[valueIndex]);
+			if(featureIndex == features.size()) {
+				advance();
+			}
+			return entry;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Moves on to the next value that has features.
+		 */
+		private void advance()
+		{
+			features = null;
+			featureIndex = 0;
+			while(++valueIndex < values.length) {
+				int attrIndex = attrIndexes != null ? attrIndexes[valueIndex] : valueIndex;
+				if(values[valueIndex] != null && attrIndex < schema.getNumAttributes() &&
+						!schema.getFeatures(attrIndex).isEmpty()) {
+					features = schema.getFeatures(attrIndex);
+					return;
+				}
+			}
+		}
+	}
 }
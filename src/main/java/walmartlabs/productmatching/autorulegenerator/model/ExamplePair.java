@@ -1,13 +1,29 @@
 package walmartlabs.productmatching.autorulegenerator.model;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+import walmartlabs.productmatching.autorulegenerator.utils.match.MatchUtils;
+
 import com.google.common.collect.Maps;
 
 /**
  * Represents a pair of examples in the dataset and their match status.
  * 
+ * The match score of every feature is either computed up front, when the pair is created, or
+ * lazily the first time it is asked for and then remembered by the pair. Lazy scoring only pays
+ * for the features that are actually used, e.g. by the nodes of a shallow decision tree.
+ * 
+ * When both items share a schema, the scores are kept in an array indexed by the feature ids of
+ * the schema, and the score map is a view of the array. Items with values of their own keep
+ * their scores in a map.
+ * 
  * @author excelsior
  *
  */
@@ -20,16 +36,58 @@ public class ExamplePair {
 
 	private Map<Feature, Double> attributeMatchScoreMap = null;
 	
+	// Scores by feature id, when the items share a schema, and the ids scored so far if lazy
+	private ExampleSchema schema = null;
+	private double[] attributeMatchScores = null;
+	private BitSet scoredFeatureIds = null;
+	
+	// Are the scores computed on first access rather than up front ?
+	private boolean isLazyScoring = false;
+	
 	public ExamplePair(Example sourceItem, Example targetItem, DecisionTreeClassLabel classLabel)
+	{
+		this(sourceItem, targetItem, classLabel, false);
+	}
+	
+	public ExamplePair(Example sourceItem, Example targetItem, DecisionTreeClassLabel classLabel, boolean isLazyScoring)
 	{
 		this.sourceItem = sourceItem;
 		this.targetItem = targetItem;
 		this.classLabel = classLabel;
+		this.isLazyScoring = isLazyScoring;
+		
+		if(sourceItem.getSchema() != null && sourceItem.getSchema() == targetItem.getSchema()) {
+			schema = sourceItem.getSchema();
+			attributeMatchScores = new double[schema.getNumFeatures()];
+			if(isLazyScoring) {
+				scoredFeatureIds = new BitSet(attributeMatchScores.length);
+			}
+			else {
+				calculateAttributeMatchScores();
+			}
+			return;
+		}
 		
 		// calculate the score for each attribute and persist in a map
-		attributeMatchScoreMap = Maps.newHashMap();
-		Map<Feature, Double> tempAttributeMatchScoreMap = calculateAttributeMatchScoreMap(sourceItem, targetItem);
-		attributeMatchScoreMap.putAll(tempAttributeMatchScoreMap);
+		if(isLazyScoring) {
+			attributeMatchScoreMap = Maps.newHashMap();
+		}
+		else {
+			attributeMatchScoreMap = calculateAttributeMatchScoreMap(sourceItem, targetItem);
+		}
+	}
+	
+	/**
+	 * Creates an example pair whose match scores were computed beforehand, e.g. read back from a
+	 * cache. The map is used as is, and may be a read only view.
+	 */
+	public ExamplePair(Example sourceItem, Example targetItem, DecisionTreeClassLabel classLabel, 
+			Map<Feature, Double> attributeMatchScoreMap)
+	{
+		this.sourceItem = sourceItem;
+		this.targetItem = targetItem;
+		this.classLabel = classLabel;
+		this.attributeMatchScoreMap = attributeMatchScoreMap;
 	}
 	
 	public Example getSourceItem() {
@@ -56,9 +114,43 @@ public class ExamplePair {
 		this.classLabel = classLabel;
 	}
 
+	public boolean isLazyScoring() {
+		return isLazyScoring;
+	}
+
+	/**
+	 * Returns the match score of every attribute. With lazy scoring, this scores all the
+	 * attributes not scored yet.
+	 */
 	public Map<Feature, Double> getAttributeMatchScoreMap() {
+		if(isLazyScoring) {
+			synchronized(this) {
+				for(Feature f : sourceItem.getFeatureValueMap().keySet()) {
+					getAttributeMatchScore(f);
+				}
+			}
+		}
+		if(attributeMatchScores != null) {
+			return new ScoreMap();
+		}
 		return attributeMatchScoreMap;
 	}
+	
+	/**
+	 * Scores every feature of the schema that the source item has a value for. The others are
+	 * left at 0.0, which is what they score.
+	 */
+	private void calculateAttributeMatchScores()
+	{
+		for(int featureId = 0; featureId < attributeMatchScores.length; featureId++) {
+			int attrIndex = schema.getAttributeIndexOfFeature(featureId);
+			String sourceAttrVal = sourceItem.getValue(attrIndex);
+			if(sourceAttrVal != null) {
+				attributeMatchScores[featureId] = MatchUtils.getAttributeSimilarityScore(sourceAttrVal, 
+						targetItem.getValue(attrIndex), schema.getFeature(featureId));
+			}
+		}
+	}
 
 	/**
 	 * Calculate the similiarity score for each attribute in the example pair by comparing the
@@ -78,7 +170,7 @@ public class ExamplePair {
 		for(Feature f : features) {
 			String sourceAttrVal = sourceItemAttrValMap.get(f);
 			String targetAttrVal = targetItemAttrValMap.get(f);
-			double simScore = f.getSimMeasure().compare(sourceAttrVal, targetAttrVal);
+			double simScore = MatchUtils.getAttributeSimilarityScore(sourceAttrVal, targetAttrVal, f);
 			attrSimScoreMap.put(f, simScore);
 		}
 		
@@ -93,33 +185,236 @@ public class ExamplePair {
 	 */
 	public double getAttributeMatchScore(Feature feature)
 	{
-		double matchScore = 0.0;
-		if(attributeMatchScoreMap.containsKey(feature)) {
-			matchScore = attributeMatchScoreMap.get(feature);
+		if(attributeMatchScores != null) {
+			return getAttributeMatchScore(schema.getFeatureId(feature), true);
+		}
+		return getAttributeMatchScore(feature, true);
+	}
+	
+	/**
+	 * Match score of the feature with this id in the schema of the items, 0.0 if the schema has
+	 * no such feature. With lazy scoring, a score not computed yet is computed, and remembered 
+	 * only if asked to.
+	 */
+	private double getAttributeMatchScore(int featureId, boolean isRemembered)
+	{
+		if(featureId < 0 || featureId >= attributeMatchScores.length) {
+			return 0.0;
+		}
+		if(!isLazyScoring) {
+			return attributeMatchScores[featureId];
 		}
 		
-		return matchScore;
+		synchronized(this) {
+			if(scoredFeatureIds.get(featureId)) {
+				return attributeMatchScores[featureId];
+			}
+			
+			int attrIndex = schema.getAttributeIndexOfFeature(featureId);
+			String sourceAttrVal = sourceItem.getValue(attrIndex);
+			if(sourceAttrVal == null) {
+				return 0.0;
+			}
+			double matchScore = MatchUtils.getAttributeSimilarityScore(sourceAttrVal, 
+					targetItem.getValue(attrIndex), schema.getFeature(featureId));
+			if(isRemembered) {
+				attributeMatchScores[featureId] = matchScore;
+				scoredFeatureIds.set(featureId);
+			}
+			return matchScore;
+		}
+	}
+	
+	/**
+	 * Match score of the feature, for items keeping their scores in a map. As in the eager case, 
+	 * an attribute the source item has no value for scores 0.0. With lazy scoring, a score not 
+	 * computed yet is computed, and remembered only if asked to.
+	 */
+	private double getAttributeMatchScore(Feature feature, boolean isRemembered)
+	{
+		if(!isLazyScoring) {
+			double matchScore = 0.0;
+			if(attributeMatchScoreMap.containsKey(feature)) {
+				matchScore = attributeMatchScoreMap.get(feature);
+			}
+			return matchScore;
+		}
+		
+		synchronized(this) {
+			Double matchScore = attributeMatchScoreMap.get(feature);
+			if(matchScore != null) {
+				return matchScore;
+			}
+			
+			Map<Feature, String> sourceItemAttrValMap = sourceItem.getFeatureValueMap();
+			if(!sourceItemAttrValMap.containsKey(feature)) {
+				return 0.0;
+			}
+			matchScore = MatchUtils.getAttributeSimilarityScore(sourceItemAttrValMap.get(feature), 
+					targetItem.getFeatureValueMap().get(feature), feature);
+			if(isRemembered) {
+				attributeMatchScoreMap.put(feature, matchScore);
+			}
+			return matchScore;
+		}
+	}
+	
+	/**
+	 * Gets the match scores of a single feature for a set of example pairs, in the order of the
+	 * pairs. Pairs scoring lazily only compute this feature.
+	 */
+	public static double[] getAttributeMatchScores(List<ExamplePair> examplePairs, Feature feature)
+	{
+		return getAttributeMatchScores(examplePairs, feature, true);
+	}
+	
+	/**
+	 * Same as {@link #getAttributeMatchScores(List, Feature)}, except that pairs scoring lazily
+	 * do not remember the scores they had not computed yet, e.g. because the caller keeps them.
+	 */
+	public static double[] calculateAttributeMatchScores(List<ExamplePair> examplePairs, Feature feature)
+	{
+		return getAttributeMatchScores(examplePairs, feature, false);
+	}
+	
+	private static double[] getAttributeMatchScores(List<ExamplePair> examplePairs, Feature feature, 
+			boolean isRemembered)
+	{
+		double[] matchScores = new double[examplePairs.size()];
+		int index = 0;
+		// Pairs of the same dataset share a schema, so the feature id is looked up only once
+		ExampleSchema schema = null;
+		int featureId = -1;
+		for(ExamplePair exPair : examplePairs) {
+			if(exPair.attributeMatchScores == null) {
+				matchScores[index++] = exPair.getAttributeMatchScore(feature, isRemembered);
+				continue;
+			}
+			
+			if(exPair.schema != schema) {
+				schema = exPair.schema;
+				featureId = schema.getFeatureId(feature);
+			}
+			matchScores[index++] = exPair.getAttributeMatchScore(featureId, isRemembered);
+		}
+		
+		return matchScores;
 	}
 	
 	public String toString()
 	{
 		StringBuilder builder = new StringBuilder();
+		appendTo(builder);
+		return builder.toString();
+	}
+	
+	/**
+	 * Appends the id of both items, and the match score and values of every attribute, as in
+	 * the dumps of matched and mismatched pairs.
+	 * 
+	 * The values are looked up by feature in the value maps of the items, instead of by name.
+	 */
+	public void appendTo(StringBuilder builder)
+	{
 		builder.append("ID").append("|#").append(sourceItem.getId()).append("|#").append(targetItem.getId()).append("|#").append("\n");
-		Map<Feature, String> sourceItemAttrMap = sourceItem.getFeatureValueMap();
 		Map<Feature, String> targetItemAttrMap = targetItem.getFeatureValueMap();
 		
-		Set<Feature> features = sourceItemAttrMap.keySet();
-		//features.addAll(targetItemAttrMap.keySet());
-		for(Feature feature : features) {
+		for(Map.Entry<Feature, String> entry : sourceItem.getFeatureValueMap().entrySet()) {
+			Feature feature = entry.getKey();
 			Double score = getAttributeMatchScore(feature);
 			String attrName = feature.getAttrName();
-			String sourceVal = sourceItem.getValueForAttribute(attrName);
-			String targetVal = targetItem.getValueForAttribute(attrName);
+			String sourceVal = entry.getValue();
+			String targetVal = targetItemAttrMap.get(feature);
+			if(targetVal == null && !targetItemAttrMap.containsKey(feature)) {
+				targetVal = targetItem.getValueForAttribute(attrName);
+			}
 			builder.append(score).append(" ==> ");
 			builder.append(attrName).append("|#").append(sourceVal).append("|#").append(targetVal).append("|#").append("\n");
 		}
 		builder.append("\n");
+	}
+	
+	/**
+	 * Read only view of the scores of the features the source item has a value for.
+	 */
+	private class ScoreMap extends AbstractMap<Feature, Double> {
+		@Override
+		public boolean containsKey(Object key)
+		{
+			return get(key) != null;
+		}
 		
-		return builder.toString();
+		@Override
+		public Double get(Object key)
+		{
+			if(!(key instanceof Feature)) {
+				return null;
+			}
+			int featureId = schema.getFeatureId((Feature)key);
+			if(featureId == -1 || !hasSourceValue(featureId)) {
+				return null;
+			}
+			return getAttributeMatchScore(featureId, true);
+		}
+		
+		@Override
+		public Set<Map.Entry<Feature, Double>> entrySet()
+		{
+			return new AbstractSet<Map.Entry<Feature, Double>>() {
+				@Override
+				public Iterator<Map.Entry<Feature, Double>> iterator()
+				{
+					return new Iterator<Map.Entry<Feature, Double>>() {
+						private int featureId = nextFeatureId(0);
+						
+						@Override
+						public boolean hasNext() {
+							return featureId < attributeMatchScores.length;
+						}
+						
+						@Override
+						public Map.Entry<Feature, Double> next() {
+							if(!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							Map.Entry<Feature, Double> entry = Maps.immutableEntry(schema.getFeature(featureId), 
+									getAttributeMatchScore(featureId, true));
+							featureId = nextFeatureId(featureId + 1);
+							return entry;
+						}
+						
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+				
+				@Override
+				public int size()
+				{
+					int size = 0;
+					for(int featureId = nextFeatureId(0); featureId < attributeMatchScores.length; 
+							featureId = nextFeatureId(featureId + 1)) {
+						++size;
+					}
+					return size;
+				}
+			};
+		}
+		
+		private int nextFeatureId(int from)
+		{
+			int featureId = from;
+			while(featureId < attributeMatchScores.length && !hasSourceValue(featureId)) {
+				++featureId;
+			}
+			return featureId;
+		}
+		
+		private boolean hasSourceValue(int featureId)
+		{
+			return sourceItem.getValue(schema.getAttributeIndexOfFeature(featureId)) != null;
+		}
 	}
 }
@@ -0,0 +1,198 @@
+package walmartlabs.productmatching.autorulegenerator.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Attributes shared by the examples of a dataset. Each attribute has an ordinal, and an example
+ * keeps its values in an array indexed by the ordinals rather than in a map of its own, so that
+ * getting the value of an attribute is an array access.
+ *
+ * An attribute may have several features, one per similarity measure, which all share the value
+ * of the attribute. The features come from a {@link FeatureRegistry}, which may be shared with
+ * other schemas, and example pairs keep their match scores in arrays indexed by the ids the
+ * registry gives the features. Each attribute name has an ordinal of its own, even if it only
+ * differs in case from another one, as the features of the two are different. A name that is
+ * not in the schema is looked up ignoring case, the way examples always looked them up, and
+ * gets the first attribute added with that name in any case.
+ *
+ * The schema also holds a dictionary of the values of its examples, so that a value repeated
+ * across examples, e.g. a brand or "NA", is only kept once.
+ *
+ * Attributes are added while the header of a dataset is read, before any example is made. The
+ * schema is then only read, and may be shared by threads, as may the dictionary.
+ *
+ * @author excelsior
+ *
+ */
+public class ExampleSchema {
+	private List<String> attrNames = Lists.newArrayList();
+	private List<List<Feature>> attrFeatures = Lists.newArrayList();
+
+	// Ordinal of each attribute by name, and of the first attribute with each normalized name
+	private Map<String, Integer> attrIndexMap = Maps.newHashMap();
+	private Map<String, Integer> normalizedAttrIndexMap = Maps.newHashMap();
+
+	// Ordinal of the attribute of each feature by id, -1 for the features of other schemas
+	private FeatureRegistry featureRegistry;
+	private int[] featureAttrIndexes = new int[0];
+
+	private ConcurrentMap<String, String> valueDictionary = new ConcurrentHashMap<String, String>();
+
+	public ExampleSchema()
+	{
+		this(new FeatureRegistry());
+	}
+
+	public ExampleSchema(FeatureRegistry featureRegistry)
+	{
+		this.featureRegistry = featureRegistry;
+	}
+
+	/**
+	 * Adds an attribute with its features, and returns its ordinal. The features of an attribute
+	 * already in the schema, with the very same name, are added to it, and it keeps its ordinal.
+	 * The schema keeps the instances of its registry, which registers the features not registered
+	 * yet.
+	 */
+	public int addAttribute(String attrName, List<Feature> features)
+	{
+		Integer existingAttrIndex = attrIndexMap.get(attrName);
+		int attrIndex;
+		if(existingAttrIndex != null) {
+			attrIndex = existingAttrIndex;
+		}
+		else {
+			attrIndex = attrNames.size();
+			attrNames.add(attrName);
+			attrFeatures.add(Lists.<Feature>newArrayList());
+			attrIndexMap.put(attrName, attrIndex);
+			if(!normalizedAttrIndexMap.containsKey(normalizeName(attrName))) {
+				normalizedAttrIndexMap.put(normalizeName(attrName), attrIndex);
+			}
+		}
+
+		for(Feature feature : features) {
+			Feature canonicalFeature = featureRegistry.getCanonicalFeature(feature);
+			int featureId = canonicalFeature.getId();
+			if(featureId >= featureAttrIndexes.length) {
+				int oldLength = featureAttrIndexes.length;
+				featureAttrIndexes = Arrays.copyOf(featureAttrIndexes, Math.max(featureId + 1, 2*oldLength));
+				Arrays.fill(featureAttrIndexes, oldLength, featureAttrIndexes.length, -1);
+			}
+			if(featureAttrIndexes[featureId] == -1) {
+				featureAttrIndexes[featureId] = attrIndex;
+				attrFeatures.get(attrIndex).add(canonicalFeature);
+			}
+		}
+		return attrIndex;
+	}
+
+	/**
+	 * Ordinal of the attribute with that name, or else of the first one with that name ignoring
+	 * case. Returns -1 if the schema has no such attribute.
+	 */
+	public int getAttributeIndex(String attrName)
+	{
+		Integer attrIndex = attrIndexMap.get(attrName);
+		if(attrIndex == null) {
+			attrIndex = normalizedAttrIndexMap.get(normalizeName(attrName));
+		}
+		return attrIndex != null ? attrIndex : -1;
+	}
+
+	/**
+	 * Ordinal of the attribute of a feature, or -1 if the feature is not in the schema.
+	 */
+	public int getAttributeIndex(Feature feature)
+	{
+		int featureId = getFeatureId(feature);
+		return featureId != -1 ? getAttributeIndexOfFeature(featureId) : -1;
+	}
+
+	/**
+	 * Id of a feature in the registry, or -1 if the registry has no such feature. A feature
+	 * handed out by the registry is looked up by identity.
+	 */
+	public int getFeatureId(Feature feature)
+	{
+		return featureRegistry.getId(feature);
+	}
+
+	public Feature getFeature(int featureId)
+	{
+		return featureRegistry.getFeature(featureId);
+	}
+
+	/**
+	 * Ordinal of the attribute of the feature with this id, or -1 if the feature is not in the
+	 * schema.
+	 */
+	public int getAttributeIndexOfFeature(int featureId)
+	{
+		return featureId < featureAttrIndexes.length ? featureAttrIndexes[featureId] : -1;
+	}
+
+	/**
+	 * Number of features in the registry, which is one more than the largest feature id.
+	 */
+	public int getNumFeatures()
+	{
+		return featureRegistry.size();
+	}
+
+	public FeatureRegistry getFeatureRegistry() {
+		return featureRegistry;
+	}
+
+	public int getNumAttributes()
+	{
+		return attrNames.size();
+	}
+
+	/**
+	 * Name of an attribute, as it was first added.
+	 */
+	public String getAttrName(int attrIndex)
+	{
+		return attrNames.get(attrIndex);
+	}
+
+	public List<Feature> getFeatures(int attrIndex)
+	{
+		return Collections.unmodifiableList(attrFeatures.get(attrIndex));
+	}
+
+	/**
+	 * Returns the copy of the value kept by the dictionary, after adding the value if it was not
+	 * in it yet.
+	 */
+	public String intern(String value)
+	{
+		if(value == null) {
+			return null;
+		}
+		String internedValue = valueDictionary.putIfAbsent(value, value);
+		return internedValue != null ? internedValue : value;
+	}
+
+	/**
+	 * Number of distinct values in the dictionary.
+	 */
+	public int getNumDistinctValues()
+	{
+		return valueDictionary.size();
+	}
+
+	public static String normalizeName(String attrName)
+	{
+		return attrName.toLowerCase();
+	}
+}
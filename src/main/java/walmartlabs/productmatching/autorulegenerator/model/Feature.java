@@ -10,20 +10,90 @@ import com.walmart.productgenome.pairComparison.utils.comparers.IComparer;
  * Thus, the decision tree nodes are not simple attribute values as features. Rather they are
  * the similarity score of a metric on the attribute name.
  * 
+ * Features are immutable. Their hash code and name are computed once, when they are made. The
+ * features of a dataset come from its {@link FeatureRegistry}, which gives each of them a dense
+ * id and makes sure that equal features are the same instance, so they can be compared and
+ * looked up by identity.
+ * 
  * @author excelsior
  *
  */
 public class Feature {
 	// Name of the data attribute corresponding to this feature
-	private String attrName;
+	private final String attrName;
 	
 	// Similarity metric to apply on the attribute name.
-	private IComparer simMeasure;
+	private final IComparer simMeasure;
+	
+	// Type of the attribute values, when read from a typed source such as an arff file.
+	private final DataType dataType;
+	
+	// Id given by the registry of the feature, -1 if it is not from a registry
+	private final int id;
+	
+	private final int hashCode;
+	private final String featureName;
+	
+	/**
+	 * Types of attribute values in the arff format.
+	 */
+	public enum DataType {
+		STRING,
+		NUMERIC,
+		NOMINAL,
+		DATE;
+		
+		/**
+		 * Data type for the type of an arff attribute declaration, e.g. "string", "real" or
+		 * "{a, b, c}".
+		 */
+		public static DataType getDataType(String arffType)
+		{
+			String type = arffType.trim().toLowerCase();
+			if(type.startsWith("{")) {
+				return NOMINAL;
+			}
+			if(type.equals("string")) {
+				return STRING;
+			}
+			if(type.equals("numeric") || type.equals("real") || type.equals("integer")) {
+				return NUMERIC;
+			}
+			if(type.startsWith("date")) {
+				return DATE;
+			}
+			throw new IllegalArgumentException("Unsupported arff attribute type " + arffType);
+		}
+	}
 	
 	public Feature(String name, IComparer simMeasure)
 	{
+		this(-1, name, simMeasure, null);
+	}
+	
+	/**
+	 * Feature for an attribute, before any similarity metric is applied to it.
+	 */
+	public Feature(String name, DataType dataType)
+	{
+		this(-1, name, null, dataType);
+	}
+	
+	Feature(int id, String name, IComparer simMeasure, DataType dataType)
+	{
+		this.id = id;
 		this.attrName = name;
 		this.simMeasure = simMeasure;
+		this.dataType = dataType;
+		
+		// Hashes the class of the similarity metric, as comparers need not override hashCode()
+		this.hashCode = Objects.hashCode(name, simMeasure != null ? simMeasure.getClass().getName() : null);
+		if(simMeasure == null) {
+			this.featureName = name;
+		}
+		else {
+			this.featureName = name + "_" + ComparersFactory.getComparerAbbrvName(simMeasure.getClass().getSimpleName());
+		}
 	}
 	
 	@Override
@@ -35,14 +105,16 @@ public class Feature {
 	@Override
 	public int hashCode()
 	{
-		return Objects.hashCode(this.attrName, this.simMeasure);
+		return hashCode;
 	}
 	
 	@Override
 	public boolean equals(Object obj) {
+	    if (obj == this) return true;
 	    if (obj == null) return false;
 	    if (getClass() != obj.getClass()) return false;
 	    final Feature other = (Feature) obj;
+	    if (this.hashCode != other.hashCode) return false;
 	    return 	Objects.equal(this.attrName, other.attrName) &&
 	    		Objects.equal(this.simMeasure, other.simMeasure);
 	}
@@ -51,16 +123,19 @@ public class Feature {
 		return attrName;
 	}
 
-	public void setAttrName(String attrName) {
-		this.attrName = attrName;
-	}
-
 	public IComparer getSimMeasure() {
 		return simMeasure;
 	}
 
-	public void setSimMeasure(IComparer simMeasure) {
-		this.simMeasure = simMeasure;
+	public DataType getDataType() {
+		return dataType;
+	}
+
+	/**
+	 * Dense id given by the registry the feature comes from, or -1 if it is not from a registry.
+	 */
+	public int getId() {
+		return id;
 	}
 
 	/**
@@ -69,6 +144,6 @@ public class Feature {
 	 */
 	public String getFeatureName()
 	{
-		return attrName + "_" + ComparersFactory.getComparerAbbrvName(simMeasure.getClass().getSimpleName());
+		return featureName;
 	}
 }
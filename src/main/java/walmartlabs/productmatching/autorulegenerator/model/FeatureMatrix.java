@@ -0,0 +1,139 @@
+package walmartlabs.productmatching.autorulegenerator.model;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Dense, column oriented view of the example pairs used for decision tree learning.
+ *
+ * Every feature is stored as a primitive column of match scores, one entry per example pair,
+ * along with the class label of every pair. For each feature, the rows can also be presorted by
+ * score so that the learner never has to sort again : the children of a node inherit the
+ * sorted order of their parent through a stable partition (as done in SLIQ/SPRINT).
+ *
+ * A column is only scored the first time it is asked for, so a tree that never evaluates a
+ * feature never scores it. Lazily scored pairs are not made to remember the scores of the
+ * column, which would keep every score twice.
+ *
+ * Rows are numbered by the position of the example pair in the list the matrix was built from.
+ * Columns may be asked for by several threads at once.
+ *
+ * @author excelsior
+ *
+ */
+public class FeatureMatrix {
+	private List<Feature> features = Lists.newArrayList();
+	private List<ExamplePair> examplePairs = Lists.newArrayList();
+
+	// Match scores, indexed by feature and then by row, null until the feature is scored
+	private AtomicReferenceArray<double[]> columns;
+	// Is the example pair at each row a MATCH ?
+	private boolean[] matchLabels;
+
+	public FeatureMatrix(Dataset dataset)
+	{
+		this(dataset.getExamplePairs(), dataset.getFeatures());
+	}
+
+	public FeatureMatrix(List<ExamplePair> examplePairs, List<Feature> features)
+	{
+		this.examplePairs = Lists.newArrayList(examplePairs);
+		this.features = Lists.newArrayList(features);
+
+		int numRows = this.examplePairs.size();
+		matchLabels = new boolean[numRows];
+		for(int row = 0; row < numRows; row++) {
+			matchLabels[row] = this.examplePairs.get(row).getClassLabel().equals(DecisionTreeClassLabel.MATCH);
+		}
+
+		columns = new AtomicReferenceArray<double[]>(this.features.size());
+	}
+
+	/**
+	 * Stable merge sort of the rows in [from, to) by ascending score.
+	 */
+	private static void sortRowsByScore(int[] rows, int[] scratch, int from, int to, double[] column)
+	{
+		if(to - from < 2) {
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+		sortRowsByScore(rows, scratch, from, mid, column);
+		sortRowsByScore(rows, scratch, mid, to, column);
+		if(Double.compare(column[rows[mid-1]], column[rows[mid]]) <= 0) {
+			return;
+		}
+
+		System.arraycopy(rows, from, scratch, from, to - from);
+		int left = from;
+		int right = mid;
+		for(int pos = from; pos < to; pos++) {
+			if(right >= to || (left < mid && Double.compare(column[scratch[left]], column[scratch[right]]) <= 0)) {
+				rows[pos] = scratch[left++];
+			}
+			else {
+				rows[pos] = scratch[right++];
+			}
+		}
+	}
+
+	public int getNumRows() {
+		return matchLabels.length;
+	}
+
+	public int getNumFeatures() {
+		return features.size();
+	}
+
+	public List<Feature> getFeatures() {
+		return features;
+	}
+
+	public List<ExamplePair> getExamplePairs() {
+		return examplePairs;
+	}
+
+	/**
+	 * Returns the match scores of a feature, scoring them on first use.
+	 */
+	public double[] getColumn(int featureIndex) {
+		double[] column = columns.get(featureIndex);
+		if(column == null) {
+			// Threads asking for the same column at once may both score it, only one is kept
+			columns.compareAndSet(featureIndex, null, 
+					ExamplePair.calculateAttributeMatchScores(examplePairs, features.get(featureIndex)));
+			column = columns.get(featureIndex);
+		}
+		return column;
+	}
+
+	/**
+	 * Has the feature been scored yet ?
+	 */
+	public boolean isScored(int featureIndex) {
+		return columns.get(featureIndex) != null;
+	}
+
+	public boolean[] getMatchLabels() {
+		return matchLabels;
+	}
+
+	/**
+	 * Returns the rows of a feature sorted by ascending score, ties in row order. The array is
+	 * sorted for the caller, which is free to partition it in place.
+	 */
+	public int[] copySortedRows(int featureIndex) {
+		double[] column = getColumn(featureIndex);
+		int numRows = column.length;
+		int[] rows = new int[numRows];
+		for(int row = 0; row < numRows; row++) {
+			rows[row] = row;
+		}
+
+		sortRowsByScore(rows, new int[numRows], 0, numRows, column);
+		return rows;
+	}
+}
@@ -0,0 +1,104 @@
+package walmartlabs.productmatching.autorulegenerator.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+
+import com.walmart.productgenome.pairComparison.utils.comparers.IComparer;
+
+/**
+ * Hands out the features of a dataset. There is a single instance of each feature, with a dense
+ * id given in the order the features are first asked for, so that the features of the dataset
+ * can be compared by identity and their data kept in arrays indexed by id.
+ *
+ * Features are registered while the header of a dataset is read, and looked up afterwards. Both
+ * may happen from several threads.
+ *
+ * @author excelsior
+ *
+ */
+public class FeatureRegistry {
+	private List<Feature> features = new CopyOnWriteArrayList<Feature>();
+	private ConcurrentMap<Feature, Feature> canonicalFeatures = new ConcurrentHashMap<Feature, Feature>();
+
+	public Feature getFeature(String attrName, IComparer simMeasure)
+	{
+		return getCanonicalFeature(new Feature(attrName, simMeasure));
+	}
+
+	public Feature getFeature(String attrName, DataType dataType)
+	{
+		return getCanonicalFeature(new Feature(attrName, dataType));
+	}
+
+	/**
+	 * Returns the instance of the registry equal to a feature, after registering one if there is
+	 * none yet.
+	 */
+	public Feature getCanonicalFeature(Feature feature)
+	{
+		if(isRegistered(feature)) {
+			return feature;
+		}
+
+		Feature canonicalFeature = canonicalFeatures.get(feature);
+		if(canonicalFeature != null) {
+			return canonicalFeature;
+		}
+
+		synchronized(this) {
+			canonicalFeature = canonicalFeatures.get(feature);
+			if(canonicalFeature == null) {
+				canonicalFeature = new Feature(features.size(), feature.getAttrName(), feature.getSimMeasure(),
+						feature.getDataType());
+				features.add(canonicalFeature);
+				canonicalFeatures.put(canonicalFeature, canonicalFeature);
+			}
+			return canonicalFeature;
+		}
+	}
+
+	/**
+	 * Is this feature the instance handed out by this registry ?
+	 */
+	public boolean isRegistered(Feature feature)
+	{
+		int id = feature.getId();
+		return id >= 0 && id < features.size() && features.get(id) == feature;
+	}
+
+	/**
+	 * Id of the instance of the registry equal to a feature, or -1 if none is registered.
+	 */
+	public int getId(Feature feature)
+	{
+		if(isRegistered(feature)) {
+			return feature.getId();
+		}
+
+		Feature canonicalFeature = canonicalFeatures.get(feature);
+		return canonicalFeature != null ? canonicalFeature.getId() : -1;
+	}
+
+	public Feature getFeature(int id)
+	{
+		return features.get(id);
+	}
+
+	/**
+	 * All the registered features, by id.
+	 */
+	public List<Feature> getFeatures()
+	{
+		return Collections.unmodifiableList(features);
+	}
+
+	public int size()
+	{
+		return features.size();
+	}
+}
@@ -0,0 +1,101 @@
+package walmartlabs.productmatching.autorulegenerator.model;
+
+import java.util.List;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+
+/**
+ * A matching rule extracted from a path of the decision tree, from the root node down to a
+ * classification node. An item pair satisfying all the predicates of the rule gets the class
+ * label of the rule.
+ * 
+ * The statistics of the rule are those of the training example pairs that reached the
+ * classification node.
+ * 
+ * @author excelsior
+ *
+ */
+public class MatchingRule {
+	private List<MatchingRulePredicate> predicates = Lists.newArrayList();
+	private DecisionTreeClassLabel label;
+	
+	// Training example pairs satisfying the rule
+	private int matches;
+	private int mismatches;
+	
+	// Percentages, as printed for the generated matching rules
+	private double recall;
+	private double precision;
+	private double fScore;
+	
+	public MatchingRule(List<MatchingRulePredicate> predicates, DecisionTreeClassLabel label, int matches, int mismatches)
+	{
+		this.predicates = predicates;
+		this.label = label;
+		this.matches = matches;
+		this.mismatches = mismatches;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return Joiner.on(" AND ").join(predicates);
+	}
+
+	public List<MatchingRulePredicate> getPredicates() {
+		return predicates;
+	}
+
+	public void setPredicates(List<MatchingRulePredicate> predicates) {
+		this.predicates = predicates;
+	}
+
+	public DecisionTreeClassLabel getLabel() {
+		return label;
+	}
+
+	public void setLabel(DecisionTreeClassLabel label) {
+		this.label = label;
+	}
+
+	public int getMatches() {
+		return matches;
+	}
+
+	public void setMatches(int matches) {
+		this.matches = matches;
+	}
+
+	public int getMismatches() {
+		return mismatches;
+	}
+
+	public void setMismatches(int mismatches) {
+		this.mismatches = mismatches;
+	}
+
+	public double getRecall() {
+		return recall;
+	}
+
+	public void setRecall(double recall) {
+		this.recall = recall;
+	}
+
+	public double getPrecision() {
+		return precision;
+	}
+
+	public void setPrecision(double precision) {
+		this.precision = precision;
+	}
+
+	public double getFScore() {
+		return fScore;
+	}
+
+	public void setFScore(double fScore) {
+		this.fScore = fScore;
+	}
+}
@@ -0,0 +1,80 @@
+package walmartlabs.productmatching.autorulegenerator.model;
+
+import com.google.common.base.Objects;
+
+/**
+ * A single condition of a matching rule, i.e. a comparison of the match score of a feature with
+ * a split value of the decision tree, such as M(name_JW) >= 0.85
+ * 
+ * @author excelsior
+ *
+ */
+public class MatchingRulePredicate {
+	private Feature feature;
+	// Comparison to apply, the same as the link from the parent feature node in the tree
+	private DecisionTreeLinkType linkType;
+	private double value;
+	
+	public MatchingRulePredicate(Feature feature, DecisionTreeLinkType linkType, double value)
+	{
+		this.feature = feature;
+		this.linkType = linkType;
+		this.value = value;
+	}
+	
+	/**
+	 * Does a match score satisfy this predicate ? Scores are compared the same way as the example
+	 * pairs were partitioned while learning the tree.
+	 */
+	public boolean isSatisfied(double score)
+	{
+		boolean isLessThan = Double.compare(score, value) < 0;
+		return linkType.equals(DecisionTreeLinkType.MATCH_LINK) ? isLessThan : !isLessThan;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "M(" + feature + ") " + linkType.getOperatorToApply() + " " + value;
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return Objects.hashCode(feature, linkType, value);
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+	    if (obj == null) return false;
+	    if (getClass() != obj.getClass()) return false;
+	    final MatchingRulePredicate other = (MatchingRulePredicate) obj;
+	    return 	Objects.equal(this.feature, other.feature) &&
+	    		Objects.equal(this.linkType, other.linkType) &&
+	    		Double.compare(this.value, other.value) == 0;
+	}
+
+	public Feature getFeature() {
+		return feature;
+	}
+
+	public void setFeature(Feature feature) {
+		this.feature = feature;
+	}
+
+	public DecisionTreeLinkType getLinkType() {
+		return linkType;
+	}
+
+	public void setLinkType(DecisionTreeLinkType linkType) {
+		this.linkType = linkType;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public void setValue(double value) {
+		this.value = value;
+	}
+}
@@ -0,0 +1,112 @@
+package walmartlabs.productmatching.autorulegenerator.model;
+
+/**
+ * Result of the split search for a feature at a decision tree node.
+ *
+ * Holds the split threshold, the information gain it achieves and the class counts of the
+ * example pairs going down each branch, so that ranking the features, creating the node and
+ * partitioning the example pairs all work off a single evaluation of the split.
+ *
+ * @author excelsior
+ *
+ */
+public class SplitCandidate {
+	// Feature being split and its position in the feature matrix
+	private Feature feature;
+	private int featureIndex;
+
+	// Example pairs with a score less than the split value go down the less-than branch
+	private double splitValue;
+	private double infoGain;
+
+	// Class counts in the less-than branch
+	private int lessThanMatches;
+	private int lessThanMismatches;
+	// Class counts in the greater-than-or-equal branch
+	private int greaterThanMatches;
+	private int greaterThanMismatches;
+	// Class counts of example pairs with a missing (negative) score
+	private int missingMatches;
+	private int missingMismatches;
+
+	public SplitCandidate(Feature feature, int featureIndex, double splitValue, double infoGain)
+	{
+		this.feature = feature;
+		this.featureIndex = featureIndex;
+		this.splitValue = splitValue;
+		this.infoGain = infoGain;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("SplitCandidate [feature=").append(feature).append(", splitValue=")
+				.append(splitValue).append(", infoGain=").append(infoGain)
+				.append(", lessThan=").append(lessThanMatches).append("/").append(lessThanMismatches)
+				.append(", greaterThan=").append(greaterThanMatches).append("/").append(greaterThanMismatches)
+				.append("]");
+		return builder.toString();
+	}
+
+	/**
+	 * Sets the class counts of the example pairs in each branch of the split.
+	 */
+	public void setBranchCounts(int lessThanMatches, int lessThanMismatches, int greaterThanMatches,
+			int greaterThanMismatches, int missingMatches, int missingMismatches)
+	{
+		this.lessThanMatches = lessThanMatches;
+		this.lessThanMismatches = lessThanMismatches;
+		this.greaterThanMatches = greaterThanMatches;
+		this.greaterThanMismatches = greaterThanMismatches;
+		this.missingMatches = missingMatches;
+		this.missingMismatches = missingMismatches;
+	}
+
+	public Feature getFeature() {
+		return feature;
+	}
+
+	public int getFeatureIndex() {
+		return featureIndex;
+	}
+
+	public double getSplitValue() {
+		return splitValue;
+	}
+
+	public double getInfoGain() {
+		return infoGain;
+	}
+
+	public int getLessThanMatches() {
+		return lessThanMatches;
+	}
+
+	public int getLessThanMismatches() {
+		return lessThanMismatches;
+	}
+
+	public int getLessThanCount() {
+		return lessThanMatches + lessThanMismatches;
+	}
+
+	public int getGreaterThanMatches() {
+		return greaterThanMatches;
+	}
+
+	public int getGreaterThanMismatches() {
+		return greaterThanMismatches;
+	}
+
+	public int getGreaterThanCount() {
+		return greaterThanMatches + greaterThanMismatches;
+	}
+
+	public int getMissingMatches() {
+		return missingMatches;
+	}
+
+	public int getMissingMismatches() {
+		return missingMismatches;
+	}
+}
@@ -0,0 +1,39 @@
+package walmartlabs.productmatching.autorulegenerator.utils.blocking;
+
+import java.util.List;
+
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+
+/**
+ * Generates every pair of examples, i.e. no blocking at all.
+ * 
+ * @author excelsior
+ *
+ */
+public class AllPairsGenerator implements CandidatePairGenerator {
+	private int numExamples = 0;
+	
+	@Override
+	public void index(List<Example> examples, List<String> idKeys)
+	{
+		numExamples = examples.size();
+	}
+
+	@Override
+	public int[] getCandidates(int exampleIndex)
+	{
+		return getExamplesBetween(exampleIndex + 1, numExamples);
+	}
+	
+	/**
+	 * Returns the positions in [from, to), in ascending order.
+	 */
+	static int[] getExamplesBetween(int from, int to)
+	{
+		int[] examples = new int[Math.max(to - from, 0)];
+		for(int index = 0; index < examples.length; index++) {
+			examples[index] = from + index;
+		}
+		return examples;
+	}
+}
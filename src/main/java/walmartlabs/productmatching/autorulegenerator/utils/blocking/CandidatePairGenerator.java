@@ -0,0 +1,30 @@
+package walmartlabs.productmatching.autorulegenerator.utils.blocking;
+
+import java.util.List;
+
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+
+/**
+ * Generates the candidate pairs of examples worth scoring, instead of scoring every example
+ * against every other one.
+ * 
+ * Examples are referred to by their position in the list that was indexed. The candidates of an
+ * example only include the examples after it, so that every pair is generated once.
+ * 
+ * @author excelsior
+ *
+ */
+public interface CandidatePairGenerator {
+	
+	/**
+	 * Indexes the examples on the values of their id keys. Must be called before asking for
+	 * candidates.
+	 */
+	void index(List<Example> examples, List<String> idKeys);
+	
+	/**
+	 * Returns the positions of the candidates for the example at a position, in ascending order.
+	 * All of them are greater than the position of the example.
+	 */
+	int[] getCandidates(int exampleIndex);
+}
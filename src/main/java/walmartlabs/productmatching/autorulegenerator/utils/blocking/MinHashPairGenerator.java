@@ -0,0 +1,301 @@
+package walmartlabs.productmatching.autorulegenerator.utils.blocking;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.utils.match.MatchUtils;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Generates approximate candidate pairs of examples with MinHash signatures and banded locality
+ * sensitive hashing (LSH).
+ *
+ * Each id key value of an example is reduced to its set of tokens, and summarized by a signature
+ * of bands x rows MinHash values. Two values agree on a MinHash value with a probability equal to
+ * the Jaccard similarity of their token sets. Each band of the signature of each id key is hashed
+ * into a bucket of its own, and two examples are candidates if they share a bucket in at least
+ * one band of one id key, which happens with a probability of at least 1 - (1 - s^rows)^bands
+ * for the best Jaccard similarity s of their id key values.
+ *
+ * The score of a pair is the average over the id keys of the token containment of the values,
+ * so a pair reaching a score has at least one id key whose values reach it. Containment is not
+ * below the Jaccard similarity, but may be far above it when one value has many more tokens than
+ * the other : {@link #getJaccardFloor} gives the lowest Jaccard similarity of values reaching a
+ * containment, given the most tokens a value has. Use {@link #forTargetRecall} to pick the bands
+ * and rows that reach a recall at a score cutoff from there. The bound assumes that tokens match
+ * exactly and are not repeated within a value, which the containment score does not require.
+ *
+ * Pairing is then close to linear in the number of examples, unless the buckets are large.
+ *
+ * @author excelsior
+ *
+ */
+public class MinHashPairGenerator implements CandidatePairGenerator {
+	private static double SCORE_ROUNDING = 0.005;
+
+	private int numBands;
+	private int rowsPerBand;
+
+	// Seed of each MinHash function
+	private long[] hashSeeds;
+
+	private int numExamples = 0;
+	private int numKeys = 0;
+	// Bucket of each example in each band of each id key, null for the id keys it has no tokens
+	// for, and the examples in each bucket in ascending order
+	private long[][][] exampleBuckets;
+	private List<Map<Long, int[]>> bandBuckets;
+
+	public MinHashPairGenerator(int numBands, int rowsPerBand)
+	{
+		this(numBands, rowsPerBand, 42L);
+	}
+
+	public MinHashPairGenerator(int numBands, int rowsPerBand, long seed)
+	{
+		if(numBands <= 0 || rowsPerBand <= 0) {
+			throw new IllegalArgumentException("Number of bands and rows per band must be positive");
+		}
+
+		this.numBands = numBands;
+		this.rowsPerBand = rowsPerBand;
+
+		Random random = new Random(seed);
+		hashSeeds = new long[numBands*rowsPerBand];
+		for(int index = 0; index < hashSeeds.length; index++) {
+			hashSeeds[index] = random.nextLong();
+		}
+	}
+
+	/**
+	 * Picks the bands and rows, among the ones using at most the given number of MinHash functions,
+	 * that make a pair scoring at least the given cutoff a candidate with at least the target
+	 * probability, for id key values of at most the given number of tokens. The most rows per band
+	 * are preferred, as they let the fewest dissimilar pairs through.
+	 *
+	 * @throws IllegalArgumentException if no bands and rows reach the target recall
+	 */
+	public static MinHashPairGenerator forTargetRecall(double minScore, int maxNumTokens, double targetRecall, 
+			int maxNumHashes)
+	{
+		double similarity = getJaccardFloor(minScore, maxNumTokens);
+		int bestNumBands = 0;
+		int bestRowsPerBand = 0;
+		for(int rowsPerBand = 1; rowsPerBand <= maxNumHashes; rowsPerBand++) {
+			int numBands = maxNumHashes/rowsPerBand;
+			if(getCandidateProbability(similarity, numBands, rowsPerBand) >= targetRecall) {
+				bestNumBands = numBands;
+				bestRowsPerBand = rowsPerBand;
+			}
+		}
+		
+		if(bestNumBands == 0) {
+			throw new IllegalArgumentException("A recall of " + targetRecall + " at a score of " + minScore + 
+					" (Jaccard similarity of " + similarity + ") needs more than " + maxNumHashes + 
+					" MinHash functions, which reach a recall of " + getCandidateProbability(similarity, maxNumHashes, 1));
+		}
+		return new MinHashPairGenerator(bestNumBands, bestRowsPerBand);
+	}
+
+	/**
+	 * Lowest Jaccard similarity of two token sets of at most maxNumTokens tokens each, such that 
+	 * the smaller set has at least a fraction containment of its tokens in the other one, as in
+	 * the two way containment score. Scores are rounded to two decimals, so the containment may be
+	 * up to half a hundredth below the score.
+	 */
+	public static double getJaccardFloor(double containment, int maxNumTokens)
+	{
+		double minContainment = containment - SCORE_ROUNDING;
+		if(minContainment <= 0) {
+			return 0.0;
+		}
+		
+		// The Jaccard similarity is lowest when the larger set has all the tokens it may have
+		double floor = 1.0;
+		for(int numTokens = 1; numTokens <= maxNumTokens; numTokens++) {
+			int numShared = (int)Math.ceil(minContainment*numTokens);
+			floor = Math.min(floor, numShared/(double)(numTokens + maxNumTokens - numShared));
+		}
+		return floor;
+	}
+
+	/**
+	 * Probability that a pair of examples with the given Jaccard similarity ends up being a
+	 * candidate pair, i.e. the S-curve of banded LSH.
+	 */
+	public static double getCandidateProbability(double similarity, int numBands, int rowsPerBand)
+	{
+		return 1.0 - Math.pow(1.0 - Math.pow(similarity, rowsPerBand), numBands);
+	}
+
+	@Override
+	public void index(List<Example> examples, List<String> idKeys)
+	{
+		numExamples = examples.size();
+		numKeys = idKeys.size();
+		exampleBuckets = new long[numExamples][][];
+
+		// Buckets of each band of each id key, at position key*numBands + band
+		List<Map<Long, IntList>> buckets = Lists.newArrayListWithCapacity(numKeys*numBands);
+		for(int index = 0; index < numKeys*numBands; index++) {
+			buckets.add(Maps.<Long, IntList>newHashMap());
+		}
+
+		for(int exampleIndex = 0; exampleIndex < numExamples; exampleIndex++) {
+			exampleBuckets[exampleIndex] = new long[numKeys][];
+			for(int keyIndex = 0; keyIndex < numKeys; keyIndex++) {
+				int[] signature = getSignature(examples.get(exampleIndex).getValueForAttribute(idKeys.get(keyIndex)));
+				if(signature == null) {
+					// No tokens, the value is no one's candidate
+					continue;
+				}
+
+				long[] keyBuckets = new long[numBands];
+				for(int band = 0; band < numBands; band++) {
+					long bucket = band;
+					for(int row = band*rowsPerBand; row < (band + 1)*rowsPerBand; row++) {
+						bucket = mix(bucket*31 + signature[row]);
+					}
+					keyBuckets[band] = bucket;
+
+					Map<Long, IntList> bucketsOfBand = buckets.get(keyIndex*numBands + band);
+					IntList bucketExamples = bucketsOfBand.get(bucket);
+					if(bucketExamples == null) {
+						bucketExamples = new IntList();
+						bucketsOfBand.put(bucket, bucketExamples);
+					}
+					bucketExamples.add(exampleIndex);
+				}
+				exampleBuckets[exampleIndex][keyIndex] = keyBuckets;
+			}
+		}
+
+		bandBuckets = Lists.newArrayListWithCapacity(buckets.size());
+		for(Map<Long, IntList> bucketsOfBand : buckets) {
+			Map<Long, int[]> trimmedBuckets = Maps.newHashMap();
+			for(Map.Entry<Long, IntList> entry : bucketsOfBand.entrySet()) {
+				// Singleton buckets never make a pair
+				if(entry.getValue().size > 1) {
+					trimmedBuckets.put(entry.getKey(), entry.getValue().toArray());
+				}
+			}
+			bandBuckets.add(trimmedBuckets);
+		}
+	}
+
+	/**
+	 * MinHash signature of the tokens of an id key value, or null if it has no tokens.
+	 */
+	private int[] getSignature(String value)
+	{
+		if(Strings.isNullOrEmpty(value)) {
+			return null;
+		}
+
+		int[] signature = null;
+		for(String token : MatchUtils.getTokenCache().tokenize(value)) {
+			if(signature == null) {
+				signature = new int[hashSeeds.length];
+				Arrays.fill(signature, Integer.MAX_VALUE);
+			}
+
+			long tokenHash = token.hashCode();
+			for(int index = 0; index < hashSeeds.length; index++) {
+				int hash = (int)mix(tokenHash ^ hashSeeds[index]);
+				if(hash < signature[index]) {
+					signature[index] = hash;
+				}
+			}
+		}
+
+		return signature;
+	}
+
+	/**
+	 * Finalizer of the SplitMix64 generator, which spreads every bit of the input over the output.
+	 */
+	private static long mix(long value)
+	{
+		value = (value ^ (value >>> 30))*0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27))*0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+
+	@Override
+	public int[] getCandidates(int exampleIndex)
+	{
+		IntList candidates = new IntList();
+		for(int keyIndex = 0; keyIndex < numKeys; keyIndex++) {
+			long[] keyBuckets = exampleBuckets[exampleIndex][keyIndex];
+			if(keyBuckets == null) {
+				continue;
+			}
+
+			for(int band = 0; band < numBands; band++) {
+				int[] bucketExamples = bandBuckets.get(keyIndex*numBands + band).get(keyBuckets[band]);
+				if(bucketExamples == null) {
+					continue;
+				}
+
+				int pos = Arrays.binarySearch(bucketExamples, exampleIndex + 1);
+				for(pos = pos >= 0 ? pos : -(pos + 1); pos < bucketExamples.length; pos++) {
+					candidates.add(bucketExamples[pos]);
+				}
+			}
+		}
+
+		// Pairs sharing several buckets only count once
+		int[] sortedCandidates = candidates.toArray();
+		Arrays.sort(sortedCandidates);
+		int numCandidates = 0;
+		for(int index = 0; index < sortedCandidates.length; index++) {
+			if(numCandidates == 0 || sortedCandidates[numCandidates - 1] != sortedCandidates[index]) {
+				sortedCandidates[numCandidates++] = sortedCandidates[index];
+			}
+		}
+		return Arrays.copyOf(sortedCandidates, numCandidates);
+	}
+
+	public int getNumBands() {
+		return numBands;
+	}
+
+	public int getRowsPerBand() {
+		return rowsPerBand;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("MinHashPairGenerator [numBands=").append(numBands).append(", rowsPerBand=")
+				.append(rowsPerBand).append("]");
+		return builder.toString();
+	}
+
+	/**
+	 * Growable list of ints.
+	 */
+	private static class IntList {
+		private int[] values = new int[4];
+		private int size = 0;
+
+		void add(int value)
+		{
+			if(size == values.length) {
+				values = Arrays.copyOf(values, 2*size);
+			}
+			values[size++] = value;
+		}
+
+		int[] toArray()
+		{
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package walmartlabs.productmatching.autorulegenerator.utils.blocking;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.utils.match.MatchUtils;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Generates the pairs of examples sharing enough tokens in their id key values to possibly reach
+ * a minimum similarity score, using an inverted index from every token to the examples having it.
+ *
+ * The similarity score of two examples is the average over the id keys of the two way token
+ * containment of their values (see {@link MatchUtils#getExamplePairSimilarityScore}). If tokens
+ * only count as contained when the exact same token is on the other side, the containment of a
+ * value is the share of its tokens that the other value has, which only depends on the tokens
+ * both values share. The index gives these shared tokens for all the pairs of an example at once,
+ * and the pairs whose score cannot reach the minimum (allowing for the rounding of the scores)
+ * are never generated. For such an exact token measure, the pairs reaching the minimum are
+ * exactly those of the all pairs loop.
+ *
+ * Fuzzy token comparers can also match tokens that differ, so pairs sharing no token at all may
+ * still score above the minimum. Blocking is then an approximation that trades these pairs for
+ * speed, which is why it has to be asked for.
+ *
+ * Candidates can be asked for from several threads at once.
+ *
+ * @author excelsior
+ *
+ */
+public class TokenBlockingPairGenerator implements CandidatePairGenerator {
+	// Scores are rounded to two decimals per id key, which may push them up by this much
+	private static double ROUNDING_SLACK = 0.005;
+	private static double EPSILON = 1e-9;
+
+	private double minSimilarityScore;
+
+	private int numExamples = 0;
+	private int numKeys = 0;
+
+	// Distinct tokens of the value of each id key, for each example
+	private String[][][] exampleTokens;
+	// Share of the tokens of the value that each distinct token accounts for
+	private double[][][] exampleTokenWeights;
+	// For each id key, the examples having each token along with the weight of the token
+	private List<Map<String, TokenPostings>> keyPostings;
+
+	// Per thread accumulators for the candidates of an example
+	private ThreadLocal<CandidateScratch> scratch = new ThreadLocal<CandidateScratch>();
+
+	public TokenBlockingPairGenerator(double minSimilarityScore)
+	{
+		this.minSimilarityScore = minSimilarityScore;
+	}
+
+	@Override
+	public void index(List<Example> examples, List<String> idKeys)
+	{
+		numExamples = examples.size();
+		numKeys = idKeys.size();
+		exampleTokens = new String[numKeys][numExamples][];
+		exampleTokenWeights = new double[numKeys][numExamples][];
+		keyPostings = Lists.newArrayListWithCapacity(numKeys);
+
+		for(int keyIndex = 0; keyIndex < numKeys; keyIndex++) {
+			String idKey = idKeys.get(keyIndex);
+			Map<String, TokenPostings> postings = Maps.newHashMap();
+			for(int exampleIndex = 0; exampleIndex < numExamples; exampleIndex++) {
+				indexValue(keyIndex, exampleIndex, examples.get(exampleIndex).getValueForAttribute(idKey), postings);
+			}
+
+			for(TokenPostings tokenPostings : postings.values()) {
+				tokenPostings.trim();
+			}
+			keyPostings.add(postings);
+		}
+
+		scratch = new ThreadLocal<CandidateScratch>();
+	}
+
+	private void indexValue(int keyIndex, int exampleIndex, String value, Map<String, TokenPostings> postings)
+	{
+		// Empty values score 0.0 against anything
+		if(Strings.isNullOrEmpty(value)) {
+			exampleTokens[keyIndex][exampleIndex] = new String[0];
+			exampleTokenWeights[keyIndex][exampleIndex] = new double[0];
+			return;
+		}
+
+		List<String> tokens = MatchUtils.getTokenCache().tokenize(value);
+		Map<String, Integer> tokenCounts = Maps.newLinkedHashMap();
+		for(String token : tokens) {
+			Integer count = tokenCounts.get(token);
+			tokenCounts.put(token, count == null ? 1 : count + 1);
+		}
+
+		String[] distinctTokens = new String[tokenCounts.size()];
+		double[] weights = new double[tokenCounts.size()];
+		int index = 0;
+		for(Map.Entry<String, Integer> entry : tokenCounts.entrySet()) {
+			distinctTokens[index] = entry.getKey();
+			weights[index] = entry.getValue()/(double)tokens.size();
+
+			TokenPostings tokenPostings = postings.get(entry.getKey());
+			if(tokenPostings == null) {
+				tokenPostings = new TokenPostings();
+				postings.put(entry.getKey(), tokenPostings);
+			}
+			tokenPostings.add(exampleIndex, weights[index]);
+			++index;
+		}
+
+		exampleTokens[keyIndex][exampleIndex] = distinctTokens;
+		exampleTokenWeights[keyIndex][exampleIndex] = weights;
+	}
+
+	@Override
+	public int[] getCandidates(int exampleIndex)
+	{
+		// Every pair reaches a minimum of zero, there is nothing to prune
+		double minTotalScore = (minSimilarityScore - ROUNDING_SLACK)*numKeys - EPSILON;
+		if(minTotalScore <= 0) {
+			return AllPairsGenerator.getExamplesBetween(exampleIndex + 1, numExamples);
+		}
+
+		CandidateScratch candidateScratch = getScratch();
+		for(int keyIndex = 0; keyIndex < numKeys; keyIndex++) {
+			String[] tokens = exampleTokens[keyIndex][exampleIndex];
+			double[] weights = exampleTokenWeights[keyIndex][exampleIndex];
+			Map<String, TokenPostings> postings = keyPostings.get(keyIndex);
+			for(int index = 0; index < tokens.length; index++) {
+				TokenPostings tokenPostings = postings.get(tokens[index]);
+				for(int pos = tokenPostings.getFirstAfter(exampleIndex); pos < tokenPostings.size; pos++) {
+					candidateScratch.addSharedToken(tokenPostings.examples[pos], weights[index], tokenPostings.weights[pos]);
+				}
+			}
+			candidateScratch.endKey();
+		}
+
+		return candidateScratch.getCandidates(minTotalScore);
+	}
+
+	private CandidateScratch getScratch()
+	{
+		CandidateScratch candidateScratch = scratch.get();
+		if(candidateScratch == null || candidateScratch.capacity() < numExamples) {
+			candidateScratch = new CandidateScratch(numExamples);
+			scratch.set(candidateScratch);
+		}
+		return candidateScratch;
+	}
+
+	public double getMinSimilarityScore() {
+		return minSimilarityScore;
+	}
+
+	/**
+	 * Examples having a token, in ascending order, along with the weight of the token in the
+	 * value of each example.
+	 */
+	private static class TokenPostings {
+		private int[] examples = new int[2];
+		private double[] weights = new double[2];
+		private int size = 0;
+
+		void add(int exampleIndex, double weight)
+		{
+			if(size == examples.length) {
+				examples = Arrays.copyOf(examples, 2*size);
+				weights = Arrays.copyOf(weights, 2*size);
+			}
+			examples[size] = exampleIndex;
+			weights[size] = weight;
+			++size;
+		}
+
+		void trim()
+		{
+			examples = Arrays.copyOf(examples, size);
+			weights = Arrays.copyOf(weights, size);
+		}
+
+		/**
+		 * Position of the first example after the given one.
+		 */
+		int getFirstAfter(int exampleIndex)
+		{
+			int pos = Arrays.binarySearch(examples, 0, size, exampleIndex + 1);
+			return pos >= 0 ? pos : -(pos + 1);
+		}
+	}
+
+	/**
+	 * Accumulates the token containment of an example with all the examples it shares tokens
+	 * with, first for the current id key and then summed over the id keys.
+	 */
+	private static class CandidateScratch {
+		// Containment of the example in each other example, and the other way round, for the
+		// current id key
+		private double[] forwardScores;
+		private double[] backwardScores;
+		private int[] keyTouched;
+		private int numKeyTouched = 0;
+
+		// Sum over the id keys of the two way containment
+		private double[] totalScores;
+		private boolean[] isTouched;
+		private int[] touched;
+		private int numTouched = 0;
+
+		CandidateScratch(int capacity)
+		{
+			forwardScores = new double[capacity];
+			backwardScores = new double[capacity];
+			keyTouched = new int[capacity];
+			totalScores = new double[capacity];
+			isTouched = new boolean[capacity];
+			touched = new int[capacity];
+		}
+
+		int capacity() {
+			return isTouched.length;
+		}
+
+		void addSharedToken(int otherIndex, double weight, double otherWeight)
+		{
+			if(forwardScores[otherIndex] == 0.0) {
+				keyTouched[numKeyTouched++] = otherIndex;
+			}
+			forwardScores[otherIndex] += weight;
+			backwardScores[otherIndex] += otherWeight;
+		}
+
+		void endKey()
+		{
+			for(int index = 0; index < numKeyTouched; index++) {
+				int otherIndex = keyTouched[index];
+				if(!isTouched[otherIndex]) {
+					isTouched[otherIndex] = true;
+					touched[numTouched++] = otherIndex;
+				}
+				totalScores[otherIndex] += Math.min(1.0, Math.max(forwardScores[otherIndex], backwardScores[otherIndex]));
+				forwardScores[otherIndex] = 0.0;
+				backwardScores[otherIndex] = 0.0;
+			}
+			numKeyTouched = 0;
+		}
+
+		/**
+		 * Returns the examples whose total score reaches the minimum, and resets the scratch.
+		 */
+		int[] getCandidates(double minTotalScore)
+		{
+			int numCandidates = 0;
+			int[] candidates = new int[numTouched];
+			for(int index = 0; index < numTouched; index++) {
+				int otherIndex = touched[index];
+				if(totalScores[otherIndex] >= minTotalScore) {
+					candidates[numCandidates++] = otherIndex;
+				}
+				totalScores[otherIndex] = 0.0;
+				isTouched[otherIndex] = false;
+			}
+			numTouched = 0;
+
+			candidates = Arrays.copyOf(candidates, numCandidates);
+			Arrays.sort(candidates);
+			return candidates;
+		}
+	}
+}
@@ -0,0 +1,403 @@
+package walmartlabs.productmatching.autorulegenerator.utils.input;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.ExampleSchema;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Streams the examples of a file in the arff format, one data row at a time. The header is read
+ * when the iterator is created, and a row is only read when the example before it has been
+ * handed out, so that only one row is held in memory however large the file is.
+ *
+ * Values are split with a tokenizer that knows about quoting : a value may be quoted with single
+ * or double quotes, may then hold commas, whitespace and the other quote, and may escape
+ * characters with a backslash. An unquoted ? is a missing value.
+ *
+ * Both dense rows and sparse rows ({index value, index value, ...}) are read. A dense row lists a
+ * value for every attribute, ? for a missing one, and a row with fewer or more values than the
+ * attributes is malformed. The examples share the schema of the header, and a sparse row makes a
+ * sparse example, which only holds the values present in the row. The values left out of a sparse
+ * row and the missing values are not in the example at all, rather than being zero as in the arff
+ * format, since they are attribute values that the item does not have.
+ *
+ * Examples are handed out without an id.
+ *
+ * @author excelsior
+ *
+ */
+public class ArffExampleIterator implements Iterator<Example>, Closeable {
+	private static String RELATION_IDENTIFIER = "@relation";
+	private static String ATTRIBUTE_IDENTIFIER = "@attribute";
+	private static String DATA_IDENTIFIER = "@data";
+	private static String COMMENT_IDENTIFIER = "%";
+	private static String MISSING_VALUE = "?";
+
+	private BufferedReader reader;
+	private int lineNumber = 0;
+
+	private String relationName;
+	private List<Feature> features = Lists.newArrayList();
+	private ExampleSchema schema = new ExampleSchema();
+
+	private Example nextExample;
+	private boolean isClosed = false;
+
+	public ArffExampleIterator(File arffFile) throws IOException
+	{
+		this(new FileReader(arffFile));
+	}
+
+	/**
+	 * Reads the header from the reader, which is then read from as examples are asked for, and
+	 * closed by {@link #close()}.
+	 */
+	public ArffExampleIterator(Reader arffReader) throws IOException
+	{
+		this.reader = new BufferedReader(arffReader);
+		try {
+			readHeader();
+		}
+		catch (IOException e) {
+			reader.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if(nextExample == null && !isClosed) {
+			try {
+				nextExample = readExample();
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Could not read arff data at line " + lineNumber, e);
+			}
+		}
+		return nextExample != null;
+	}
+
+	@Override
+	public Example next()
+	{
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Example example = nextExample;
+		nextExample = null;
+		return example;
+	}
+
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if(!isClosed) {
+			isClosed = true;
+			nextExample = null;
+			reader.close();
+		}
+	}
+
+	public String getRelationName() {
+		return relationName;
+	}
+
+	/**
+	 * Features of the attributes declared in the header, in the order of declaration.
+	 */
+	public List<Feature> getFeatures() {
+		return Collections.unmodifiableList(features);
+	}
+
+	/**
+	 * Schema of the attributes declared in the header, shared by the examples.
+	 */
+	public ExampleSchema getSchema() {
+		return schema;
+	}
+
+	private void readHeader() throws IOException
+	{
+		String currLine;
+		while((currLine = readLine()) != null) {
+			String keyword = currLine.toLowerCase();
+			if(keyword.startsWith(RELATION_IDENTIFIER)) {
+				ArffLineTokenizer tokenizer = new ArffLineTokenizer(currLine, RELATION_IDENTIFIER.length());
+				relationName = tokenizer.nextName();
+			}
+			else if(keyword.startsWith(ATTRIBUTE_IDENTIFIER)) {
+				ArffLineTokenizer tokenizer = new ArffLineTokenizer(currLine, ATTRIBUTE_IDENTIFIER.length());
+				String attrName = tokenizer.nextName();
+				String attrType = tokenizer.rest();
+				if(attrName == null || attrType.isEmpty()) {
+					throw new IOException("Malformed attribute declaration at line " + lineNumber + " : " + currLine);
+				}
+				Feature feature = schema.getFeatureRegistry().getFeature(attrName, DataType.getDataType(attrType));
+				features.add(feature);
+				schema.addAttribute(attrName, Lists.newArrayList(feature));
+			}
+			else if(keyword.startsWith(DATA_IDENTIFIER)) {
+				return;
+			}
+		}
+		throw new IOException("No " + DATA_IDENTIFIER + " section in the arff data");
+	}
+
+	/**
+	 * Reads the next data row, or returns null at the end of the data.
+	 */
+	private Example readExample() throws IOException
+	{
+		String currLine = readLine();
+		if(currLine == null) {
+			close();
+			return null;
+		}
+
+		try {
+			return currLine.startsWith("{") ? readSparseRow(currLine) : readDenseRow(currLine);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IOException("Malformed data row at line " + lineNumber + " : " + e.getMessage(), e);
+		}
+	}
+
+	private Example readDenseRow(String currLine)
+	{
+		String[] values = new String[features.size()];
+		ArffLineTokenizer tokenizer = new ArffLineTokenizer(currLine, 0);
+		int index = 0;
+		while(tokenizer.hasMoreValues()) {
+			if(index >= features.size()) {
+				throw new IllegalArgumentException("more values than the " + features.size() + " attributes");
+			}
+			values[index++] = schema.intern(tokenizer.nextValue());
+		}
+		if(index < features.size()) {
+			throw new IllegalArgumentException("fewer values than the " + features.size() + " attributes");
+		}
+		return new Example(null, schema, values);
+	}
+
+	private Example readSparseRow(String currLine)
+	{
+		if(!currLine.endsWith("}")) {
+			throw new IllegalArgumentException("sparse row is not closed with }");
+		}
+
+		int[] attrIndexes = new int[4];
+		String[] values = new String[4];
+		int numValues = 0;
+		ArffLineTokenizer tokenizer = new ArffLineTokenizer(currLine.substring(0, currLine.length() - 1), 1);
+		while(tokenizer.hasMoreValues()) {
+			int index = tokenizer.nextIndex();
+			if(index < 0 || index >= features.size()) {
+				throw new IllegalArgumentException("no attribute at index " + index);
+			}
+			if(numValues > 0 && index <= attrIndexes[numValues - 1]) {
+				throw new IllegalArgumentException("attribute index " + index + " is not in ascending order");
+			}
+			String value = tokenizer.nextValue();
+			if(value == null) {
+				continue;
+			}
+
+			if(numValues == values.length) {
+				attrIndexes = Arrays.copyOf(attrIndexes, 2*numValues);
+				values = Arrays.copyOf(values, 2*numValues);
+			}
+			attrIndexes[numValues] = index;
+			values[numValues++] = schema.intern(value);
+		}
+		return new Example(null, schema, Arrays.copyOf(attrIndexes, numValues), Arrays.copyOf(values, numValues));
+	}
+
+	/**
+	 * Reads the next line that is neither blank nor a comment, trimmed.
+	 */
+	private String readLine() throws IOException
+	{
+		String currLine;
+		while((currLine = reader.readLine()) != null) {
+			++lineNumber;
+			currLine = currLine.trim();
+			if(!currLine.isEmpty() && !currLine.startsWith(COMMENT_IDENTIFIER)) {
+				return currLine;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Splits a line of arff into names and comma separated values.
+	 */
+	static class ArffLineTokenizer {
+		private String line;
+		private int pos;
+
+		ArffLineTokenizer(String line, int from)
+		{
+			this.line = line;
+			this.pos = from;
+		}
+
+		/**
+		 * Whether there is another value on the line. A comma at the end of the line is not
+		 * taken as an empty value after it.
+		 */
+		boolean hasMoreValues()
+		{
+			skipWhitespace();
+			return pos < line.length();
+		}
+
+		/**
+		 * Next comma separated value, unquoted, or null if it is missing.
+		 */
+		String nextValue()
+		{
+			skipWhitespace();
+
+			String value;
+			if(isQuote(peek())) {
+				value = readQuoted();
+			}
+			else {
+				int start = pos;
+				while(pos < line.length() && line.charAt(pos) != ',') {
+					++pos;
+				}
+				value = line.substring(start, pos).trim();
+				if(value.equals(MISSING_VALUE)) {
+					value = null;
+				}
+			}
+
+			skipWhitespace();
+			if(pos < line.length()) {
+				if(line.charAt(pos) != ',') {
+					throw new IllegalArgumentException("expected , after a value at column " + (pos + 1));
+				}
+				++pos;
+			}
+			return value;
+		}
+
+		/**
+		 * Index of the next value of a sparse row, which comes before the value itself.
+		 */
+		int nextIndex()
+		{
+			skipWhitespace();
+			int start = pos;
+			while(pos < line.length() && Character.isDigit(line.charAt(pos))) {
+				++pos;
+			}
+			if(start == pos) {
+				throw new IllegalArgumentException("expected an attribute index at column " + (pos + 1));
+			}
+			return Integer.parseInt(line.substring(start, pos));
+		}
+
+		/**
+		 * Next whitespace separated name, unquoted, or null if there is none.
+		 */
+		String nextName()
+		{
+			skipWhitespace();
+			if(pos >= line.length()) {
+				return null;
+			}
+			if(isQuote(peek())) {
+				return readQuoted();
+			}
+
+			int start = pos;
+			while(pos < line.length() && !Character.isWhitespace(line.charAt(pos))) {
+				++pos;
+			}
+			return line.substring(start, pos);
+		}
+
+		/**
+		 * Rest of the line, trimmed.
+		 */
+		String rest()
+		{
+			String rest = line.substring(Math.min(pos, line.length())).trim();
+			pos = line.length();
+			return rest;
+		}
+
+		private String readQuoted()
+		{
+			char quote = line.charAt(pos++);
+			StringBuilder value = new StringBuilder();
+			while(pos < line.length()) {
+				char c = line.charAt(pos++);
+				if(c == quote) {
+					return value.toString();
+				}
+				if(c == '\\' && pos < line.length()) {
+					value.append(unescape(line.charAt(pos++)));
+				}
+				else {
+					value.append(c);
+				}
+			}
+			throw new IllegalArgumentException("unterminated quoted value");
+		}
+
+		private static char unescape(char c)
+		{
+			switch(c) {
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 't':
+				return '\t';
+			default:
+				return c;
+			}
+		}
+
+		private static boolean isQuote(char c)
+		{
+			return c == '"' || c == '\'';
+		}
+
+		private char peek()
+		{
+			return pos < line.length() ? line.charAt(pos) : 0;
+		}
+
+		private void skipWhitespace()
+		{
+			while(pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+				++pos;
+			}
+		}
+	}
+}
@@ -1,16 +1,19 @@
 package walmartlabs.productmatching.autorulegenerator.utils.input;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import walmartlabs.productmatching.autorulegenerator.model.Dataset;
 import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
 import walmartlabs.productmatching.autorulegenerator.model.Example;
 import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.utils.blocking.AllPairsGenerator;
+import walmartlabs.productmatching.autorulegenerator.utils.blocking.CandidatePairGenerator;
+import walmartlabs.productmatching.autorulegenerator.utils.blocking.TokenBlockingPairGenerator;
 
 import com.google.common.collect.Lists;
 
@@ -22,6 +25,24 @@ import walmartlabs.productmatching.autorulegenerator.utils.match.MatchUtils;
  *
  */
 public abstract class DatasetReader {
+	// Pairs of examples less similar than this are not worth matching
+	public static final double MATCH_LOWER_LIMIT_SCORE = 0.25;
+	
+	// Which pairs of examples to score, all of them by default
+	private CandidatePairGenerator pairGenerator = new AllPairsGenerator();
+	
+	// Pool on which blocks of example pairs are scored in parallel. Everything runs on the calling
+	// thread if no pool is set.
+	private ForkJoinPool forkJoinPool = null;
+	
+	// Blocks of rows of the pair triangle hold at least this many pairs, counting all the pairs
+	private int minPairsPerBlock = 1 << 16;
+	
+	// Are the example pairs dumped into matched_pairs.txt and mismatched_pairs.txt ?
+	private boolean isDumpingExamplePairs = true;
+	// Directory the pairs are dumped into, the working directory if not set
+	private File dumpDirectory = null;
+	
 	/**
 	 * Parses the file to extract the dataset and relevant metadata. It includes :
 	 * 
@@ -49,82 +70,287 @@ public abstract class DatasetReader {
 		return idForEx.toString();
 	}
 	
+	public ForkJoinPool getForkJoinPool() {
+		return forkJoinPool;
+	}
+
 	/**
-	 * Generates all the example pairs from the examples
+	 * Sets the pool to pair the examples on. The pair generator and the similarity scores must 
+	 * then be safe to use from several threads, which the ones of this project are.
+	 */
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	public int getMinPairsPerBlock() {
+		return minPairsPerBlock;
+	}
+
+	public void setMinPairsPerBlock(int minPairsPerBlock) {
+		this.minPairsPerBlock = minPairsPerBlock;
+	}
+
+	public boolean isDumpingExamplePairs() {
+		return isDumpingExamplePairs;
+	}
+
+	public void setDumpingExamplePairs(boolean isDumpingExamplePairs) {
+		this.isDumpingExamplePairs = isDumpingExamplePairs;
+	}
+
+	public File getDumpDirectory() {
+		return dumpDirectory;
+	}
+
+	public void setDumpDirectory(File dumpDirectory) {
+		this.dumpDirectory = dumpDirectory;
+	}
+
+	public CandidatePairGenerator getPairGenerator() {
+		return pairGenerator;
+	}
+
+	/**
+	 * Sets the generator of the pairs of examples to score, e.g. a {@link TokenBlockingPairGenerator}
+	 * built with {@link #MATCH_LOWER_LIMIT_SCORE}, to skip the pairs that cannot reach it.
+	 */
+	public void setPairGenerator(CandidatePairGenerator pairGenerator) {
+		this.pairGenerator = pairGenerator;
+	}
+	
+	/**
+	 * Generates all the example pairs from the examples. Only the candidate pairs of the pair
+	 * generator are scored, and the score statistics only cover them. Pairs below the lower limit
+	 * are only counted, as their scoring stops with an upper bound of their score.
+	 * 
+	 * The rows of the (i, j) triangle of pairs are cut into blocks of about the same number of 
+	 * pairs, which are paired in parallel if a pool is set. Each block keeps its pairs and its 
+	 * statistics to itself, and the blocks are merged in row order, so the pairs come out in the
+	 * same order whatever the number of threads.
+	 * 
+	 * The pairs worth matching are dumped on a thread of their own while pairing goes on, unless
+	 * dumping is turned off. The pairs of a block are handed over to the dump once it and all the
+	 * blocks before it are paired, so the files are in the same order as the pairs.
+	 * 
+	 * The token cache of the scores is cleared once pairing is over.
 	 * @throws IOException 
 	 */
 	public List<ExamplePair> getExamplePairs(List<Example> examples, List<String> idKeys) throws IOException
 	{
-		File matchedFile = new File("matched_pairs.txt");
-		File mismatchedFile = new File("mismatched_pairs.txt");
-		
-		System.out.println("Matched file location : " + matchedFile.getAbsolutePath());
-		System.out.println("Mismatched file location : " + mismatchedFile.getAbsolutePath());		
+		Collections.sort(examples);
+		pairGenerator.index(examples, idKeys);
+		// Pairs that cannot reach the lower limit are not scored any further than needed to know it
+		int[] idKeysScoringOrder = MatchUtils.getIdKeysScoringOrder(examples, idKeys);
 		
-		BufferedWriter matchedWriter = new BufferedWriter(new FileWriter(matchedFile));
-		BufferedWriter mismatchedWriter = new BufferedWriter(new FileWriter(mismatchedFile)); 
+		int[] blockRows = getBlockRows(examples.size());
+		PairingBlock[] blocks = new PairingBlock[blockRows.length - 1];
+		for(int index = 0; index < blocks.length; index++) {
+			blocks[index] = new PairingBlock(examples, idKeys, idKeysScoringOrder, MATCH_LOWER_LIMIT_SCORE, 
+					blockRows[index], blockRows[index + 1]);
+		}
 		
-		double match_lower_limit_score = 0.25;
-		double match_upper_limit_score = 1.00;
+		ExamplePairDumpWriter dumpWriter = null;
+		if(isDumpingExamplePairs) {
+			File matchedFile = new File(dumpDirectory, "matched_pairs.txt");
+			File mismatchedFile = new File(dumpDirectory, "mismatched_pairs.txt");
+			
+			System.out.println("Matched file location : " + matchedFile.getAbsolutePath());
+			System.out.println("Mismatched file location : " + mismatchedFile.getAbsolutePath());		
+			dumpWriter = new ExamplePairDumpWriter(matchedFile, mismatchedFile);
+		}
 		
-		double maxScore = 0.0;
-		double minScore = 0.0;
-		double totalScore = 0.0;
+		OrderedBlockDump blockDump = new OrderedBlockDump(blocks, dumpWriter);
+		try {
+			if(forkJoinPool != null && blocks.length > 1) {
+				forkJoinPool.invoke(new PairingTask(blocks, blockDump, 0, blocks.length));
+			}
+			else {
+				for(int index = 0; index < blocks.length; index++) {
+					blocks[index].pair();
+					blockDump.blockPaired(index);
+				}
+			}
+		}
+		finally {
+			// The tokens are only worth keeping while the examples of this run are paired
+			MatchUtils.getTokenCache().clear();
+			if(dumpWriter != null) {
+				dumpWriter.close();
+			}
+		}
 		
-		Collections.sort(examples);
 		List<ExamplePair> exPairs = Lists.newArrayList();
-		int matchedExamplePairs = 0;
-		int totalPairs = 0;
-		for(int i=0; i < examples.size()-1; i++) {
-			Example ex1 = examples.get(i);
-			for(int j=i+1; j < examples.size(); j++) {
-				++totalPairs;
-				boolean isPairWorthMatching = true;
-				boolean isPairSureMatch = false;
-				Example ex2 = examples.get(j);
-				double simScore = MatchUtils.getExamplePairSimilarityScore(ex1, ex2, idKeys);
-				totalScore += simScore;
-				if(simScore > maxScore) {
-					maxScore = simScore;
-				}
-				else if(simScore < minScore) {
-					minScore = simScore;
-				}
-				
-				if(Double.compare(simScore, match_upper_limit_score) >= 0) {
-					++matchedExamplePairs;
-					isPairSureMatch = true;
-					isPairWorthMatching = true;
-				}
-				else if(Double.compare(match_lower_limit_score, simScore) > 0) {
-					isPairWorthMatching = false;
-				}
-				
-				// TODO : The class label has to be determined
-				if(isPairWorthMatching) {
-					DecisionTreeClassLabel label = DecisionTreeClassLabel.MISMATCH;
-					BufferedWriter writer = mismatchedWriter;
-					if(isPairSureMatch) {
-						writer = matchedWriter;
-						label = DecisionTreeClassLabel.MATCH;
+		PairingStatistics pairingStats = new PairingStatistics();
+		for(PairingBlock block : blocks) {
+			exPairs.addAll(block.exPairs);
+			pairingStats.merge(block.pairingStats);
+		}
+		
+		System.out.println("Collected " + exPairs.size() + " example pairs.");
+		System.out.println("Matched Pairs for sure : " + pairingStats.getNumSureMatches());
+		System.out.println("Pairs below the lower limit, left out of the scores : " + pairingStats.getNumPairsBelowLimit());
+		System.out.println("Min score : " + pairingStats.getMinScore());
+		System.out.println("Max score : " + pairingStats.getMaxScore());
+		System.out.println("Average score : " + pairingStats.getAverageScore());
+		return exPairs;
+	}
+	
+	/**
+	 * Cuts the rows of the (i, j) triangle of n examples into blocks of about the same number of
+	 * pairs, counting all the pairs. Returns the first row of each block, followed by n - 1. The
+	 * blocks only depend on the number of examples.
+	 */
+	private int[] getBlockRows(int numExamples)
+	{
+		List<Integer> blockRows = Lists.newArrayList();
+		blockRows.add(0);
+		long blockPairs = 0;
+		for(int i=0; i < numExamples-1; i++) {
+			blockPairs += numExamples - 1 - i;
+			if(blockPairs >= minPairsPerBlock) {
+				blockRows.add(i + 1);
+				blockPairs = 0;
+			}
+		}
+		if(blockRows.get(blockRows.size() - 1) < numExamples - 1) {
+			blockRows.add(numExamples - 1);
+		}
+		
+		int[] rows = new int[blockRows.size()];
+		for(int index = 0; index < rows.length; index++) {
+			rows[index] = blockRows.get(index);
+		}
+		return rows;
+	}
+	
+	/**
+	 * Pairs the examples at rows [fromRow, toRow) of the (i, j) triangle with their candidates, 
+	 * and keeps the pairs worth matching.
+	 */
+	private class PairingBlock {
+		private List<Example> examples;
+		private List<String> idKeys;
+		private int[] idKeysScoringOrder;
+		private double matchLowerLimitScore;
+		private int fromRow;
+		private int toRow;
+		
+		private List<ExamplePair> exPairs = Lists.newArrayList();
+		private PairingStatistics pairingStats = new PairingStatistics();
+		
+		PairingBlock(List<Example> examples, List<String> idKeys, int[] idKeysScoringOrder, double matchLowerLimitScore,
+				int fromRow, int toRow)
+		{
+			this.examples = examples;
+			this.idKeys = idKeys;
+			this.idKeysScoringOrder = idKeysScoringOrder;
+			this.matchLowerLimitScore = matchLowerLimitScore;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+		}
+		
+		void pair()
+		{
+			double match_lower_limit_score = matchLowerLimitScore;
+			double match_upper_limit_score = 1.00;
+			
+			for(int i=fromRow; i < toRow; i++) {
+				Example ex1 = examples.get(i);
+				for(int j : pairGenerator.getCandidates(i)) {
+					boolean isPairWorthMatching = true;
+					boolean isPairSureMatch = false;
+					Example ex2 = examples.get(j);
+					double simScore = MatchUtils.getExamplePairSimilarityScore(ex1, ex2, idKeys, 
+							idKeysScoringOrder, match_lower_limit_score);
+					
+					if(Double.compare(simScore, match_upper_limit_score) >= 0) {
+						isPairSureMatch = true;
+						isPairWorthMatching = true;
+					}
+					else if(Double.compare(match_lower_limit_score, simScore) > 0) {
+						isPairWorthMatching = false;
+					}
+					
+					// Only the pairs reaching the upper limit are labelled as matches
+					if(!isPairWorthMatching) {
+						pairingStats.addPairBelowLimit();
+					}
+					else {
+						pairingStats.addScore(simScore);
+						pairingStats.addPairWorthMatching(isPairSureMatch);
+						DecisionTreeClassLabel label = DecisionTreeClassLabel.MISMATCH;
+						if(isPairSureMatch) {
+							label = DecisionTreeClassLabel.MATCH;
+						}
+						exPairs.add(new ExamplePair(ex1, ex2, label));
 					}
-					ExamplePair exPair = new ExamplePair(ex1, ex2, label);
-					exPairs.add(exPair);
-					writer.write(exPair.toString());
-					writer.newLine();
 				}
-
 			}
 		}
+	}
+	
+	/**
+	 * Hands the pairs of the blocks over to the dump in row order, as soon as a block and all the
+	 * blocks before it are paired. Does nothing if there is no dump.
+	 */
+	private static class OrderedBlockDump {
+		private PairingBlock[] blocks;
+		private ExamplePairDumpWriter dumpWriter;
+		
+		private boolean[] isPaired;
+		// First block not handed over yet
+		private int nextBlock = 0;
+		
+		OrderedBlockDump(PairingBlock[] blocks, ExamplePairDumpWriter dumpWriter)
+		{
+			this.blocks = blocks;
+			this.dumpWriter = dumpWriter;
+			this.isPaired = new boolean[blocks.length];
+		}
 		
-		matchedWriter.close();
-		mismatchedWriter.close();
-		double avgScore = (totalScore/(double)totalPairs);
-		System.out.println("Collected " + exPairs.size() + " example pairs.");
-		System.out.println("Matched Pairs for sure : " + matchedExamplePairs);
-		System.out.println("Min score : " + minScore);
-		System.out.println("Max score : " + maxScore);
-		System.out.println("Average score : " + avgScore);
-		return exPairs;
+		synchronized void blockPaired(int index)
+		{
+			if(dumpWriter == null) {
+				return;
+			}
+			
+			isPaired[index] = true;
+			while(nextBlock < blocks.length && isPaired[nextBlock]) {
+				dumpWriter.write(blocks[nextBlock].exPairs);
+				++nextBlock;
+			}
+		}
+	}
+	
+	/**
+	 * Pairs a slice of the blocks, splitting it in halves until a single block is left.
+	 */
+	@SuppressWarnings("serial")
+	private static class PairingTask extends RecursiveAction {
+		private PairingBlock[] blocks;
+		private OrderedBlockDump blockDump;
+		private int lo;
+		private int hi;
+		
+		PairingTask(PairingBlock[] blocks, OrderedBlockDump blockDump, int lo, int hi)
+		{
+			this.blocks = blocks;
+			this.blockDump = blockDump;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if(hi - lo == 1) {
+				blocks[lo].pair();
+				blockDump.blockPaired(lo);
+				return;
+			}
+			
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new PairingTask(blocks, blockDump, lo, mid), new PairingTask(blocks, blockDump, mid, hi));
+		}
 	}
 }
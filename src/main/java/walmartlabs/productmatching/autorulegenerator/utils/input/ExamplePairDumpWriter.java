@@ -0,0 +1,228 @@
+package walmartlabs.productmatching.autorulegenerator.utils.input;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Dumps example pairs into a file of matched pairs and a file of mismatched pairs, on a thread
+ * of its own.
+ *
+ * Pairs are handed over in batches through a bounded queue, so that pairing examples does not
+ * wait for the disk unless the dump falls too far behind. The dump thread formats each batch as
+ * a whole and writes it out with one call per file. Pairs are dumped in the order they are
+ * handed over.
+ *
+ * A failure to dump a batch, be it a failure to write or anything thrown while formatting the
+ * pairs, stops the dump : the pairs handed over afterwards are dropped, and the failure is thrown
+ * by {@link #close()}. The dump thread keeps draining the queue after a failure, and handing
+ * pairs over gives up if the dump thread is gone, so that no one waits on a full queue.
+ *
+ * @author excelsior
+ *
+ */
+public class ExamplePairDumpWriter implements Closeable {
+	// Marks the end of the pairs in the queue
+	private static final List<ExamplePair> END_OF_PAIRS = Lists.newArrayList();
+	// How long handing a batch over waits before checking that the dump thread is still there
+	private static long PUT_BATCH_WAIT_MILLIS = 100;
+
+	private Writer matchedWriter;
+	private Writer mismatchedWriter;
+
+	private BlockingQueue<List<ExamplePair>> batches;
+	private int batchSize;
+
+	private Thread dumpThread;
+	// First failure of the dump, set from any thread
+	private AtomicReference<IOException> dumpError = new AtomicReference<IOException>();
+	private volatile long numPairsDumped = 0;
+	private boolean isClosed = false;
+
+	public ExamplePairDumpWriter(File matchedFile, File mismatchedFile) throws IOException
+	{
+		this(matchedFile, mismatchedFile, 64, 1024);
+	}
+
+	/**
+	 * @param queueCapacity batches waiting to be dumped before handing pairs over blocks
+	 * @param batchSize pairs per batch
+	 */
+	public ExamplePairDumpWriter(File matchedFile, File mismatchedFile, int queueCapacity, int batchSize) throws IOException
+	{
+		this.matchedWriter = new BufferedWriter(new FileWriter(matchedFile));
+		try {
+			this.mismatchedWriter = new BufferedWriter(new FileWriter(mismatchedFile));
+		}
+		catch (IOException e) {
+			matchedWriter.close();
+			throw e;
+		}
+
+		this.batches = new ArrayBlockingQueue<List<ExamplePair>>(queueCapacity);
+		this.batchSize = batchSize;
+
+		dumpThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				dumpBatches();
+			}
+		}, "example-pair-dump");
+		dumpThread.start();
+	}
+
+	/**
+	 * Hands example pairs over to be dumped, the MATCH ones into the matched file and the others
+	 * into the mismatched file. Only blocks if the queue of batches is full. The pairs of a call
+	 * are dumped together, even if several threads hand pairs over at once.
+	 */
+	public synchronized void write(List<ExamplePair> exPairs)
+	{
+		if(isClosed) {
+			throw new IllegalStateException("Example pair dump is closed");
+		}
+
+		for(int from = 0; from < exPairs.size() && dumpError.get() == null; from += batchSize) {
+			int to = Math.min(from + batchSize, exPairs.size());
+			if(!putBatch(Lists.newArrayList(exPairs.subList(from, to)))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Waits for all the pairs handed over to be dumped and closes the files.
+	 *
+	 * @throws IOException if dumping any of the pairs failed
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if(isClosed) {
+			return;
+		}
+		isClosed = true;
+
+		putBatch(END_OF_PAIRS);
+		try {
+			dumpThread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the example pair dump", e);
+		}
+
+		if(dumpError.get() != null) {
+			throw dumpError.get();
+		}
+	}
+
+	/**
+	 * Hands a batch over to the dump thread. Returns false, after recording why, if the batch
+	 * could not be handed over.
+	 */
+	private boolean putBatch(List<ExamplePair> batch)
+	{
+		try {
+			while(!batches.offer(batch, PUT_BATCH_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+				if(!dumpThread.isAlive()) {
+					setDumpError(new IOException("Example pair dump thread is gone"));
+					return false;
+				}
+			}
+			return true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			setDumpError(new IOException("Interrupted while handing example pairs over to the dump", e));
+			return false;
+		}
+	}
+
+	private void dumpBatches()
+	{
+		StringBuilder matchedLines = new StringBuilder();
+		StringBuilder mismatchedLines = new StringBuilder();
+		String lineSeparator = System.getProperty("line.separator");
+		try {
+			List<ExamplePair> batch;
+			while((batch = batches.take()) != END_OF_PAIRS) {
+				// Keep draining after a failure, so that no one waits on a full queue
+				if(dumpError.get() != null) {
+					continue;
+				}
+
+				try {
+					for(ExamplePair exPair : batch) {
+						StringBuilder lines = DecisionTreeClassLabel.MATCH.equals(exPair.getClassLabel()) ?
+								matchedLines : mismatchedLines;
+						exPair.appendTo(lines);
+						lines.append(lineSeparator);
+					}
+
+					matchedWriter.append(matchedLines);
+					mismatchedWriter.append(mismatchedLines);
+					numPairsDumped += batch.size();
+				}
+				catch (Throwable t) {
+					setDumpError(t);
+				}
+				finally {
+					matchedLines.setLength(0);
+					mismatchedLines.setLength(0);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			setDumpError(new IOException("Example pair dump was interrupted", e));
+		}
+		finally {
+			closeWriters();
+		}
+	}
+
+	/**
+	 * Records the first failure of the dump, as an IOException.
+	 */
+	private void setDumpError(Throwable t)
+	{
+		dumpError.compareAndSet(null, t instanceof IOException ? (IOException)t : new IOException("Could not dump example pairs", t));
+	}
+
+	private void closeWriters()
+	{
+		try {
+			matchedWriter.close();
+		}
+		catch (IOException e) {
+			setDumpError(e);
+		}
+
+		try {
+			mismatchedWriter.close();
+		}
+		catch (IOException e) {
+			setDumpError(e);
+		}
+	}
+
+	/**
+	 * Number of pairs written out so far.
+	 */
+	public long getNumPairsDumped() {
+		return numPairsDumped;
+	}
+}
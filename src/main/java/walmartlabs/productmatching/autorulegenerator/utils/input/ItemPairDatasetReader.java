@@ -4,17 +4,25 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import walmartlabs.productmatching.autorulegenerator.model.Dataset;
 import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
 import walmartlabs.productmatching.autorulegenerator.model.Example;
 import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.ExampleSchema;
 import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.FeatureRegistry;
+import walmartlabs.productmatching.autorulegenerator.utils.match.MatchUtils;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.walmart.productgenome.pairComparison.utils.comparers.ComparersFactory;
 import com.walmart.productgenome.pairComparison.utils.comparers.IComparer;
 
@@ -33,10 +41,53 @@ public class ItemPairDatasetReader {
 	private static String VALUE_DELIMITER = "\\|#";
 	private static String WHITESPACE_DELIMITER = " ";
 	
+	// Chunks of the files parsed in parallel are at least this large, in bytes
+	static final long MIN_CHUNK_SIZE = 1L << 22;
+	
 	public static Dataset parseDataset(File matchFile, File mismatchFile, String datasetName)
 	{
-		Dataset matchDataset = parseFile(matchFile, DecisionTreeClassLabel.MATCH);
-		Dataset mismatchDataset = parseFile(mismatchFile, DecisionTreeClassLabel.MISMATCH);
+		return parseDataset(matchFile, mismatchFile, datasetName, false, null);
+	}
+	
+	public static Dataset parseDataset(File matchFile, File mismatchFile, String datasetName, boolean isLazyScoring)
+	{
+		return parseDataset(matchFile, mismatchFile, datasetName, isLazyScoring, null);
+	}
+	
+	/**
+	 * Parses the dataset, optionally leaving the match scores of the item pairs to be computed
+	 * on first use rather than while reading.
+	 * 
+	 * If a pool is given, both files are parsed at once on it, in chunks, and the item pairs of
+	 * the chunks are put back together in file order. The dataset is then the same as when 
+	 * parsing the files one after the other on the calling thread, as is done without a pool.
+	 * 
+	 * The features of both files come from the same registry, which is the one of the dataset.
+	 * The token cache of the scores is cleared once both files are parsed.
+	 */
+	public static Dataset parseDataset(File matchFile, File mismatchFile, String datasetName, boolean isLazyScoring,
+			ForkJoinPool pool)
+	{
+		FeatureRegistry featureRegistry = new FeatureRegistry();
+		Dataset matchDataset;
+		Dataset mismatchDataset;
+		try {
+			if(pool != null && ItemPairFileParser.isSupportedCharset(Charset.defaultCharset())) {
+				List<Dataset> datasets = parseFilesInChunks(Lists.newArrayList(matchFile, mismatchFile), 
+						Lists.newArrayList(DecisionTreeClassLabel.MATCH, DecisionTreeClassLabel.MISMATCH), isLazyScoring, 
+						featureRegistry, pool);
+				matchDataset = datasets.get(0);
+				mismatchDataset = datasets.get(1);
+			}
+			else {
+				matchDataset = parseFile(matchFile, DecisionTreeClassLabel.MATCH, isLazyScoring, featureRegistry);
+				mismatchDataset = parseFile(mismatchFile, DecisionTreeClassLabel.MISMATCH, isLazyScoring, featureRegistry);
+			}
+		}
+		finally {
+			// The values of other datasets are unlikely to repeat the ones of this one
+			MatchUtils.getTokenCache().clear();
+		}
 		
 		List<ExamplePair> allItemPairs = Lists.newArrayList();
 		allItemPairs.addAll(matchDataset.getExamplePairs());
@@ -47,35 +98,238 @@ public class ItemPairDatasetReader {
 		System.out.println("#Matched Pairs : " + matchDataset.getExamplePairs().size());
 		System.out.println("#Mismatched Pairs : " + mismatchDataset.getExamplePairs().size());
 		
-		return new Dataset(datasetName, matchDataset.getFeatures(), allItemPairs);
+		return new Dataset(datasetName, matchDataset.getFeatures(), allItemPairs, featureRegistry);
+	}
+	
+	public static Dataset parseDataset(File matchFile, File mismatchFile, String datasetName, ScoredDatasetCache cache)
+	{
+		return parseDataset(matchFile, mismatchFile, datasetName, cache, null);
+	}
+	
+	/**
+	 * Loads the scored dataset from a cache if the cache was built from the same files with the
+	 * same comparers. Otherwise, parses and scores the dataset, on the pool if one is given, and
+	 * caches it for the next runs. A cache that cannot be loaded, e.g. a truncated one, is rebuilt.
+	 */
+	public static Dataset parseDataset(File matchFile, File mismatchFile, String datasetName, ScoredDatasetCache cache,
+			ForkJoinPool pool)
+	{
+		List<File> inputFiles = Lists.newArrayList(matchFile, mismatchFile);
+		try {
+			Dataset dataset = cache.load(inputFiles);
+			if(dataset != null) {
+				System.out.println("Loaded " + dataset.getExamplePairs().size() + " scored itempairs from " + 
+						cache.getCacheFile().getAbsolutePath());
+				return dataset;
+			}
+		}
+		catch (IOException e) {
+			System.out.println("Could not load the cache " + cache.getCacheFile().getAbsolutePath() + " : " + e);
+		}
+		catch (RuntimeException e) {
+			System.out.println("Could not load the cache " + cache.getCacheFile().getAbsolutePath() + " : " + e);
+		}
+		
+		Dataset dataset = parseDataset(matchFile, mismatchFile, datasetName, false, pool);
+		try {
+			cache.store(dataset, inputFiles);
+			System.out.println("Cached the scored itempairs in " + cache.getCacheFile().getAbsolutePath());
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		return dataset;
+	}
+	
+	/**
+	 * Parses files of item pairs on a pool. The header of each file is parsed first, and the 
+	 * rest is cut into chunks at blank lines, so that all the chunks of all the files can be 
+	 * parsed at once. Returns the dataset of each file.
+	 */
+	private static List<Dataset> parseFilesInChunks(List<File> files, List<DecisionTreeClassLabel> labels, 
+			boolean isLazyScoring, FeatureRegistry featureRegistry, ForkJoinPool pool)
+	{
+		return parseFilesInChunks(files, labels, isLazyScoring, featureRegistry, pool, MIN_CHUNK_SIZE);
+	}
+	
+	/**
+	 * Same as above, with chunks of at least the given number of bytes. Tests use small chunks 
+	 * to get many chunks out of small files.
+	 */
+	static List<Dataset> parseFilesInChunks(List<File> files, List<DecisionTreeClassLabel> labels, 
+			boolean isLazyScoring, FeatureRegistry featureRegistry, ForkJoinPool pool, long minChunkSize)
+	{
+		Charset charset = Charset.defaultCharset();
+		List<RandomAccessFile> openFiles = Lists.newArrayList();
+		List<ItemPairFileParser> headerParsers = Lists.newArrayList();
+		List<List<ChunkParsingTask>> fileTasks = Lists.newArrayList();
+		try {
+			List<FileChannel> channels = Lists.newArrayList();
+			List<Long> dataStarts = Lists.newArrayList();
+			long totalDataSize = 0;
+			for(int fileIndex = 0; fileIndex < files.size(); fileIndex++) {
+				ItemPairFileParser headerParser = new ItemPairFileParser(files.get(fileIndex), charset, labels.get(fileIndex), 
+						isLazyScoring, featureRegistry);
+				headerParsers.add(headerParser);
+				long dataStart = 0;
+				FileChannel channel = null;
+				try {
+					RandomAccessFile file = new RandomAccessFile(files.get(fileIndex), "r");
+					openFiles.add(file);
+					channel = file.getChannel();
+					dataStart = headerParser.parseHeader(channel);
+					totalDataSize += channel.size() - dataStart;
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+					channel = null;
+				}
+				channels.add(channel);
+				dataStarts.add(dataStart);
+			}
+			
+			// A few chunks per thread, so that threads done early can help with the rest
+			long chunkSize = Math.max(minChunkSize, totalDataSize/(4*pool.getParallelism()));
+			List<ChunkParsingTask> allTasks = Lists.newArrayList();
+			for(int fileIndex = 0; fileIndex < files.size(); fileIndex++) {
+				List<ChunkParsingTask> tasks = Lists.newArrayList();
+				FileChannel channel = channels.get(fileIndex);
+				if(channel != null) {
+					try {
+						List<Long> boundaries = ItemPairFileParser.getChunkBoundaries(channel, dataStarts.get(fileIndex), chunkSize);
+						for(int chunk = 0; chunk + 1 < boundaries.size(); chunk++) {
+							tasks.add(new ChunkParsingTask(headerParsers.get(fileIndex), channel, 
+									boundaries.get(chunk), boundaries.get(chunk + 1)));
+						}
+					}
+					catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+				fileTasks.add(tasks);
+				allTasks.addAll(tasks);
+			}
+			
+			List<Future<List<ExamplePair>>> results = pool.invokeAll(allTasks);
+			List<Dataset> datasets = Lists.newArrayList();
+			int resultIndex = 0;
+			for(int fileIndex = 0; fileIndex < files.size(); fileIndex++) {
+				List<ExamplePair> exPairs = Lists.newArrayList();
+				for(int chunk = 0; chunk < fileTasks.get(fileIndex).size(); chunk++) {
+					try {
+						exPairs.addAll(results.get(resultIndex++).get());
+					}
+					catch (ExecutionException e) {
+						if(e.getCause() instanceof RuntimeException) {
+							throw (RuntimeException)e.getCause();
+						}
+						e.getCause().printStackTrace();
+					}
+				}
+				
+				ItemPairFileParser headerParser = headerParsers.get(fileIndex);
+				datasets.add(new Dataset(headerParser.getDatasetName(), headerParser.getFeatures(), exPairs, featureRegistry));
+			}
+			return datasets;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while parsing " + files, e);
+		}
+		finally {
+			for(RandomAccessFile file : openFiles) {
+				try {
+					file.close();
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Parses the item pairs of a chunk of a file, starting from the header of the file.
+	 */
+	private static class ChunkParsingTask implements Callable<List<ExamplePair>> {
+		private ItemPairFileParser headerParser;
+		private FileChannel channel;
+		private long from;
+		private long to;
+		
+		ChunkParsingTask(ItemPairFileParser headerParser, FileChannel channel, long from, long to)
+		{
+			this.headerParser = headerParser;
+			this.channel = channel;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		public List<ExamplePair> call() throws IOException
+		{
+			ItemPairFileParser parser = new ItemPairFileParser(headerParser);
+			parser.parse(channel, from, to, false);
+			return parser.getExamplePairs();
+		}
+	}
+	
+	/**
+	 * Parses a file of item pairs by scanning its memory mapped bytes if the default charset
+	 * allows it, and line by line otherwise.
+	 */
+	private static Dataset parseFile(File file, DecisionTreeClassLabel label, boolean isLazyScoring, 
+			FeatureRegistry featureRegistry)
+	{
+		Charset charset = Charset.defaultCharset();
+		if(!ItemPairFileParser.isSupportedCharset(charset)) {
+			return parseFileByLine(file, label, isLazyScoring, featureRegistry);
+		}
+		
+		ItemPairFileParser parser = new ItemPairFileParser(file, charset, label, isLazyScoring, featureRegistry);
+		try {
+			parser.parse();
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		return new Dataset(parser.getDatasetName(), parser.getFeatures(), parser.getExamplePairs(), featureRegistry);
 	}
 	
-	private static Dataset parseFile(File file, DecisionTreeClassLabel label)
+	/**
+	 * Parses a file of item pairs line by line, in the default charset.
+	 */
+	static Dataset parseFileByLine(File file, DecisionTreeClassLabel label, boolean isLazyScoring, 
+			FeatureRegistry featureRegistry)
 	{
 		List<ExamplePair> exPairs = Lists.newArrayList();
 		List<Feature> allFeatures = Lists.newArrayList();
+		ExampleSchema schema = new ExampleSchema(featureRegistry);
 		String datasetName = null;
 		
 		ExamplePair exPair = null;
 		Example sourceEx = null;
 		Example targetEx = null;
-		Map<Feature, String> sourceFeatureValMap = null;
-		Map<Feature, String> targetFeatureValMap = null;
+		String[] sourceValues = null;
+		String[] targetValues = null;
 		String sourceId = null;
 		String targetId = null;
 		
 		BufferedReader br = null; 
 		boolean isDataReadStarted = false;
+		long lineNumber = 0;
 		try {
  			String currLine; 	
  			br = new BufferedReader(new FileReader(file));
 			while ((currLine = br.readLine()) != null) {
+				++lineNumber;
 				currLine = currLine.trim();
 				if(currLine.isEmpty()) {
-					if(sourceFeatureValMap != null) {
-						sourceEx = new Example(sourceId, sourceFeatureValMap);
-						targetEx = new Example(targetId, targetFeatureValMap);
-						exPair = new ExamplePair(sourceEx, targetEx, label);
+					if(sourceValues != null) {
+						sourceEx = new Example(sourceId, schema, sourceValues);
+						targetEx = new Example(targetId, schema, targetValues);
+						exPair = new ExamplePair(sourceEx, targetEx, label, isLazyScoring);
 						exPairs.add(exPair);
 					}
 					
@@ -84,8 +338,8 @@ public class ItemPairDatasetReader {
 					targetEx = null;
 					sourceId = null;
 					targetId = null;
-					sourceFeatureValMap = null;
-					targetFeatureValMap = null;
+					sourceValues = null;
+					targetValues = null;
 					continue;
 				}
  				// Collect metadata before data read starts
@@ -99,7 +353,9 @@ public class ItemPairDatasetReader {
  	 					String attrName = temp[1].trim();
  	 					String attrType = temp[2].trim();
  	 					
- 	 					allFeatures.addAll(getFeaturesForAttributeName(attrName));
+ 	 					List<Feature> attrFeatures = getFeaturesForAttributeName(attrName, featureRegistry);
+ 	 					allFeatures.addAll(attrFeatures);
+ 	 					schema.addAttribute(attrName, attrFeatures);
  	 				}
  	 				else if(currLine.startsWith(DATA_IDENTIFIER)) {
  	 					isDataReadStarted = true;
@@ -108,14 +364,20 @@ public class ItemPairDatasetReader {
  				else {
  					if(currLine.startsWith("ID")) {
  						String[] temp = currLine.split(VALUE_DELIMITER);
+ 						if(temp.length < 3) {
+ 							throw ItemPairFileParser.getMalformedLineException(file, lineNumber, "no source and target ids", currLine);
+ 						}
  						sourceId = temp[1].trim();
  						targetId = temp[2].trim();
  						
- 						sourceFeatureValMap = Maps.newHashMap();
- 						targetFeatureValMap = Maps.newHashMap();
+ 						sourceValues = new String[schema.getNumAttributes()];
+ 						targetValues = new String[schema.getNumAttributes()];
  					}
  					else {
  						String[] temp = currLine.split(VALUE_DELIMITER);
+ 						if(temp.length == 0) {
+ 							throw ItemPairFileParser.getMalformedLineException(file, lineNumber, "no attribute name", currLine);
+ 						}
  						String attrKey = temp[0].trim();
  						String sourceAttrValue = "NA";
  						String targetAttrValue = "NA";
@@ -126,10 +388,10 @@ public class ItemPairDatasetReader {
  							targetAttrValue = temp[2];
  						}
  						
- 						List<Feature> attrFeatures = findFeaturesByAttrName(attrKey, allFeatures);
- 						for(Feature f : attrFeatures) {
- 	 						sourceFeatureValMap.put(f, sourceAttrValue);
- 	 						targetFeatureValMap.put(f, targetAttrValue); 							
+ 						int attrIndex = findAttributeIndex(attrKey, schema);
+ 						if(attrIndex != -1) {
+ 							sourceValues[attrIndex] = schema.intern(sourceAttrValue);
+ 							targetValues[attrIndex] = schema.intern(targetAttrValue);
  						}
  					}
  				}
@@ -139,32 +401,43 @@ public class ItemPairDatasetReader {
 		catch (IOException e) {
 			e.printStackTrace();
 		} 
+		finally {
+			if(br != null) {
+				try {
+					br.close();
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
 		
-		return new Dataset(datasetName, allFeatures, exPairs);
+		return new Dataset(datasetName, allFeatures, exPairs, featureRegistry);
 	}
 	
 	/**
-	 * Get all the relevant features for an attribute name. 
+	 * Get all the relevant features for an attribute name, as the instances of the registry. 
 	 */
-	private static List<Feature> getFeaturesForAttributeName(String attrName)
+	static List<Feature> getFeaturesForAttributeName(String attrName, FeatureRegistry featureRegistry)
 	{
 		List<Feature> features = Lists.newArrayList();
 		for(IComparer comparer : ComparersFactory.MATCH_COMPARERS) {
-			features.add(new Feature(attrName, comparer));
+			features.add(featureRegistry.getFeature(attrName, comparer));
 		}
 		
 		return features;
 	}
 	
-	private static List<Feature> findFeaturesByAttrName(String attrName, List<Feature> allFeatures)
+	/**
+	 * Ordinal of the attribute with exactly this name, or -1 if it was not declared.
+	 */
+	private static int findAttributeIndex(String attrName, ExampleSchema schema)
 	{
-		List<Feature> features = Lists.newArrayList();
-		for(Feature f : allFeatures) {
-			if(f.getAttrName().equals(attrName)) {
-				features.add(f);
-			}
+		int attrIndex = schema.getAttributeIndex(attrName);
+		if(attrIndex != -1 && !schema.getAttrName(attrIndex).equals(attrName)) {
+			return -1;
 		}
 		
-		return features;
+		return attrIndex;
 	}
 }
@@ -0,0 +1,591 @@
+package walmartlabs.productmatching.autorulegenerator.utils.input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.ExampleSchema;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.FeatureRegistry;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Parses a file of item pairs in the |# delimited format by scanning the bytes of the memory
+ * mapped file, instead of reading it line by line and splitting every line with a regex.
+ *
+ * Lines are cut, trimmed and split on |# the same way as BufferedReader.readLine(), String.trim()
+ * and String.split("\\|#") would, so the item pairs are exactly the ones of the line based
+ * parser. Attribute names are resolved to their ordinals in the schema by their bytes, and
+ * strings are only made for the values of known attributes, which are interned by the schema.
+ * This relies on an ASCII compatible charset, where line breaks, spaces and the delimiter are
+ * single bytes that are never part of another character.
+ *
+ * Malformed item pair lines fail the parse with the file and the number of the line.
+ *
+ * Files larger than the mapping window are mapped one window at a time, each window ending on a
+ * line break.
+ *
+ * @author excelsior
+ *
+ */
+class ItemPairFileParser {
+	private static String DATASET_NAME_IDENTIFIER = "@relation";
+	private static String ATTRIBUTE_IDENTIFIER = "@attribute";
+	private static String DATA_IDENTIFIER = "@data";
+	private static String WHITESPACE_DELIMITER = " ";
+
+	// Largest part of a file mapped at once
+	static final long MAX_WINDOW_SIZE = 1L << 30;
+
+	private File file;
+	private Charset charset;
+	private DecisionTreeClassLabel label;
+	private boolean isLazyScoring;
+
+	private String datasetName = null;
+	private List<Feature> allFeatures = Lists.newArrayList();
+	private FeatureRegistry featureRegistry;
+	private ExampleSchema schema;
+	private AttributeIndex attributeIndex = new AttributeIndex();
+	private List<ExamplePair> exPairs = Lists.newArrayList();
+	private boolean isDataReadStarted = false;
+
+	// Item pair being read
+	private String[] sourceValues = null;
+	private String[] targetValues = null;
+	private String sourceId = null;
+	private String targetId = null;
+
+	// Bytes of the line being parsed, and the bounds of its fields
+	private byte[] line = new byte[256];
+	private int[] fieldStarts = new int[8];
+	private int[] fieldEnds = new int[8];
+	// Channel being parsed, and the position of the line being parsed in it
+	private FileChannel channel;
+	private long lineOffset;
+
+	/**
+	 * @param file file being parsed, named by the errors
+	 * @param featureRegistry registry the features of the attributes come from
+	 */
+	ItemPairFileParser(File file, Charset charset, DecisionTreeClassLabel label, boolean isLazyScoring, 
+			FeatureRegistry featureRegistry)
+	{
+		this.file = file;
+		this.charset = charset;
+		this.label = label;
+		this.isLazyScoring = isLazyScoring;
+		this.featureRegistry = featureRegistry;
+		this.schema = new ExampleSchema(featureRegistry);
+	}
+
+	/**
+	 * Can files in this charset be scanned byte by byte ?
+	 */
+	static boolean isSupportedCharset(Charset charset)
+	{
+		String name = charset.name();
+		return name.equals("UTF-8") || name.equals("US-ASCII") || name.equals("ISO-8859-1");
+	}
+
+	/**
+	 * Parser for a chunk of the data of a file, which starts with the header of the file already
+	 * parsed by another parser. The header is shared, not copied.
+	 */
+	ItemPairFileParser(ItemPairFileParser headerParser)
+	{
+		this(headerParser.file, headerParser.charset, headerParser.label, headerParser.isLazyScoring, 
+				headerParser.featureRegistry);
+		this.datasetName = headerParser.datasetName;
+		this.allFeatures = headerParser.allFeatures;
+		this.schema = headerParser.schema;
+		this.attributeIndex = headerParser.attributeIndex;
+		this.isDataReadStarted = true;
+	}
+
+	/**
+	 * Parses the whole file.
+	 */
+	void parse() throws IOException
+	{
+		parse(MAX_WINDOW_SIZE);
+	}
+
+	/**
+	 * Parses the whole file, mapping at most the given number of bytes at once. Tests use small
+	 * windows to get many windows out of small files.
+	 */
+	void parse(long maxWindowSize) throws IOException
+	{
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			parse(channel, 0, channel.size(), false, maxWindowSize);
+		}
+		finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Parses the header of a file, up to and including the @data line. Returns the position of
+	 * the data, or the size of the file if it has none.
+	 */
+	long parseHeader(FileChannel channel) throws IOException
+	{
+		return parse(channel, 0, channel.size(), true);
+	}
+
+	/**
+	 * Parses the lines in [from, to) of a file. The range must start at the start of a line, and
+	 * end at the start of a line or at the end of the file. Returns the position the parser 
+	 * stopped at, which is the end of the range unless it only parses the header.
+	 */
+	long parse(FileChannel channel, long from, long to, boolean isHeaderOnly) throws IOException
+	{
+		return parse(channel, from, to, isHeaderOnly, MAX_WINDOW_SIZE);
+	}
+
+	private long parse(FileChannel channel, long from, long to, boolean isHeaderOnly, long maxWindowSize) 
+			throws IOException
+	{
+		this.channel = channel;
+		long windowStart = from;
+		while(windowStart < to) {
+			long windowSize = Math.min(maxWindowSize, to - windowStart);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+			boolean isLastWindow = windowStart + windowSize == to;
+			int end = isLastWindow ? (int)windowSize : getLastLineEnd(buffer, (int)windowSize);
+			if(end == 0) {
+				throw new IOException("Line longer than " + maxWindowSize + " bytes");
+			}
+
+			int stop = parseLines(buffer, windowStart, end, isHeaderOnly);
+			if(stop < end) {
+				return windowStart + stop;
+			}
+			windowStart += end;
+		}
+		return to;
+	}
+
+	/**
+	 * Cuts the data of a file, from a position to the end of the file, into chunks of about the
+	 * given size. Chunks end just after a blank line, where a parser has no item pair pending,
+	 * so parsing the chunks on their own gives the same item pairs. Returns the start of each
+	 * chunk followed by the size of the file.
+	 */
+	static List<Long> getChunkBoundaries(FileChannel channel, long dataStart, long chunkSize) throws IOException
+	{
+		long fileSize = channel.size();
+		List<Long> boundaries = Lists.newArrayList();
+		boundaries.add(dataStart);
+		long target = dataStart + chunkSize;
+		while(target < fileSize) {
+			long boundary = getNextBlankLineEnd(channel, target);
+			if(boundary < 0 || boundary >= fileSize) {
+				break;
+			}
+
+			boundaries.add(boundary);
+			target = boundary + chunkSize;
+		}
+		boundaries.add(fileSize);
+		return boundaries;
+	}
+
+	/**
+	 * Position just after the first blank line starting after a position, or -1 if there is none
+	 * within a mapping window.
+	 */
+	private static long getNextBlankLineEnd(FileChannel channel, long position) throws IOException
+	{
+		// One byte before the position tells whether it starts a line
+		long windowStart = position - 1;
+		int size = (int)Math.min(MAX_WINDOW_SIZE, channel.size() - windowStart);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+		for(int pos = 1; pos < size; pos++) {
+			byte prev = buffer.get(pos - 1);
+			boolean isLineStart = prev == '\n' || (prev == '\r' && buffer.get(pos) != '\n');
+			if(!isLineStart) {
+				continue;
+			}
+
+			int lineEnd = pos;
+			while(lineEnd < size && buffer.get(lineEnd) != '\n' && buffer.get(lineEnd) != '\r' && 
+					(buffer.get(lineEnd) & 0xff) <= ' ') {
+				++lineEnd;
+			}
+			if(lineEnd == size) {
+				return -1;
+			}
+			if(buffer.get(lineEnd) != '\n' && buffer.get(lineEnd) != '\r') {
+				// Not a blank line
+				continue;
+			}
+
+			if(buffer.get(lineEnd) == '\r') {
+				if(lineEnd + 1 == size) {
+					return -1;
+				}
+				if(buffer.get(lineEnd + 1) == '\n') {
+					++lineEnd;
+				}
+			}
+			return windowStart + lineEnd + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Position just after the last line break of a window that is not the end of the file. A \r
+	 * ending the window may be followed by a \n in the next one, so it does not count.
+	 */
+	private static int getLastLineEnd(MappedByteBuffer buffer, int size)
+	{
+		for(int pos = size - 1; pos >= 0; pos--) {
+			byte b = buffer.get(pos);
+			if(b == '\n' || (b == '\r' && pos < size - 1)) {
+				return pos + 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Parses the lines in [0, end) of the buffer, which ends on a line break or at the end of the
+	 * range. Returns the position it stopped at, which is the end unless it only parses the header.
+	 */
+	private int parseLines(MappedByteBuffer buffer, long windowStart, int end, boolean isHeaderOnly)
+	{
+		int pos = 0;
+		while(pos < end) {
+			if(isHeaderOnly && isDataReadStarted) {
+				return pos;
+			}
+
+			int lineStart = pos;
+			lineOffset = windowStart + lineStart;
+			while(pos < end && buffer.get(pos) != '\n' && buffer.get(pos) != '\r') {
+				++pos;
+			}
+			int lineEnd = pos;
+			if(pos < end) {
+				if(buffer.get(pos) == '\r' && pos + 1 < end && buffer.get(pos + 1) == '\n') {
+					++pos;
+				}
+				++pos;
+			}
+
+			// Trims the line as String.trim() does
+			while(lineStart < lineEnd && (buffer.get(lineStart) & 0xff) <= ' ') {
+				++lineStart;
+			}
+			while(lineEnd > lineStart && (buffer.get(lineEnd - 1) & 0xff) <= ' ') {
+				--lineEnd;
+			}
+
+			int length = lineEnd - lineStart;
+			if(line.length < length) {
+				line = new byte[Math.max(length, 2*line.length)];
+			}
+			for(int index = 0; index < length; index++) {
+				line[index] = buffer.get(lineStart + index);
+			}
+			parseLine(length);
+		}
+		return pos;
+	}
+
+	private void parseLine(int length)
+	{
+		if(length == 0) {
+			if(sourceValues != null) {
+				Example sourceEx = new Example(sourceId, schema, sourceValues);
+				Example targetEx = new Example(targetId, schema, targetValues);
+				exPairs.add(new ExamplePair(sourceEx, targetEx, label, isLazyScoring));
+			}
+
+			sourceId = null;
+			targetId = null;
+			sourceValues = null;
+			targetValues = null;
+			return;
+		}
+
+		// Collect metadata before data read starts. There are only a few of these lines.
+		if(!isDataReadStarted) {
+			String currLine = new String(line, 0, length, charset);
+			if(currLine.startsWith(DATASET_NAME_IDENTIFIER)) {
+				String[] temp = currLine.split(WHITESPACE_DELIMITER);
+				datasetName = temp[1].trim().replace("\"", "");
+			}
+			else if(currLine.startsWith(ATTRIBUTE_IDENTIFIER)) {
+				String[] temp = currLine.split(WHITESPACE_DELIMITER);
+				String attrName = temp[1].trim();
+				String attrType = temp[2].trim();
+
+				List<Feature> attrFeatures = ItemPairDatasetReader.getFeaturesForAttributeName(attrName, featureRegistry);
+				allFeatures.addAll(attrFeatures);
+				attributeIndex.add(attrName.getBytes(charset), schema.addAttribute(attrName, attrFeatures));
+			}
+			else if(currLine.startsWith(DATA_IDENTIFIER)) {
+				isDataReadStarted = true;
+			}
+			return;
+		}
+
+		int numFields = splitFields(length);
+		if(length >= 2 && line[0] == 'I' && line[1] == 'D') {
+			if(numFields < 3) {
+				throw getMalformedLineException("no source and target ids", length);
+			}
+			sourceId = getTrimmedField(1);
+			targetId = getTrimmedField(2);
+
+			sourceValues = new String[schema.getNumAttributes()];
+			targetValues = new String[schema.getNumAttributes()];
+			return;
+		}
+
+		if(numFields == 0) {
+			// Only delimiters, which String.split() would have turned into no field at all
+			throw getMalformedLineException("no attribute name", length);
+		}
+
+		int keyStart = fieldStarts[0];
+		int keyEnd = fieldEnds[0];
+		while(keyStart < keyEnd && (line[keyStart] & 0xff) <= ' ') {
+			++keyStart;
+		}
+		while(keyEnd > keyStart && (line[keyEnd - 1] & 0xff) <= ' ') {
+			--keyEnd;
+		}
+
+		int attrIndex = attributeIndex.get(line, keyStart, keyEnd);
+		if(attrIndex == -1) {
+			return;
+		}
+
+		String sourceAttrValue = "NA";
+		String targetAttrValue = "NA";
+		if(numFields > 1) {
+			sourceAttrValue = schema.intern(new String(line, fieldStarts[1], fieldEnds[1] - fieldStarts[1], charset));
+		}
+		if(numFields > 2) {
+			targetAttrValue = schema.intern(new String(line, fieldStarts[2], fieldEnds[2] - fieldStarts[2], charset));
+		}
+
+		sourceValues[attrIndex] = sourceAttrValue;
+		targetValues[attrIndex] = targetAttrValue;
+	}
+
+	/**
+	 * Splits the line on |# as String.split("\\|#") does : the line is a single field if it has
+	 * no delimiter, and otherwise trailing empty fields are dropped. Returns the number of fields.
+	 */
+	private int splitFields(int length)
+	{
+		int numFields = 0;
+		int fieldStart = 0;
+		boolean hasDelimiter = false;
+		for(int pos = 0; pos + 1 < length; pos++) {
+			if(line[pos] == '|' && line[pos + 1] == '#') {
+				addField(numFields++, fieldStart, pos);
+				fieldStart = pos + 2;
+				hasDelimiter = true;
+				++pos;
+			}
+		}
+		addField(numFields++, fieldStart, length);
+
+		if(hasDelimiter) {
+			while(numFields > 0 && fieldStarts[numFields - 1] == fieldEnds[numFields - 1]) {
+				--numFields;
+			}
+		}
+		return numFields;
+	}
+
+	private void addField(int fieldIndex, int start, int end)
+	{
+		if(fieldIndex == fieldStarts.length) {
+			fieldStarts = Arrays.copyOf(fieldStarts, 2*fieldIndex);
+			fieldEnds = Arrays.copyOf(fieldEnds, 2*fieldIndex);
+		}
+		fieldStarts[fieldIndex] = start;
+		fieldEnds[fieldIndex] = end;
+	}
+
+	private String getTrimmedField(int fieldIndex)
+	{
+		return new String(line, fieldStarts[fieldIndex], fieldEnds[fieldIndex] - fieldStarts[fieldIndex], charset).trim();
+	}
+
+	/**
+	 * Error for the line being parsed, naming the file and the line.
+	 */
+	private IllegalArgumentException getMalformedLineException(String reason, int length)
+	{
+		String lineText = new String(line, 0, length, charset);
+		try {
+			return getMalformedLineException(file, getLineNumber(channel, lineOffset), reason, lineText);
+		}
+		catch (IOException e) {
+			return new IllegalArgumentException("Malformed item pair line at byte " + lineOffset + " of " + file + 
+					" : " + reason + " : " + lineText);
+		}
+	}
+
+	/**
+	 * Error for a malformed line of a file of item pairs, whichever parser reads it.
+	 */
+	static IllegalArgumentException getMalformedLineException(File file, long lineNumber, String reason, String line)
+	{
+		return new IllegalArgumentException("Malformed item pair at line " + lineNumber + " of " + file + 
+				" : " + reason + " : " + line);
+	}
+
+	/**
+	 * Number of the line starting at a position of a file, counting lines as
+	 * BufferedReader.readLine() does. Only used to report errors, so it reads the file again.
+	 */
+	private static long getLineNumber(FileChannel channel, long position) throws IOException
+	{
+		long lineNumber = 1;
+		byte prev = 0;
+		for(long windowStart = 0; windowStart < position; windowStart += MAX_WINDOW_SIZE) {
+			int size = (int)Math.min(MAX_WINDOW_SIZE, position - windowStart);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+			for(int pos = 0; pos < size; pos++) {
+				byte b = buffer.get(pos);
+				if(b == '\r' || (b == '\n' && prev != '\r')) {
+					++lineNumber;
+				}
+				prev = b;
+			}
+		}
+		return lineNumber;
+	}
+
+	String getDatasetName() {
+		return datasetName;
+	}
+
+	List<Feature> getFeatures() {
+		return allFeatures;
+	}
+
+	ExampleSchema getSchema() {
+		return schema;
+	}
+
+	List<ExamplePair> getExamplePairs() {
+		return exPairs;
+	}
+
+	/**
+	 * Open addressing table from the bytes of an attribute name to the ordinal of the attribute
+	 * in the schema, so that looking an attribute up makes no string.
+	 */
+	private static class AttributeIndex {
+		private byte[][] names = new byte[16][];
+		private int[] attrIndexes = new int[16];
+		private int[] slots = new int[16];
+		private int size = 0;
+
+		AttributeIndex()
+		{
+			Arrays.fill(slots, -1);
+		}
+
+		/**
+		 * Adds an attribute name with its ordinal, unless the name is already in the table.
+		 */
+		void add(byte[] name, int attrIndex)
+		{
+			if(indexOf(name, 0, name.length) != -1) {
+				return;
+			}
+
+			if(2*(size + 1) > slots.length) {
+				resize();
+			}
+			names[size] = name;
+			attrIndexes[size] = attrIndex;
+			insert(size++);
+		}
+
+		/**
+		 * Ordinal of the attribute named by the bytes in [from, to), -1 if it is unknown.
+		 */
+		int get(byte[] bytes, int from, int to)
+		{
+			int nameIndex = indexOf(bytes, from, to);
+			return nameIndex != -1 ? attrIndexes[nameIndex] : -1;
+		}
+
+		private int indexOf(byte[] bytes, int from, int to)
+		{
+			int mask = slots.length - 1;
+			for(int slot = hash(bytes, from, to) & mask; slots[slot] != -1; slot = (slot + 1) & mask) {
+				if(isEqual(names[slots[slot]], bytes, from, to)) {
+					return slots[slot];
+				}
+			}
+			return -1;
+		}
+
+		private void insert(int nameIndex)
+		{
+			int mask = slots.length - 1;
+			int slot = hash(names[nameIndex], 0, names[nameIndex].length) & mask;
+			while(slots[slot] != -1) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = nameIndex;
+		}
+
+		private void resize()
+		{
+			slots = new int[2*slots.length];
+			Arrays.fill(slots, -1);
+			names = Arrays.copyOf(names, slots.length);
+			attrIndexes = Arrays.copyOf(attrIndexes, slots.length);
+			for(int nameIndex = 0; nameIndex < size; nameIndex++) {
+				insert(nameIndex);
+			}
+		}
+
+		private static int hash(byte[] bytes, int from, int to)
+		{
+			int hash = 1;
+			for(int pos = from; pos < to; pos++) {
+				hash = 31*hash + bytes[pos];
+			}
+			return hash ^ (hash >>> 16);
+		}
+
+		private static boolean isEqual(byte[] name, byte[] bytes, int from, int to)
+		{
+			if(name.length != to - from) {
+				return false;
+			}
+			for(int index = 0; index < name.length; index++) {
+				if(name[index] != bytes[from + index]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package walmartlabs.productmatching.autorulegenerator.utils.input;
+
+/**
+ * Statistics of the similarity scores of the example pairs scored while pairing examples.
+ *
+ * Pairs below the lower limit of the scores worth matching are only counted : scoring them stops
+ * as soon as they cannot reach the limit, so their score is not known, only a bound on it.
+ *
+ * Each block of pairs keeps statistics of its own, which are merged into the statistics of the
+ * whole dataset once the blocks are done. Not thread safe.
+ *
+ * @author excelsior
+ *
+ */
+public class PairingStatistics {
+	private int numPairs = 0;
+	private int numSureMatches = 0;
+	private int numPairsWorthMatching = 0;
+	private int numPairsBelowLimit = 0;
+
+	private double totalScore = 0.0;
+	private double minScore = Double.POSITIVE_INFINITY;
+	private double maxScore = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Accounts for the exact score of a pair.
+	 */
+	public void addScore(double score)
+	{
+		++numPairs;
+		totalScore += score;
+		minScore = Math.min(minScore, score);
+		maxScore = Math.max(maxScore, score);
+	}
+
+	public void addPairWorthMatching(boolean isSureMatch)
+	{
+		++numPairsWorthMatching;
+		if(isSureMatch) {
+			++numSureMatches;
+		}
+	}
+
+	/**
+	 * Counts a pair below the lower limit, whose score is left out of the statistics.
+	 */
+	public void addPairBelowLimit()
+	{
+		++numPairsBelowLimit;
+	}
+
+	/**
+	 * Adds the statistics of another block of pairs to these ones.
+	 */
+	public void merge(PairingStatistics other)
+	{
+		numPairs += other.numPairs;
+		numSureMatches += other.numSureMatches;
+		numPairsWorthMatching += other.numPairsWorthMatching;
+		numPairsBelowLimit += other.numPairsBelowLimit;
+		totalScore += other.totalScore;
+		minScore = Math.min(minScore, other.minScore);
+		maxScore = Math.max(maxScore, other.maxScore);
+	}
+
+	public int getNumPairs() {
+		return numPairs;
+	}
+
+	public int getNumSureMatches() {
+		return numSureMatches;
+	}
+
+	public int getNumPairsWorthMatching() {
+		return numPairsWorthMatching;
+	}
+
+	public int getNumPairsBelowLimit() {
+		return numPairsBelowLimit;
+	}
+
+	public double getTotalScore() {
+		return totalScore;
+	}
+
+	/**
+	 * Lowest score of a pair, or 0.0 if no pair was scored.
+	 */
+	public double getMinScore() {
+		return numPairs > 0 ? minScore : 0.0;
+	}
+
+	/**
+	 * Highest score of a pair, or 0.0 if no pair was scored.
+	 */
+	public double getMaxScore() {
+		return numPairs > 0 ? maxScore : 0.0;
+	}
+
+	/**
+	 * Average score of the pairs, or 0.0 if no pair was scored.
+	 */
+	public double getAverageScore() {
+		return numPairs > 0 ? totalScore/(double)numPairs : 0.0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("PairingStatistics [numPairs=").append(numPairs).append(", numPairsWorthMatching=")
+				.append(numPairsWorthMatching).append(", numPairsBelowLimit=").append(numPairsBelowLimit)
+				.append(", numSureMatches=").append(numSureMatches)
+				.append(", minScore=").append(getMinScore()).append(", maxScore=").append(getMaxScore())
+				.append(", averageScore=").append(getAverageScore()).append("]");
+		return builder.toString();
+	}
+}
@@ -0,0 +1,432 @@
+package walmartlabs.productmatching.autorulegenerator.utils.input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import walmartlabs.productmatching.autorulegenerator.model.Dataset;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.FeatureRegistry;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.CountingInputStream;
+import com.walmart.productgenome.pairComparison.utils.comparers.ComparersFactory;
+import com.walmart.productgenome.pairComparison.utils.comparers.IComparer;
+
+/**
+ * Binary cache of a scored dataset, so that the item pairs are only parsed and scored once.
+ *
+ * The cache file holds the name of the dataset, its features, and for every example pair its
+ * label, the ids of its items and its match scores, laid out as :
+ *
+ * - magic number, format version, stamp and fingerprint of the inputs.
+ * - name of the dataset.
+ * - number of features, and the attribute name and comparer class of each feature.
+ * - number of example pairs, and the label of each pair as a byte (1 for MATCH).
+ * - source and target item ids of each pair.
+ * - match scores as doubles, feature after feature, starting on a multiple of 8 bytes.
+ *
+ * When loaded, the header is read and checked against the size of the file, and the scores of
+ * each feature are memory mapped on their own, so that the file may be larger than a single
+ * mapping can be. The match scores of the example pairs are read straight from the mappings
+ * rather than copied. The items of the loaded pairs only have their ids, as the attribute values
+ * are not part of the cache.
+ *
+ * A cache built from other inputs or comparers is stale, and never loaded. The inputs are first
+ * told apart by their stamp, i.e. the length and modification time of the files, which costs no
+ * read of the files. Only if the stamp differs, e.g. for inputs that were copied or touched, is
+ * the fingerprint of their content computed and compared. An input rewritten with the same length
+ * and modification time goes unnoticed : delete the cache file to force a rebuild then.
+ *
+ * @author excelsior
+ *
+ */
+public class ScoredDatasetCache {
+	private static int MAGIC = 0x53434453;
+	private static int VERSION = 2;
+	private static Charset UTF8 = Charset.forName("UTF-8");
+
+	private File cacheFile;
+
+	public ScoredDatasetCache(File cacheFile)
+	{
+		this.cacheFile = cacheFile;
+	}
+
+	/**
+	 * Stamp of the length and modification time of the input files and of the comparers of the
+	 * features. Cheap, as the files are not read.
+	 */
+	public static long getStamp(List<File> inputFiles)
+	{
+		CRC32 crc = getComparersCrc();
+		for(File inputFile : inputFiles) {
+			crc.update(ByteBuffer.allocate(16).putLong(inputFile.length()).putLong(inputFile.lastModified()).array());
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Fingerprint of the content of the input files and of the comparers of the features. Reads
+	 * all of the files.
+	 */
+	public static long getFingerprint(List<File> inputFiles) throws IOException
+	{
+		CRC32 crc = getComparersCrc();
+		byte[] buffer = new byte[1 << 16];
+		for(File inputFile : inputFiles) {
+			InputStream in = new FileInputStream(inputFile);
+			try {
+				int numBytes;
+				while((numBytes = in.read(buffer)) > 0) {
+					crc.update(buffer, 0, numBytes);
+				}
+			}
+			finally {
+				in.close();
+			}
+			// Tells apart the same bytes split differently between the files
+			crc.update(ByteBuffer.allocate(8).putLong(inputFile.length()).array());
+		}
+
+		return crc.getValue();
+	}
+
+	private static CRC32 getComparersCrc()
+	{
+		CRC32 crc = new CRC32();
+		crc.update(VERSION);
+		for(IComparer comparer : ComparersFactory.MATCH_COMPARERS) {
+			crc.update(comparer.getClass().getName().getBytes(UTF8));
+		}
+		return crc;
+	}
+
+	/**
+	 * Loads the dataset from the cache, or returns null if there is no cache for these inputs.
+	 *
+	 * @throws IOException if the cache file cannot be read, or is not a well formed cache
+	 */
+	public Dataset load(List<File> inputFiles) throws IOException
+	{
+		if(!cacheFile.isFile()) {
+			return null;
+		}
+
+		RandomAccessFile file = new RandomAccessFile(cacheFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long fileSize = channel.size();
+			CountingInputStream counter = new CountingInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+			DataInputStream in = new DataInputStream(counter);
+			if(fileSize < 24 || in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			long stamp = in.readLong();
+			long fingerprint = in.readLong();
+			if(stamp != getStamp(inputFiles) && fingerprint != getFingerprint(inputFiles)) {
+				return null;
+			}
+
+			String datasetName = readString(in, fileSize);
+			int numFeatures = readCount(in, fileSize);
+			FeatureRegistry featureRegistry = new FeatureRegistry();
+			List<Feature> features = Lists.newArrayListWithCapacity(numFeatures);
+			for(int featureIndex = 0; featureIndex < numFeatures; featureIndex++) {
+				String attrName = readString(in, fileSize);
+				IComparer comparer = getComparer(readString(in, fileSize));
+				if(comparer == null) {
+					return null;
+				}
+				features.add(featureRegistry.getFeature(attrName, comparer));
+			}
+
+			int numPairs = readCount(in, fileSize);
+			byte[] labels = new byte[numPairs];
+			in.readFully(labels);
+			String[] sourceIds = new String[numPairs];
+			String[] targetIds = new String[numPairs];
+			for(int row = 0; row < numPairs; row++) {
+				sourceIds[row] = readString(in, fileSize);
+				targetIds[row] = readString(in, fileSize);
+			}
+
+			long scoresOffset = alignTo8(counter.getCount());
+			long columnSize = 8L*numPairs;
+			if(scoresOffset + numFeatures*columnSize != fileSize) {
+				throw new IOException("Cache " + cacheFile + " holds " + fileSize + " bytes instead of " + 
+						(scoresOffset + numFeatures*columnSize));
+			}
+
+			DoubleBuffer[] columns = new DoubleBuffer[numFeatures];
+			for(int featureIndex = 0; featureIndex < numFeatures; featureIndex++) {
+				columns[featureIndex] = channel.map(FileChannel.MapMode.READ_ONLY, 
+						scoresOffset + featureIndex*columnSize, columnSize).asDoubleBuffer();
+			}
+
+			ScoreColumns scoreColumns = new ScoreColumns(features, columns);
+			List<ExamplePair> exPairs = Lists.newArrayListWithCapacity(numPairs);
+			for(int row = 0; row < numPairs; row++) {
+				DecisionTreeClassLabel label = labels[row] == 1 ? DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH;
+				exPairs.add(new ExamplePair(new Example(sourceIds[row], Maps.<Feature, String>newHashMap()),
+						new Example(targetIds[row], Maps.<Feature, String>newHashMap()), label, scoreColumns.getRow(row)));
+			}
+
+			return new Dataset(datasetName, features, exPairs, featureRegistry);
+		}
+		finally {
+			// The mappings outlive the file
+			file.close();
+		}
+	}
+
+	/**
+	 * Stores the dataset in the cache, scoring all of its example pairs. The cache is written
+	 * to a temporary file first, so that an interrupted write never leaves a broken cache behind.
+	 * The inputs are read once more, for their fingerprint.
+	 */
+	public void store(Dataset dataset, List<File> inputFiles) throws IOException
+	{
+		long stamp = getStamp(inputFiles);
+		long fingerprint = getFingerprint(inputFiles);
+		List<Feature> features = dataset.getFeatures();
+		List<ExamplePair> exPairs = dataset.getExamplePairs();
+		for(Feature feature : features) {
+			if(getComparer(feature.getSimMeasure().getClass().getName()) == null) {
+				throw new IllegalArgumentException("Feature " + feature + " does not use a known comparer");
+			}
+		}
+
+		File tempFile = new File(cacheFile.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(stamp);
+			out.writeLong(fingerprint);
+			writeString(out, dataset.getName());
+
+			out.writeInt(features.size());
+			for(Feature feature : features) {
+				writeString(out, feature.getAttrName());
+				writeString(out, feature.getSimMeasure().getClass().getName());
+			}
+
+			out.writeInt(exPairs.size());
+			for(ExamplePair exPair : exPairs) {
+				out.writeByte(DecisionTreeClassLabel.MATCH.equals(exPair.getClassLabel()) ? 1 : 0);
+			}
+			for(ExamplePair exPair : exPairs) {
+				writeString(out, exPair.getSourceItem().getId());
+				writeString(out, exPair.getTargetItem().getId());
+			}
+
+			while(out.size() != alignTo8(out.size())) {
+				out.writeByte(0);
+			}
+			for(Feature feature : features) {
+				double[] scores = ExamplePair.getAttributeMatchScores(exPairs, feature);
+				for(double score : scores) {
+					out.writeDouble(score);
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+
+		if(cacheFile.exists() && !cacheFile.delete()) {
+			throw new IOException("Could not replace " + cacheFile);
+		}
+		if(!tempFile.renameTo(cacheFile)) {
+			throw new IOException("Could not rename " + tempFile + " to " + cacheFile);
+		}
+	}
+
+	public File getCacheFile() {
+		return cacheFile;
+	}
+
+	private static IComparer getComparer(String className)
+	{
+		for(IComparer comparer : ComparersFactory.MATCH_COMPARERS) {
+			if(comparer.getClass().getName().equals(className)) {
+				return comparer;
+			}
+		}
+		return null;
+	}
+
+	private static long alignTo8(long position)
+	{
+		return (position + 7) & ~7L;
+	}
+
+	/**
+	 * Strings are written as their number of UTF-8 bytes followed by the bytes, -1 for null.
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		if(value == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in, long fileSize) throws IOException
+	{
+		int numBytes = in.readInt();
+		if(numBytes < 0) {
+			return null;
+		}
+		if(numBytes > fileSize) {
+			throw new IOException("Corrupt cache : string of " + numBytes + " bytes");
+		}
+
+		byte[] bytes = new byte[numBytes];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Reads a number of features or pairs, which cannot be more than the bytes of the file.
+	 */
+	private static int readCount(DataInputStream in, long fileSize) throws IOException
+	{
+		int count = in.readInt();
+		if(count < 0 || count > fileSize) {
+			throw new IOException("Corrupt cache : count of " + count);
+		}
+		return count;
+	}
+
+	/**
+	 * Match scores of all the example pairs, read from the mapped cache file.
+	 */
+	private static class ScoreColumns {
+		private List<Feature> features;
+		private Map<Feature, Integer> featureIndexMap = Maps.newHashMap();
+		// Mapped scores of each feature
+		private DoubleBuffer[] columns;
+
+		ScoreColumns(List<Feature> features, DoubleBuffer[] columns)
+		{
+			this.features = features;
+			this.columns = columns;
+			for(int featureIndex = 0; featureIndex < features.size(); featureIndex++) {
+				featureIndexMap.put(features.get(featureIndex), featureIndex);
+			}
+		}
+
+		Map<Feature, Double> getRow(int row)
+		{
+			return new ScoreRow(this, row);
+		}
+
+		double getScore(int featureIndex, int row)
+		{
+			// Absolute reads, which leave the buffer position alone and can be shared by threads
+			return columns[featureIndex].get(row);
+		}
+	}
+
+	/**
+	 * Read only map of the match scores of an example pair, by feature.
+	 */
+	private static class ScoreRow extends AbstractMap<Feature, Double> {
+		private ScoreColumns columns;
+		private int row;
+
+		ScoreRow(ScoreColumns columns, int row)
+		{
+			this.columns = columns;
+			this.row = row;
+		}
+
+		@Override
+		public boolean containsKey(Object key)
+		{
+			return columns.featureIndexMap.containsKey(key);
+		}
+
+		@Override
+		public Double get(Object key)
+		{
+			Integer featureIndex = columns.featureIndexMap.get(key);
+			return featureIndex != null ? columns.getScore(featureIndex, row) : null;
+		}
+
+		@Override
+		public int size()
+		{
+			return columns.features.size();
+		}
+
+		@Override
+		public Set<Map.Entry<Feature, Double>> entrySet()
+		{
+			return new AbstractSet<Map.Entry<Feature, Double>>() {
+				@Override
+				public Iterator<Map.Entry<Feature, Double>> iterator()
+				{
+					return new Iterator<Map.Entry<Feature, Double>>() {
+						private int featureIndex = 0;
+
+						@Override
+						public boolean hasNext() {
+							return featureIndex < columns.features.size();
+						}
+
+						@Override
+						public Map.Entry<Feature, Double> next() {
+							if(!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							Feature feature = columns.features.get(featureIndex);
+							double score = columns.getScore(featureIndex++, row);
+							return Maps.immutableEntry(feature, score);
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return columns.features.size();
+				}
+			};
+		}
+	}
+}
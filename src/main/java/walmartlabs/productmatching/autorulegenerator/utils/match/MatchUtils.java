@@ -1,10 +1,14 @@
 package walmartlabs.productmatching.autorulegenerator.utils.match;
 
 import java.text.DecimalFormat;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.walmart.productgenome.pairComparison.audit.TokenAuditEntity;
 import com.walmart.productgenome.pairComparison.model.Constants;
 import com.walmart.productgenome.pairComparison.utils.comparers.ComparersFactory;
@@ -23,8 +27,56 @@ import walmartlabs.productmatching.autorulegenerator.model.Feature;
  */
 public class MatchUtils {
 
-	private static DecimalFormat DECIMAL_FORMATTER = new DecimalFormat("##.00");
+	// Decimal formats are not thread safe, and scores are computed from several threads
+	private static ThreadLocal<DecimalFormat> DECIMAL_FORMATTER = new ThreadLocal<DecimalFormat>() {
+		@Override
+		protected DecimalFormat initialValue() {
+			return new DecimalFormat("##.00");
+		}
+	};
+	
+	// Highest similarity score of a single attribute
+	public static double MAX_ATTRIBUTE_SCORE = 1.0;
+	private static double SCORE_BOUND_SLACK = 1e-9;
 	private static StandardAnalyzerTokenizer TOKENIZER = new StandardAnalyzerTokenizer();
+	// Values repeat across item pairs and both directions of a two way score, so each distinct
+	// value is only tokenized once
+	private static TokenCache TOKEN_CACHE = new TokenCache(TOKENIZER);
+	
+	// Cache of the similarity scores shared by all the scoring paths, none by default
+	private static volatile SimilarityScoreCache SCORE_CACHE = null;
+	// Stands for the two way similarity score in the cache. It is symmetric by construction.
+	private static Object TWO_WAY_SCORER = new Object();
+	
+	public static SimilarityScoreCache getSimilarityScoreCache() {
+		return SCORE_CACHE;
+	}
+	
+	/**
+	 * Sets the cache for the similarity scores, or turns caching off if null.
+	 */
+	public static void setSimilarityScoreCache(SimilarityScoreCache scoreCache) {
+		SCORE_CACHE = scoreCache;
+	}
+	
+	/**
+	 * Calculates the match score of an attribute of two items, with the similarity measure of a
+	 * feature. This is how the attributes of example pairs are scored.
+	 */
+	public static double getAttributeSimilarityScore(String sourceAttrVal, String targetAttrVal, Feature feature)
+	{
+		// Attributes read without a similarity metric, e.g. from an arff file
+		if(feature.getSimMeasure() == null) {
+			return getTwoWaySimilarityScore(sourceAttrVal, targetAttrVal, feature);
+		}
+		
+		SimilarityScoreCache scoreCache = SCORE_CACHE;
+		if(scoreCache == null) {
+			return feature.getSimMeasure().compare(sourceAttrVal, targetAttrVal);
+		}
+		
+		return scoreCache.getScore(feature.getSimMeasure(), sourceAttrVal, targetAttrVal);
+	}
 	
 	/**
 	 * Calculates the similarity score between two values for a feature. Feature object
@@ -36,8 +88,25 @@ public class MatchUtils {
 	 */
 	public static double getTwoWaySimilarityScore(String val1, String val2, Feature feature)
 	{
+		// The feature plays no part in the score, so it is not part of the key
+		SimilarityScoreCache scoreCache = SCORE_CACHE;
+		if(scoreCache != null) {
+			Double score = scoreCache.getIfPresent(TWO_WAY_SCORER, val1, val2, true);
+			if(score != null) {
+				return score;
+			}
+		}
+		
 		double score =  Math.max(getSimilarityScore(val1, val2, feature), getSimilarityScore(val2, val1, feature));
-		return Double.valueOf(DECIMAL_FORMATTER.format(score));
+		double twoWayScore = Double.valueOf(DECIMAL_FORMATTER.get().format(score));
+		if(scoreCache != null) {
+			scoreCache.put(TWO_WAY_SCORER, val1, val2, true, twoWayScore);
+		}
+		return twoWayScore;
+	}
+	
+	public static TokenCache getTokenCache() {
+		return TOKEN_CACHE;
 	}
 	
 	private static double getSimilarityScore(String val1, String val2, Feature feature)
@@ -46,8 +115,8 @@ public class MatchUtils {
 			return 0.0;
 		}
 		
-		List<String> sourceTokens = TOKENIZER.tokenize(val1);
-		List<String> targetTokens = TOKENIZER.tokenize(val2);		
+		List<String> sourceTokens = TOKEN_CACHE.tokenize(val1);
+		List<String> targetTokens = TOKEN_CACHE.tokenize(val2);		
 		List<List<String>> targetTokenLists = Lists.newArrayList();
 		targetTokenLists.add(targetTokens);
 		List<IComparer> comparers = ComparersFactory.getComparers(Constants.FUZZY_STRING_COMPARER);
@@ -73,4 +142,101 @@ public class MatchUtils {
 		
 		return (totalScore/(double)(idKeys.size()));
 	}
+	
+	/**
+	 * Gets the similarity score for two items based on a subset of the attributes, giving up as
+	 * soon as the score cannot reach a minimum any more.
+	 * 
+	 * An attribute scores 0.0 if either value is empty, and at most {@link #MAX_ATTRIBUTE_SCORE}
+	 * otherwise. The attributes are scored in the given order, and once the attributes left cannot
+	 * lift the average up to the minimum, the best score the pair could still have reached is 
+	 * returned instead, which is below the minimum. Otherwise, the score is exactly the one of 
+	 * {@link #getExamplePairSimilarityScore(Example, Example, List)}, as the attribute scores are 
+	 * added up in the order of the id keys whatever the scoring order.
+	 * 
+	 * @param scoringOrder positions of the id keys in the order to score them
+	 */
+	public static double getExamplePairSimilarityScore(Example ex1, Example ex2, List<String> idKeys, 
+			int[] scoringOrder, double minScore)
+	{
+		int numKeys = idKeys.size();
+		if(numKeys == 0) {
+			return getExamplePairSimilarityScore(ex1, ex2, idKeys);
+		}
+		
+		// Best total score the pair can reach before scoring anything
+		String[] vals1 = new String[numKeys];
+		String[] vals2 = new String[numKeys];
+		double[] keyScores = new double[numKeys];
+		double bestTotal = 0.0;
+		for(int keyIndex = 0; keyIndex < numKeys; keyIndex++) {
+			vals1[keyIndex] = ex1.getValueForAttribute(idKeys.get(keyIndex));
+			vals2[keyIndex] = ex2.getValueForAttribute(idKeys.get(keyIndex));
+			if(!Strings.isNullOrEmpty(vals1[keyIndex]) && !Strings.isNullOrEmpty(vals2[keyIndex])) {
+				bestTotal += MAX_ATTRIBUTE_SCORE;
+			}
+		}
+		
+		for(int index = 0; index < numKeys; index++) {
+			// The slack keeps rounding errors from pruning a pair right at the minimum
+			if(bestTotal/(double)numKeys < minScore - SCORE_BOUND_SLACK) {
+				return bestTotal/(double)numKeys;
+			}
+			
+			int keyIndex = scoringOrder[index];
+			keyScores[keyIndex] = getTwoWaySimilarityScore(vals1[keyIndex], vals2[keyIndex], null);
+			if(!Strings.isNullOrEmpty(vals1[keyIndex]) && !Strings.isNullOrEmpty(vals2[keyIndex])) {
+				bestTotal += keyScores[keyIndex] - MAX_ATTRIBUTE_SCORE;
+			}
+		}
+		
+		double totalScore = 0.0;
+		for(double keyScore : keyScores) {
+			totalScore += keyScore;
+		}
+		return (totalScore/(double)numKeys);
+	}
+	
+	/**
+	 * Orders the id keys so that the ones most likely to tell examples apart are scored first,
+	 * i.e. those with the most distinct values across the examples. Among equally selective keys,
+	 * the ones with the shortest values, and thus the cheapest to compare, come first.
+	 * 
+	 * @return positions of the id keys in the order to score them
+	 */
+	public static int[] getIdKeysScoringOrder(List<Example> examples, List<String> idKeys)
+	{
+		final double[] selectivities = new double[idKeys.size()];
+		final double[] avgLengths = new double[idKeys.size()];
+		List<Integer> keyIndices = Lists.newArrayList();
+		for(int keyIndex = 0; keyIndex < idKeys.size(); keyIndex++) {
+			Set<String> distinctValues = Sets.newHashSet();
+			long totalLength = 0;
+			for(Example ex : examples) {
+				String value = ex.getValueForAttribute(idKeys.get(keyIndex));
+				distinctValues.add(value);
+				totalLength += value == null ? 0 : value.length();
+			}
+			
+			selectivities[keyIndex] = distinctValues.size()/(double)Math.max(examples.size(), 1);
+			avgLengths[keyIndex] = totalLength/(double)Math.max(examples.size(), 1);
+			keyIndices.add(keyIndex);
+		}
+		
+		Collections.sort(keyIndices, new Comparator<Integer>() {
+			public int compare(Integer key1, Integer key2) {
+				int cmp = Double.compare(selectivities[key2], selectivities[key1]);
+				if(cmp == 0) {
+					cmp = Double.compare(avgLengths[key1], avgLengths[key2]);
+				}
+				return cmp;
+			}
+		});
+		
+		int[] scoringOrder = new int[keyIndices.size()];
+		for(int index = 0; index < scoringOrder.length; index++) {
+			scoringOrder[index] = keyIndices.get(index);
+		}
+		return scoringOrder;
+	}
 }
@@ -0,0 +1,168 @@
+package walmartlabs.productmatching.autorulegenerator.utils.match;
+
+import java.util.List;
+import java.util.Map;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeLinkType;
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.MatchingRule;
+import walmartlabs.productmatching.autorulegenerator.model.MatchingRulePredicate;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Applies a set of matching rules to item pairs.
+ *
+ * The rules are tried in order, and an item pair is a MATCH as soon as it satisfies all the
+ * predicates of a MATCH rule. Rules extracted from the same tree share most of their predicates'
+ * features, so the similarity score of each distinct feature is computed at most once per item
+ * pair, and only if a predicate needs it.
+ *
+ * An evaluator holds no state of the item pair being evaluated, so it can be shared by threads.
+ *
+ * @author excelsior
+ *
+ */
+public class MatchingRuleEvaluator {
+	private List<MatchingRule> rules;
+
+	// Distinct features of all the rules
+	private List<Feature> features = Lists.newArrayList();
+
+	// Predicates of each rule, flattened into the index of their feature, their comparison and
+	// their value
+	private int[][] predicateFeatures;
+	private boolean[][] predicateIsLessThan;
+	private double[][] predicateValues;
+
+	public MatchingRuleEvaluator(List<MatchingRule> rules)
+	{
+		this.rules = Lists.newArrayList(rules);
+
+		Map<Feature, Integer> featureIndexMap = Maps.newHashMap();
+		predicateFeatures = new int[this.rules.size()][];
+		predicateIsLessThan = new boolean[this.rules.size()][];
+		predicateValues = new double[this.rules.size()][];
+		for(int ruleIndex = 0; ruleIndex < this.rules.size(); ruleIndex++) {
+			List<MatchingRulePredicate> predicates = this.rules.get(ruleIndex).getPredicates();
+			predicateFeatures[ruleIndex] = new int[predicates.size()];
+			predicateIsLessThan[ruleIndex] = new boolean[predicates.size()];
+			predicateValues[ruleIndex] = new double[predicates.size()];
+			for(int index = 0; index < predicates.size(); index++) {
+				MatchingRulePredicate predicate = predicates.get(index);
+				Integer featureIndex = featureIndexMap.get(predicate.getFeature());
+				if(featureIndex == null) {
+					featureIndex = features.size();
+					features.add(predicate.getFeature());
+					featureIndexMap.put(predicate.getFeature(), featureIndex);
+				}
+
+				predicateFeatures[ruleIndex][index] = featureIndex;
+				predicateIsLessThan[ruleIndex][index] = predicate.getLinkType().equals(DecisionTreeLinkType.MATCH_LINK);
+				predicateValues[ruleIndex][index] = predicate.getValue();
+			}
+		}
+	}
+
+	/**
+	 * Classifies the item pair made of two items.
+	 */
+	public DecisionTreeClassLabel evaluate(Example sourceItem, Example targetItem)
+	{
+		return getFiringRule(sourceItem, targetItem, null) != null ?
+				DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH;
+	}
+
+	/**
+	 * Classifies an example pair, using the match scores it already holds.
+	 */
+	public DecisionTreeClassLabel evaluate(ExamplePair examplePair)
+	{
+		return getFiringRule(null, null, examplePair) != null ?
+				DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH;
+	}
+
+	/**
+	 * Returns the first MATCH rule satisfied by the item pair made of two items, or null if the
+	 * pair satisfies none.
+	 */
+	public MatchingRule getFiringRule(Example sourceItem, Example targetItem)
+	{
+		return getFiringRule(sourceItem, targetItem, null);
+	}
+
+	/**
+	 * Returns the first MATCH rule satisfied by an example pair, or null if the pair satisfies none.
+	 */
+	public MatchingRule getFiringRule(ExamplePair examplePair)
+	{
+		return getFiringRule(null, null, examplePair);
+	}
+
+	/**
+	 * Scores are taken from the example pair if there is one, and computed from the items
+	 * otherwise.
+	 */
+	private MatchingRule getFiringRule(Example sourceItem, Example targetItem, ExamplePair examplePair)
+	{
+		double[] scores = new double[features.size()];
+		boolean[] isScored = new boolean[features.size()];
+		for(int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+			MatchingRule rule = rules.get(ruleIndex);
+			if(!DecisionTreeClassLabel.MATCH.equals(rule.getLabel())) {
+				continue;
+			}
+
+			int[] ruleFeatures = predicateFeatures[ruleIndex];
+			boolean[] ruleIsLessThan = predicateIsLessThan[ruleIndex];
+			double[] ruleValues = predicateValues[ruleIndex];
+			boolean isSatisfied = true;
+			for(int index = 0; index < ruleFeatures.length && isSatisfied; index++) {
+				int featureIndex = ruleFeatures[index];
+				if(!isScored[featureIndex]) {
+					Feature feature = features.get(featureIndex);
+					scores[featureIndex] = examplePair != null ? examplePair.getAttributeMatchScore(feature) :
+						getMatchScore(sourceItem, targetItem, feature);
+					isScored[featureIndex] = true;
+				}
+
+				boolean isLessThan = Double.compare(scores[featureIndex], ruleValues[index]) < 0;
+				isSatisfied = isLessThan == ruleIsLessThan[index];
+			}
+
+			if(isSatisfied) {
+				return rule;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Scores a feature of two items the same way as an example pair does, i.e. a feature the
+	 * source item has no value for scores 0.0
+	 */
+	private static double getMatchScore(Example sourceItem, Example targetItem, Feature feature)
+	{
+		Map<Feature, String> sourceItemAttrValMap = sourceItem.getFeatureValueMap();
+		if(!sourceItemAttrValMap.containsKey(feature)) {
+			return 0.0;
+		}
+
+		String sourceAttrVal = sourceItemAttrValMap.get(feature);
+		String targetAttrVal = targetItem.getFeatureValueMap().get(feature);
+		return MatchUtils.getAttributeSimilarityScore(sourceAttrVal, targetAttrVal, feature);
+	}
+
+	public List<MatchingRule> getRules() {
+		return rules;
+	}
+
+	public List<Feature> getFeatures() {
+		return features;
+	}
+}
@@ -0,0 +1,260 @@
+package walmartlabs.productmatching.autorulegenerator.utils.match;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Objects;
+import com.walmart.productgenome.pairComparison.utils.comparers.IComparer;
+
+/**
+ * Bounded cache of similarity scores, keyed by the scorer (usually a comparer) and the pair of
+ * values compared.
+ *
+ * Attribute values repeat a lot across item pairs (cities, cuisines, brands ...), so most of the
+ * comparisons done while scoring a dataset have been done before. The cache is split into
+ * stripes, each one a small LRU map behind its own lock, so that threads scoring different
+ * values rarely wait on each other. Once a stripe is full, its least recently used scores are
+ * evicted.
+ *
+ * Values are only swapped into a canonical order for scorers known to be symmetric, as the
+ * order of the values matters for the others. Null values are never cached.
+ *
+ * @author excelsior
+ *
+ */
+public class SimilarityScoreCache {
+	private static int DEFAULT_NUM_STRIPES = 16;
+
+	private ScoreStripe[] stripes;
+
+	// Comparers for which compare(v1, v2) == compare(v2, v1)
+	private Set<Class<?>> symmetricComparers =
+		Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+
+	private AtomicLong hitCount = new AtomicLong();
+	private AtomicLong missCount = new AtomicLong();
+
+	public SimilarityScoreCache(int maximumSize)
+	{
+		this(maximumSize, DEFAULT_NUM_STRIPES);
+	}
+
+	public SimilarityScoreCache(int maximumSize, int numStripes)
+	{
+		if(maximumSize <= 0 || numStripes <= 0) {
+			throw new IllegalArgumentException("Cache size and number of stripes must be positive");
+		}
+
+		numStripes = Math.min(numStripes, maximumSize);
+		stripes = new ScoreStripe[numStripes];
+		for(int index = 0; index < numStripes; index++) {
+			// Spread the remainder so that the stripes add up to the maximum size
+			int stripeSize = maximumSize/numStripes + (index < maximumSize%numStripes ? 1 : 0);
+			stripes[index] = new ScoreStripe(stripeSize);
+		}
+	}
+
+	/**
+	 * Declares all the comparers of a class as symmetric, so that a score cached for (v1, v2)
+	 * also serves (v2, v1).
+	 */
+	public void addSymmetricComparer(Class<? extends IComparer> comparerClass)
+	{
+		symmetricComparers.add(comparerClass);
+	}
+
+	public boolean isSymmetric(IComparer comparer)
+	{
+		return symmetricComparers.contains(comparer.getClass());
+	}
+
+	/**
+	 * Gets the similarity score of two values for a comparer, computing it on a miss.
+	 */
+	public double getScore(IComparer comparer, String val1, String val2)
+	{
+		if(val1 == null || val2 == null) {
+			return comparer.compare(val1, val2);
+		}
+
+		boolean isSymmetric = isSymmetric(comparer);
+		Double score = getIfPresent(comparer, val1, val2, isSymmetric);
+		if(score == null) {
+			score = comparer.compare(val1, val2);
+			put(comparer, val1, val2, isSymmetric, score);
+		}
+
+		return score;
+	}
+
+	/**
+	 * Returns the cached score of two values for a scorer, or null on a miss.
+	 */
+	public Double getIfPresent(Object scorer, String val1, String val2, boolean isSymmetric)
+	{
+		if(val1 == null || val2 == null) {
+			return null;
+		}
+
+		ScoreKey key = new ScoreKey(scorer, val1, val2, isSymmetric);
+		Double score = getStripe(key).get(key);
+		if(score != null) {
+			hitCount.incrementAndGet();
+		}
+		else {
+			missCount.incrementAndGet();
+		}
+
+		return score;
+	}
+
+	/**
+	 * Caches the score of two values for a scorer.
+	 */
+	public void put(Object scorer, String val1, String val2, boolean isSymmetric, double score)
+	{
+		if(val1 == null || val2 == null) {
+			return;
+		}
+
+		ScoreKey key = new ScoreKey(scorer, val1, val2, isSymmetric);
+		getStripe(key).put(key, score);
+	}
+
+	private ScoreStripe getStripe(ScoreKey key)
+	{
+		// Spread the hash bits, as the low bits of string hashes are not very random
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		hash ^= (hash >>> 7);
+		return stripes[(hash & 0x7fffffff) % stripes.length];
+	}
+
+	public long size()
+	{
+		long size = 0;
+		for(ScoreStripe stripe : stripes) {
+			size += stripe.size();
+		}
+		return size;
+	}
+
+	public void clear()
+	{
+		for(ScoreStripe stripe : stripes) {
+			stripe.clear();
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public double getHitRate()
+	{
+		long requestCount = getHitCount() + getMissCount();
+		return requestCount == 0 ? 1.0 : getHitCount()/(double)requestCount;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("SimilarityScoreCache [size=").append(size()).append(", hits=").append(getHitCount())
+				.append(", misses=").append(getMissCount()).append("]");
+		return builder.toString();
+	}
+
+	/**
+	 * A scorer along with the two values it compares. Symmetric keys store their values in a
+	 * canonical order.
+	 */
+	private static class ScoreKey {
+		private Object scorer;
+		private String val1;
+		private String val2;
+		private int hash;
+
+		ScoreKey(Object scorer, String val1, String val2, boolean isSymmetric)
+		{
+			this.scorer = scorer;
+			if(isSymmetric && val1.compareTo(val2) > 0) {
+				this.val1 = val2;
+				this.val2 = val1;
+			}
+			else {
+				this.val1 = val1;
+				this.val2 = val2;
+			}
+			this.hash = Objects.hashCode(scorer, this.val1, this.val2);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == null) return false;
+			if (getClass() != obj.getClass()) return false;
+			final ScoreKey other = (ScoreKey) obj;
+			return 	hash == other.hash &&
+					Objects.equal(this.scorer, other.scorer) &&
+					this.val1.equals(other.val1) &&
+					this.val2.equals(other.val2);
+		}
+	}
+
+	/**
+	 * LRU map of a stripe of the cache.
+	 */
+	@SuppressWarnings("serial")
+	private static class ScoreStripe extends LinkedHashMap<ScoreKey, Double> {
+		private int maximumSize;
+
+		ScoreStripe(int maximumSize)
+		{
+			super(16, 0.75f, true);
+			this.maximumSize = maximumSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ScoreKey, Double> eldest)
+		{
+			return size() > maximumSize;
+		}
+
+		@Override
+		public synchronized Double get(Object key)
+		{
+			return super.get(key);
+		}
+
+		@Override
+		public synchronized Double put(ScoreKey key, Double value)
+		{
+			return super.put(key, value);
+		}
+
+		@Override
+		public synchronized int size()
+		{
+			return super.size();
+		}
+
+		@Override
+		public synchronized void clear()
+		{
+			super.clear();
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package walmartlabs.productmatching.autorulegenerator.utils.match;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.Lists;
+import com.walmart.productgenome.pairComparison.utils.tokenizers.StandardAnalyzerTokenizer;
+
+/**
+ * Tokenizes every distinct value once, and remembers its tokens for all the comparisons the
+ * value takes part in.
+ *
+ * Tokens are interned as well, so the same token coming from different values is a single
+ * string : comparing equal tokens is then mostly a reference check, and repeated tokens cost
+ * no memory.
+ *
+ * Callers get their own copy of the token list, which they are free to change.
+ *
+ * The cache is not bounded, as it holds the distinct values of the examples being paired. The
+ * dataset readers clear the cache of {@link MatchUtils} once done with a dataset, and so should
+ * any other caller scoring a whole dataset.
+ *
+ * @author excelsior
+ *
+ */
+public class TokenCache {
+	private StandardAnalyzerTokenizer tokenizer;
+
+	// Tokens of each value tokenized so far
+	private ConcurrentMap<String, String[]> valueTokensMap = new ConcurrentHashMap<String, String[]>();
+	// Canonical instance of each token
+	private ConcurrentMap<String, String> tokens = new ConcurrentHashMap<String, String>();
+
+	private AtomicLong hitCount = new AtomicLong();
+	private AtomicLong missCount = new AtomicLong();
+
+	public TokenCache(StandardAnalyzerTokenizer tokenizer)
+	{
+		this.tokenizer = tokenizer;
+	}
+
+	/**
+	 * Returns the tokens of a value, tokenizing it on first use.
+	 */
+	public List<String> tokenize(String value)
+	{
+		String[] valueTokens = valueTokensMap.get(value);
+		if(valueTokens == null) {
+			missCount.incrementAndGet();
+			valueTokens = internTokens(tokenizer.tokenize(value));
+			String[] prevValueTokens = valueTokensMap.putIfAbsent(value, valueTokens);
+			if(prevValueTokens != null) {
+				valueTokens = prevValueTokens;
+			}
+		}
+		else {
+			hitCount.incrementAndGet();
+		}
+
+		return Lists.newArrayList(valueTokens);
+	}
+
+	private String[] internTokens(List<String> valueTokens)
+	{
+		String[] internedTokens = new String[valueTokens.size()];
+		for(int index = 0; index < internedTokens.length; index++) {
+			String token = valueTokens.get(index);
+			String internedToken = tokens.putIfAbsent(token, token);
+			internedTokens[index] = internedToken != null ? internedToken : token;
+		}
+		return internedTokens;
+	}
+
+	/**
+	 * Number of distinct values tokenized.
+	 */
+	public int size() {
+		return valueTokensMap.size();
+	}
+
+	/**
+	 * Number of distinct tokens seen.
+	 */
+	public int getNumTokens() {
+		return tokens.size();
+	}
+
+	/**
+	 * Forgets all the values and tokens. The hit and miss counts are kept.
+	 */
+	public void clear()
+	{
+		valueTokensMap.clear();
+		tokens.clear();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("TokenCache [values=").append(size()).append(", tokens=").append(getNumTokens())
+				.append(", hits=").append(getHitCount()).append(", misses=").append(getMissCount()).append("]");
+		return builder.toString();
+	}
+}
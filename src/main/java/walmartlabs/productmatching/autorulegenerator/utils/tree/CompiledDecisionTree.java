@@ -0,0 +1,189 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeLinkType;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNode;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNodeType;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Rule decision tree compiled into flat arrays, for classifying large numbers of item pairs.
+ *
+ * Nodes are numbered in pre-order, so the less-than child of a feature node always comes right
+ * after it and only the position of the greater-than-or-equal child needs to be stored. A node
+ * is a leaf node if it has no feature. Classifying a pair is then a tight loop over primitive
+ * arrays, with no objects to follow and no link types to compare.
+ *
+ * A pair is described by its vector of match scores, indexed by the position of each feature in
+ * the list of features the tree was compiled with.
+ *
+ * @author excelsior
+ *
+ */
+public class CompiledDecisionTree {
+	private static int LEAF_NODE = -1;
+
+	private List<Feature> features;
+
+	// Feature to compare at each node, LEAF_NODE for leaf nodes
+	private int[] featureIndices;
+	// Scores less than the threshold go to the next node, the others to the greater-than node
+	private double[] thresholds;
+	private int[] greaterThanNodes;
+	// Class label of each leaf node
+	private boolean[] isMatchLabels;
+
+	private CompiledDecisionTree(List<Feature> features, int[] featureIndices, double[] thresholds,
+			int[] greaterThanNodes, boolean[] isMatchLabels)
+	{
+		this.features = features;
+		this.featureIndices = featureIndices;
+		this.thresholds = thresholds;
+		this.greaterThanNodes = greaterThanNodes;
+		this.isMatchLabels = isMatchLabels;
+	}
+
+	/**
+	 * Compiles a learnt decision tree. The features of the tree must be part of the given
+	 * features, which define the layout of the score vectors to classify.
+	 */
+	public static CompiledDecisionTree compile(DecisionTreeNode root, List<Feature> features)
+	{
+		Map<Feature, Integer> featureIndexMap = Maps.newHashMap();
+		for(int featureIndex = 0; featureIndex < features.size(); featureIndex++) {
+			featureIndexMap.put(features.get(featureIndex), featureIndex);
+		}
+
+		int numNodes = countNodes(root);
+		CompiledDecisionTree tree = new CompiledDecisionTree(Lists.newArrayList(features), new int[numNodes],
+				new double[numNodes], new int[numNodes], new boolean[numNodes]);
+		tree.compileNode(root, 0, featureIndexMap);
+		return tree;
+	}
+
+	private static int countNodes(DecisionTreeNode node)
+	{
+		int numNodes = 1;
+		if(node.getNodeType().equals(DecisionTreeNodeType.FEATURE_NODE)) {
+			for(DecisionTreeNode childNode : node.getChildNodes()) {
+				numNodes += countNodes(childNode);
+			}
+		}
+		return numNodes;
+	}
+
+	/**
+	 * Lays out the subtree of a node starting at the given position. Returns the position
+	 * following the subtree.
+	 */
+	private int compileNode(DecisionTreeNode node, int position, Map<Feature, Integer> featureIndexMap)
+	{
+		if(node.getNodeType().equals(DecisionTreeNodeType.CLASS_NODE)) {
+			featureIndices[position] = LEAF_NODE;
+			isMatchLabels[position] = DecisionTreeClassLabel.MATCH.equals(node.getLabel());
+			return position + 1;
+		}
+
+		Integer featureIndex = featureIndexMap.get(node.getBestFeature());
+		if(featureIndex == null) {
+			throw new IllegalArgumentException("Feature " + node.getBestFeature() + " of the tree is not part of the features");
+		}
+
+		DecisionTreeNode lessThanNode = null;
+		DecisionTreeNode greaterThanNode = null;
+		for(DecisionTreeNode childNode : node.getChildNodes()) {
+			if(childNode.getParentLinkType().equals(DecisionTreeLinkType.MATCH_LINK)) {
+				lessThanNode = childNode;
+			}
+			else {
+				greaterThanNode = childNode;
+			}
+		}
+
+		featureIndices[position] = featureIndex;
+		thresholds[position] = lessThanNode.getParentFeatureLinkValue();
+		int greaterThanPosition = compileNode(lessThanNode, position + 1, featureIndexMap);
+		greaterThanNodes[position] = greaterThanPosition;
+		return compileNode(greaterThanNode, greaterThanPosition, featureIndexMap);
+	}
+
+	/**
+	 * Is the pair with the given match scores a MATCH ?
+	 */
+	public boolean isMatch(double[] scores)
+	{
+		int node = 0;
+		int featureIndex;
+		while((featureIndex = featureIndices[node]) != LEAF_NODE) {
+			node = Double.compare(scores[featureIndex], thresholds[node]) < 0 ? node + 1 : greaterThanNodes[node];
+		}
+		return isMatchLabels[node];
+	}
+
+	/**
+	 * Classifies the pair with the given match scores.
+	 */
+	public DecisionTreeClassLabel classify(double[] scores)
+	{
+		return isMatch(scores) ? DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH;
+	}
+
+	/**
+	 * Classifies a batch of pairs, one vector of match scores per pair. Returns whether each pair
+	 * is a MATCH.
+	 */
+	public boolean[] classify(double[][] scores)
+	{
+		boolean[] isMatch = new boolean[scores.length];
+		classify(scores, isMatch);
+		return isMatch;
+	}
+
+	/**
+	 * Classifies a batch of pairs, one vector of match scores per pair, into a reusable array.
+	 */
+	public void classify(double[][] scores, boolean[] isMatch)
+	{
+		for(int pair = 0; pair < scores.length; pair++) {
+			isMatch[pair] = isMatch(scores[pair]);
+		}
+	}
+
+	/**
+	 * Builds the vector of match scores of an example pair, in the layout expected by the tree.
+	 */
+	public double[] getScores(ExamplePair examplePair)
+	{
+		double[] scores = new double[features.size()];
+		for(int featureIndex = 0; featureIndex < scores.length; featureIndex++) {
+			scores[featureIndex] = examplePair.getAttributeMatchScore(features.get(featureIndex));
+		}
+		return scores;
+	}
+
+	public List<Feature> getFeatures() {
+		return features;
+	}
+
+	public int getNumNodes() {
+		return featureIndices.length;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("CompiledDecisionTree [featureIndices=").append(Arrays.toString(featureIndices))
+				.append(", thresholds=").append(Arrays.toString(thresholds))
+				.append(", greaterThanNodes=").append(Arrays.toString(greaterThanNodes))
+				.append(", isMatchLabels=").append(Arrays.toString(isMatchLabels)).append("]");
+		return builder.toString();
+	}
+}
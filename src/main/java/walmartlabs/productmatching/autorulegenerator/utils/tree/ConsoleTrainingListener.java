@@ -0,0 +1,88 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import java.io.PrintStream;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNode;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.SplitCandidate;
+import walmartlabs.productmatching.autorulegenerator.utils.DecisionTreeUtils;
+
+/**
+ * Verbose listener that prints every step of learning the tree, i.e. the score distribution
+ * of every candidate feature at every node, the splits chosen and why leaf nodes were created.
+ *
+ * Meant for debugging small datasets, as the output grows with the number of distinct scores.
+ *
+ * @author excelsior
+ *
+ */
+public class ConsoleTrainingListener implements TrainingListener {
+	private PrintStream out;
+
+	public ConsoleTrainingListener()
+	{
+		this(System.out);
+	}
+
+	public ConsoleTrainingListener(PrintStream out)
+	{
+		this.out = out;
+	}
+
+	@Override
+	public void featureEvaluated(Feature feature, FeatureScoreHistogram histogram, SplitCandidate split)
+	{
+		// Keep the lines of a feature together when features are evaluated in parallel
+		StringBuilder featureState = new StringBuilder();
+		featureState.append("Feature name : ").append(feature.toString()).append("\n");
+		for(int index = 0; index < histogram.size(); index++) {
+			featureState.append("Value : ").append(histogram.getValue(index)).append(" ==> ")
+				.append(DecisionTreeUtils.getClassLabelsCount(histogram.getMatches(index), histogram.getMismatches(index)))
+				.append("\n");
+		}
+		if(split.getSplitValue() >= 0) {
+			featureState.append("#Best info gain for feature ").append(feature.getFeatureName())
+				.append(" with split value ").append(split.getSplitValue())
+				.append(" for gain ").append(split.getInfoGain()).append("\n");
+		}
+		out.print(featureState.toString());
+	}
+
+	@Override
+	public void featureNodeCreated(DecisionTreeNode node, SplitCandidate split, long elapsedNanos)
+	{
+		Feature bestFeature = split.getFeature();
+		StringBuilder nodeState = new StringBuilder();
+		nodeState.append("#Best feature ").append(bestFeature.getFeatureName())
+			.append(" with info gain ").append(split.getInfoGain()).append("\n");
+		nodeState.append("Best feature chosen ").append(bestFeature.getFeatureName()).append("\n");
+		nodeState.append("Best split value of ").append(split.getSplitValue())
+			.append(" for feature ").append(bestFeature.getAttrName()).append("\n");
+		nodeState.append("Partitioned ").append(node.getNumExamples()).append(" example pairs into ")
+			.append(split.getLessThanCount()).append(" and ").append(split.getGreaterThanCount())
+			.append(" in ").append(elapsedNanos/1000).append(" us\n");
+		out.print(nodeState.toString());
+	}
+
+	@Override
+	public void leafNodeCreated(DecisionTreeNode node, LeafNodeReason reason, long elapsedNanos)
+	{
+		switch(reason) {
+		case NO_EXAMPLE_PAIRS:
+			out.println("Creating leaf node with DEFAULT label because no example pairs left.");
+			break;
+		case NO_FEATURES:
+			out.println("Creating leaf node with MAJORITY label because no features left.");
+			break;
+		case LESS_THAN_THRESHOLD:
+			out.println("Creating leaf node because LESS THAN THRESHOLD with MAJORITY label");
+			break;
+		case PURE_CLASSIFICATION:
+			out.println("Creating leaf node because PURE classification " + node.getLabel().toString());
+			break;
+		case NO_BEST_FEATURE:
+			out.println("Creating leaf node because no BEST feature could be found.");
+			break;
+		}
+	}
+}
@@ -0,0 +1,467 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeLinkType;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNode;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNodeType;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.FeatureMatrix;
+import walmartlabs.productmatching.autorulegenerator.model.SplitCandidate;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Learns the rule decision tree from a presorted {@link FeatureMatrix}.
+ *
+ * The example pairs reaching a node are a contiguous range of positions, the same range in the
+ * presorted rows of every feature. Once the best split of a node is known, the rows of every
+ * feature are stably partitioned in place, so that both children get a contiguous range that is
+ * still in ascending score order. Induction thus runs entirely on primitive arrays, and the rows
+ * of a feature are only sorted once, when the root evaluates it. A tree whose root is a leaf
+ * never scores a feature.
+ *
+ * Sibling subtrees work on disjoint ranges of the shared arrays, so large ones are built as
+ * separate fork/join tasks when a pool is configured, and work stealing keeps the cores busy on
+ * unbalanced trees.
+ *
+ * Progress is reported to the {@link TrainingListener} of the options, if any.
+ *
+ * @author excelsior
+ *
+ */
+public class DecisionTreeLearner {
+
+	private FeatureMatrix matrix;
+	private DecisionTreeLearningOptions options;
+	// Events are only built and timed when someone listens
+	private TrainingListener listener;
+
+	// Rows of each feature in ascending score order, partitioned in place as the tree grows
+	private int[][] sortedRows;
+	// Rows in their original order, partitioned along with the sorted rows
+	private int[] rowOrder;
+	// Scratch space for the stable partitions
+	private int[] scratch;
+	// Does a row go down the less-than branch of the node being split ?
+	private boolean[] isLessThan;
+
+	public DecisionTreeLearner(FeatureMatrix matrix, int leafThreshold)
+	{
+		this(matrix, new DecisionTreeLearningOptions(leafThreshold));
+	}
+
+	public DecisionTreeLearner(FeatureMatrix matrix, DecisionTreeLearningOptions options)
+	{
+		this.matrix = matrix;
+		this.options = options;
+		this.listener = options.getTrainingListener();
+	}
+
+	/**
+	 * Learn the decision tree so that it efficiently fits the example pairs of the matrix.
+	 */
+	public DecisionTreeNode learnRuleDecisionTree()
+	{
+		int numRows = matrix.getNumRows();
+		int numFeatures = matrix.getNumFeatures();
+
+		// The rows of a feature are only sorted, and the feature scored, once the root evaluates it
+		sortedRows = new int[numFeatures][];
+		int[] features = new int[numFeatures];
+		for(int featureIndex = 0; featureIndex < numFeatures; featureIndex++) {
+			features[featureIndex] = featureIndex;
+		}
+
+		rowOrder = new int[numRows];
+		for(int row = 0; row < numRows; row++) {
+			rowOrder[row] = row;
+		}
+		scratch = new int[numRows];
+		isLessThan = new boolean[numRows];
+
+		SubtreeTask rootTask = new SubtreeTask(0, numRows, features, getMatches(0, numRows));
+		ForkJoinPool pool = options.getForkJoinPool();
+		if(pool == null || ForkJoinTask.getPool() == pool) {
+			return rootTask.invoke();
+		}
+
+		return pool.invoke(rootTask);
+	}
+
+	/**
+	 * Learns the subtree for the example pairs at positions [from, to), using the given features.
+	 * The number of MATCH pairs in the range is known from the split of the parent node.
+	 */
+	private DecisionTreeNode learnRuleDecisionTree(int from, int to, int[] features, int matches)
+	{
+		long startTime = listener != null ? System.nanoTime() : 0L;
+		DecisionTreeClassLabel defaultClassLabel = DecisionTreeClassLabel.MISMATCH;
+		int numExPairs = to - from;
+
+		// Returns a leaf node with default class label if examples is empty
+		if(numExPairs == 0) {
+			return createLeafNode(from, to, matches, features, defaultClassLabel, LeafNodeReason.NO_EXAMPLE_PAIRS, startTime);
+		}
+
+		int mismatches = numExPairs - matches;
+		DecisionTreeClassLabel majorityClassLabel = getMajorityClassLabel(matches, mismatches);
+		if(majorityClassLabel == null) {
+			majorityClassLabel = defaultClassLabel;
+		}
+
+		// Returns a leaf node with majority class label if features is empty
+		if(features.length == 0) {
+			return createLeafNode(from, to, matches, features, majorityClassLabel, LeafNodeReason.NO_FEATURES, startTime);
+		}
+
+		// Check if number of instances left is less than the leaf threshold
+		if(numExPairs < options.getLeafThreshold()) {
+			return createLeafNode(from, to, matches, features, majorityClassLabel, LeafNodeReason.LESS_THAN_THRESHOLD, startTime);
+		}
+
+		// Return if there is a pure classification
+		if(matches == 0 || mismatches == 0) {
+			DecisionTreeClassLabel pureClassLabel =
+				matches > 0 ? DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH;
+			return createLeafNode(from, to, matches, features, pureClassLabel, LeafNodeReason.PURE_CLASSIFICATION, startTime);
+		}
+
+		// Choose the best feature, along with its split
+		double totalInfo = NumericSplitFinder.getInfo(matches, mismatches);
+		SplitCandidate bestSplit = getBestFeature(from, to, features, totalInfo);
+		if(bestSplit == null) {
+			return createLeafNode(from, to, matches, features, majorityClassLabel, LeafNodeReason.NO_BEST_FEATURE, startTime);
+		}
+
+		Feature bestFeature = bestSplit.getFeature();
+		DecisionTreeNode root = createFeatureNode(from, to, matches, features, bestFeature);
+		double bestFeatureSplitValue = bestSplit.getSplitValue();
+
+		int[] remainingFeatures = getRemainingFeatures(features, bestFeature);
+		partition(from, to, bestSplit, remainingFeatures);
+		int numLessThan = bestSplit.getLessThanCount();
+		if(listener != null) {
+			listener.featureNodeCreated(root, bestSplit, System.nanoTime() - startTime);
+		}
+
+		// Iterate through the possible feature values and generate apt tree branches. Large
+		// branches are forked off as tasks, the small ones are built right away.
+		List<DecisionTreeLinkType> dTreeLinkTypes = DecisionTreeLinkType.getDecisonTreeLinkValues();
+		SubtreeTask[] subtreeTasks = new SubtreeTask[dTreeLinkTypes.size()];
+		DecisionTreeNode[] valueNodes = new DecisionTreeNode[dTreeLinkTypes.size()];
+		for(int index = 0; index < dTreeLinkTypes.size(); index++) {
+			SubtreeTask subtreeTask = null;
+			if(dTreeLinkTypes.get(index).equals(DecisionTreeLinkType.MATCH_LINK)) {
+				subtreeTask = new SubtreeTask(from, from + numLessThan, remainingFeatures, bestSplit.getLessThanMatches());
+			}
+			else {
+				subtreeTask = new SubtreeTask(from + numLessThan, to, remainingFeatures, bestSplit.getGreaterThanMatches());
+			}
+			
+			if(isParallelSubtree(subtreeTask)) {
+				subtreeTask.fork();
+				subtreeTasks[index] = subtreeTask;
+			}
+			else {
+				valueNodes[index] = subtreeTask.learnSubtree();
+			}
+		}
+		
+		List<DecisionTreeNode> featureValueNodes = Lists.newArrayList();
+		for(int index = 0; index < dTreeLinkTypes.size(); index++) {
+			DecisionTreeLinkType dTreeLinkType = dTreeLinkTypes.get(index);
+			DecisionTreeNode valueNode = valueNodes[index];
+			if(subtreeTasks[index] != null) {
+				valueNode = subtreeTasks[index].join();
+			}
+			valueNode.setParentFeatureName(bestFeature);
+			valueNode.setParentFeatureLinkValue(bestFeatureSplitValue);
+			valueNode.setParentLinkType(dTreeLinkType);
+
+			featureValueNodes.add(valueNode);
+		}
+
+		root.setChildNodes(featureValueNodes);
+		return root;
+	}
+
+	/**
+	 * Should this subtree be forked as a task of its own ?
+	 */
+	private boolean isParallelSubtree(SubtreeTask subtreeTask)
+	{
+		ForkJoinPool pool = options.getForkJoinPool();
+		return pool != null && ForkJoinTask.getPool() == pool && 
+			subtreeTask.to - subtreeTask.from >= options.getMinParallelSubtreeSize();
+	}
+
+	/**
+	 * Builds the subtree for the example pairs at positions [from, to).
+	 */
+	@SuppressWarnings("serial")
+	private class SubtreeTask extends RecursiveTask<DecisionTreeNode> {
+		private int from;
+		private int to;
+		private int[] features;
+		private int matches;
+
+		SubtreeTask(int from, int to, int[] features, int matches)
+		{
+			this.from = from;
+			this.to = to;
+			this.features = features;
+			this.matches = matches;
+		}
+
+		@Override
+		protected DecisionTreeNode compute()
+		{
+			return learnSubtree();
+		}
+
+		DecisionTreeNode learnSubtree()
+		{
+			return learnRuleDecisionTree(from, to, features, matches);
+		}
+	}
+
+	/**
+	 * Determines the best feature using information gain metric for the example pairs at
+	 * positions [from, to). Returns null if no feature has a positive information gain.
+	 *
+	 * The features may be evaluated in parallel, but the best one is always picked in feature
+	 * order with the first of several equally good features winning, so the choice is the same
+	 * as when evaluating them one after another.
+	 */
+	private SplitCandidate getBestFeature(int from, int to, int[] features, double totalInfo)
+	{
+		SplitCandidate[] splits = new SplitCandidate[features.length];
+		ForkJoinPool pool = options.getForkJoinPool();
+		if(pool != null && features.length > 1 && to - from >= options.getMinParallelFeatureEvaluationSize()) {
+			FeatureEvaluationTask task = new FeatureEvaluationTask(from, to, features, totalInfo, splits, 0, features.length);
+			if(ForkJoinTask.getPool() == pool) {
+				task.invoke();
+			}
+			else {
+				pool.invoke(task);
+			}
+		}
+		else {
+			for(int index = 0; index < features.length; index++) {
+				splits[index] = getInfoGainNumericFeature(from, to, features[index], totalInfo);
+			}
+		}
+
+		SplitCandidate bestSplit = null;
+		double maxInfoGain = -999;
+		for(SplitCandidate split : splits) {
+			if(Double.compare(split.getInfoGain(), maxInfoGain) > 0) {
+				maxInfoGain = split.getInfoGain();
+				bestSplit = split;
+			}
+		}
+
+		// Couldn't find a single feature with positive information gain.
+		if(Double.compare(maxInfoGain, 0) <= 0) {
+			bestSplit = null;
+		}
+
+		return bestSplit;
+	}
+
+	/**
+	 * Evaluates a slice of the candidate features of a node, splitting it in halves until a
+	 * single feature is left.
+	 */
+	@SuppressWarnings("serial")
+	private class FeatureEvaluationTask extends RecursiveAction {
+		private int from;
+		private int to;
+		private int[] features;
+		private double totalInfo;
+		// Evaluated split of each feature, filled in place
+		private SplitCandidate[] splits;
+		// Slice of the features to evaluate
+		private int lo;
+		private int hi;
+
+		FeatureEvaluationTask(int from, int to, int[] features, double totalInfo, SplitCandidate[] splits, int lo, int hi)
+		{
+			this.from = from;
+			this.to = to;
+			this.features = features;
+			this.totalInfo = totalInfo;
+			this.splits = splits;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(hi - lo == 1) {
+				splits[lo] = getInfoGainNumericFeature(from, to, features[lo], totalInfo);
+				return;
+			}
+
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new FeatureEvaluationTask(from, to, features, totalInfo, splits, lo, mid),
+					new FeatureEvaluationTask(from, to, features, totalInfo, splits, mid, hi));
+		}
+	}
+
+	/**
+	 * Determines the best split, and thus the information gain, for a numeric feature
+	 */
+	private SplitCandidate getInfoGainNumericFeature(int from, int to, int featureIndex, double totalInfo)
+	{
+		Feature feature = matrix.getFeatures().get(featureIndex);
+		FeatureScoreHistogram histogram = getScoreHistogram(from, to, featureIndex);
+
+		SplitCandidate split = NumericSplitFinder.getBestSplit(feature, featureIndex, histogram, totalInfo);
+		if(listener != null) {
+			listener.featureEvaluated(feature, histogram, split);
+		}
+		return split;
+	}
+
+	/**
+	 * The root evaluates every feature before any partition, so the first time a feature is
+	 * evaluated its rows are still in the order of the matrix.
+	 */
+	private FeatureScoreHistogram getScoreHistogram(int from, int to, int featureIndex)
+	{
+		if(sortedRows[featureIndex] == null) {
+			sortedRows[featureIndex] = matrix.copySortedRows(featureIndex);
+		}
+		return NumericSplitFinder.getScoreHistogram(matrix.getColumn(featureIndex), matrix.getMatchLabels(),
+				sortedRows[featureIndex], from, to);
+	}
+
+	/**
+	 * Splits the example pairs at positions [from, to) on the value of the best feature. Pairs
+	 * with a score less than the split value move to the front of the range, in the same relative
+	 * order, for the original row order and every remaining feature. The size of the front part
+	 * is the less-than count of the split.
+	 */
+	private void partition(int from, int to, SplitCandidate split, int[] remainingFeatures)
+	{
+		double[] column = matrix.getColumn(split.getFeatureIndex());
+		double splitValue = split.getSplitValue();
+		for(int pos = from; pos < to; pos++) {
+			int row = rowOrder[pos];
+			isLessThan[row] = Double.compare(column[row], splitValue) < 0;
+		}
+
+		stablePartition(rowOrder, from, to);
+		for(int remainingFeature : remainingFeatures) {
+			stablePartition(sortedRows[remainingFeature], from, to);
+		}
+	}
+
+	private void stablePartition(int[] rows, int from, int to)
+	{
+		int left = from;
+		int right = from;
+		for(int pos = from; pos < to; pos++) {
+			int row = rows[pos];
+			if(isLessThan[row]) {
+				rows[left++] = row;
+			}
+			else {
+				scratch[right++] = row;
+			}
+		}
+		System.arraycopy(scratch, from, rows, left, right - from);
+	}
+
+	/**
+	 * Returns the remaining features excluding all the features on the attribute already chosen.
+	 */
+	private int[] getRemainingFeatures(int[] features, Feature featureToSubtract)
+	{
+		int[] remainingFeatures = new int[features.length];
+		int numRemaining = 0;
+		for(int featureIndex : features) {
+			Feature f = matrix.getFeatures().get(featureIndex);
+			if(f.getAttrName().equals(featureToSubtract.getAttrName())) {
+				continue;
+			}
+
+			remainingFeatures[numRemaining++] = featureIndex;
+		}
+
+		int[] result = new int[numRemaining];
+		System.arraycopy(remainingFeatures, 0, result, 0, numRemaining);
+		return result;
+	}
+
+	private int getMatches(int from, int to)
+	{
+		boolean[] matchLabels = matrix.getMatchLabels();
+		int matches = 0;
+		for(int pos = from; pos < to; pos++) {
+			if(matchLabels[rowOrder[pos]]) {
+				++matches;
+			}
+		}
+
+		return matches;
+	}
+
+	/**
+	 * Returns the most frequently occurring class label, or null in case of a tie.
+	 */
+	private static DecisionTreeClassLabel getMajorityClassLabel(int matches, int mismatches)
+	{
+		if(matches == mismatches) {
+			return null;
+		}
+
+		return matches > mismatches ? DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH;
+	}
+
+	/**
+	 * Creates a classification node in the decision tree
+	 */
+	private DecisionTreeNode createLeafNode(int from, int to, int matches, int[] features, DecisionTreeClassLabel classLabel,
+			LeafNodeReason reason, long startTime)
+	{
+		DecisionTreeNode node = createNode(from, to, matches, features);
+		node.setLabel(classLabel);
+		node.setNodeType(DecisionTreeNodeType.CLASS_NODE);
+		if(listener != null) {
+			listener.leafNodeCreated(node, reason, System.nanoTime() - startTime);
+		}
+
+		return node;
+	}
+
+	/**
+	 * Creates an intermediate feature node in the classification tree.
+	 */
+	private DecisionTreeNode createFeatureNode(int from, int to, int matches, int[] features, Feature bestFeature)
+	{
+		DecisionTreeNode node = createNode(from, to, matches, features);
+		node.setBestFeature(bestFeature);
+		node.setNodeType(DecisionTreeNodeType.FEATURE_NODE);
+
+		return node;
+	}
+
+	/**
+	 * The node refers to its slice of the row order rather than copying the example pairs. The
+	 * slice keeps holding the same rows once the node's subtree is built, only grouped by branch.
+	 */
+	private DecisionTreeNode createNode(int from, int to, int matches, int[] features)
+	{
+		return new DecisionTreeNode(matrix.getExamplePairs(), rowOrder, from, to, matches,
+				matrix.getFeatures(), features);
+	}
+}
@@ -0,0 +1,82 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Knobs for learning the rule decision tree.
+ * 
+ * None of the options affect the learnt tree except the leaf threshold. The parallel options
+ * only change how fast it is learnt.
+ * 
+ * @author excelsior
+ *
+ */
+public class DecisionTreeLearningOptions {
+	
+	// Nodes with fewer example pairs than this become leaf nodes with the majority label
+	private int leafThreshold = 0;
+	
+	// Pool on which the candidate features of a node are evaluated and the subtrees are built in
+	// parallel. Everything runs on the calling thread if no pool is set.
+	private ForkJoinPool forkJoinPool = null;
+	
+	// Nodes with fewer example pairs than this evaluate their features sequentially, as the
+	// parallel overhead is not worth it.
+	private int minParallelFeatureEvaluationSize = 1000;
+	
+	// Subtrees with fewer example pairs than this are built inline by the task of their parent
+	// rather than forked as a task of their own.
+	private int minParallelSubtreeSize = 5000;
+	
+	// Receives the events of learning the tree. Nothing is reported if no listener is set.
+	private TrainingListener trainingListener = null;
+	
+	public DecisionTreeLearningOptions()
+	{
+	}
+	
+	public DecisionTreeLearningOptions(int leafThreshold)
+	{
+		this.leafThreshold = leafThreshold;
+	}
+
+	public int getLeafThreshold() {
+		return leafThreshold;
+	}
+
+	public void setLeafThreshold(int leafThreshold) {
+		this.leafThreshold = leafThreshold;
+	}
+
+	public ForkJoinPool getForkJoinPool() {
+		return forkJoinPool;
+	}
+
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	public int getMinParallelFeatureEvaluationSize() {
+		return minParallelFeatureEvaluationSize;
+	}
+
+	public void setMinParallelFeatureEvaluationSize(int minParallelFeatureEvaluationSize) {
+		this.minParallelFeatureEvaluationSize = minParallelFeatureEvaluationSize;
+	}
+
+	public int getMinParallelSubtreeSize() {
+		return minParallelSubtreeSize;
+	}
+
+	public void setMinParallelSubtreeSize(int minParallelSubtreeSize) {
+		this.minParallelSubtreeSize = minParallelSubtreeSize;
+	}
+
+	public TrainingListener getTrainingListener() {
+		return trainingListener;
+	}
+
+	public void setTrainingListener(TrainingListener trainingListener) {
+		this.trainingListener = trainingListener;
+	}
+}
@@ -0,0 +1,151 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import java.util.Arrays;
+
+/**
+ * Distribution of the scores of a single feature over the example pairs reaching a decision
+ * tree node.
+ *
+ * The scores are collapsed into their distinct values in ascending order, along with the number
+ * of MATCH and MISMATCH pairs having each value and the running counts of pairs below each value.
+ * This is all that is needed to score every numeric split threshold of the feature without going
+ * back to the example pairs.
+ *
+ * Scores have to be added in ascending order, as defined by {@link Double#compare(double, double)}.
+ *
+ * @author excelsior
+ *
+ */
+public class FeatureScoreHistogram {
+
+	// Distinct scores in ascending order
+	private double[] values;
+	// Number of MATCH and MISMATCH pairs having each distinct score
+	private int[] matches;
+	private int[] mismatches;
+	// Number of MATCH and MISMATCH pairs having a score strictly less than each distinct score
+	private int[] matchesBelow;
+	private int[] mismatchesBelow;
+	private int size = 0;
+
+	private int totalMatches = 0;
+	private int totalMismatches = 0;
+
+	// Pairs with a negative score, i.e. a missing value for the feature
+	private int missingMatches = 0;
+	private int missingMismatches = 0;
+
+	public FeatureScoreHistogram(int capacity)
+	{
+		capacity = Math.max(capacity, 1);
+		values = new double[capacity];
+		matches = new int[capacity];
+		mismatches = new int[capacity];
+		matchesBelow = new int[capacity];
+		mismatchesBelow = new int[capacity];
+	}
+
+	/**
+	 * Adds the score of the next example pair. Scores must arrive in ascending order.
+	 */
+	public void add(double value, boolean isMatch)
+	{
+		if(size == 0 || Double.compare(values[size-1], value) != 0) {
+			if(size == values.length) {
+				grow();
+			}
+			values[size] = value;
+			matches[size] = 0;
+			mismatches[size] = 0;
+			matchesBelow[size] = totalMatches;
+			mismatchesBelow[size] = totalMismatches;
+			++size;
+		}
+
+		if(isMatch) {
+			++matches[size-1];
+			++totalMatches;
+			if(value < 0) {
+				++missingMatches;
+			}
+		}
+		else {
+			++mismatches[size-1];
+			++totalMismatches;
+			if(value < 0) {
+				++missingMismatches;
+			}
+		}
+	}
+
+	private void grow()
+	{
+		int capacity = 2*values.length;
+		values = Arrays.copyOf(values, capacity);
+		matches = Arrays.copyOf(matches, capacity);
+		mismatches = Arrays.copyOf(mismatches, capacity);
+		matchesBelow = Arrays.copyOf(matchesBelow, capacity);
+		mismatchesBelow = Arrays.copyOf(mismatchesBelow, capacity);
+	}
+
+	/**
+	 * Returns the number of distinct scores strictly less than the given threshold.
+	 */
+	public int getDistinctValuesBelow(double threshold)
+	{
+		int index = Arrays.binarySearch(values, 0, size, threshold);
+		return index >= 0 ? index : -(index + 1);
+	}
+
+	/**
+	 * Number of MATCH pairs in the first <code>distinctValues</code> distinct scores.
+	 */
+	public int getMatchesBelow(int distinctValues)
+	{
+		return distinctValues < size ? matchesBelow[distinctValues] : totalMatches;
+	}
+
+	/**
+	 * Number of MISMATCH pairs in the first <code>distinctValues</code> distinct scores.
+	 */
+	public int getMismatchesBelow(int distinctValues)
+	{
+		return distinctValues < size ? mismatchesBelow[distinctValues] : totalMismatches;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getValue(int index) {
+		return values[index];
+	}
+
+	public int getMatches(int index) {
+		return matches[index];
+	}
+
+	public int getMismatches(int index) {
+		return mismatches[index];
+	}
+
+	public int getTotalMatches() {
+		return totalMatches;
+	}
+
+	public int getTotalMismatches() {
+		return totalMismatches;
+	}
+
+	public int getTotal() {
+		return totalMatches + totalMismatches;
+	}
+
+	public int getMissingMatches() {
+		return missingMatches;
+	}
+
+	public int getMissingMismatches() {
+		return missingMismatches;
+	}
+}
@@ -0,0 +1,391 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import java.util.List;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeLinkType;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNode;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNodeType;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.SplitCandidate;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Learns the rule decision tree incrementally, as labelled example pairs keep coming in, in the
+ * manner of a Hoeffding tree (Domingos and Hulten, Mining High-Speed Data Streams).
+ *
+ * Example pairs are not kept. Each leaf only keeps, for each of its features, the class counts of
+ * the scores it has seen in bins of equal width over [0, 1], along with those of the missing
+ * (negative) scores, which is all it takes to score the splits of the leaf on the bin boundaries.
+ * Learning an example pair thus costs a walk down the tree and a few counter updates, whatever
+ * the number of example pairs learnt before.
+ *
+ * Every grace period, a leaf scores its splits with the same information gain as the batch
+ * learner, and is split on its best feature once the Hoeffding bound says that the best feature
+ * would still be the best one with all the example pairs to come, i.e. once its lead over the
+ * second best feature, of any attribute, is more than the bound. The children of the split
+ * start afresh, with the class counts of their branch but no score counts.
+ *
+ * The tree learnt so far can be taken at any time as a {@link DecisionTreeNode}, for the rules
+ * to be printed and extracted as for the batch learner. The nodes hold the class counts of the
+ * example pairs they have seen rather than the example pairs themselves.
+ *
+ * Learning and taking the tree may be done from several threads.
+ *
+ * @author excelsior
+ *
+ */
+public class HoeffdingTreeLearner {
+
+	// Information gain of a split of two classes lies in [0, log2(2)]
+	private static double INFO_GAIN_RANGE = 1.0;
+
+	private List<Feature> features;
+	private HoeffdingTreeOptions options;
+
+	// Lower bound of each bin, i.e. the split value at the boundary below it
+	private double[] binLowerBounds;
+
+	private HoeffdingNode root;
+	private long numExamplePairs = 0;
+
+	public HoeffdingTreeLearner(List<Feature> features)
+	{
+		this(features, new HoeffdingTreeOptions());
+	}
+
+	public HoeffdingTreeLearner(List<Feature> features, HoeffdingTreeOptions options)
+	{
+		this.features = Lists.newArrayList(features);
+		this.options = options;
+
+		int numBins = options.getNumBins();
+		binLowerBounds = new double[numBins];
+		for(int bin = 0; bin < numBins; bin++) {
+			binLowerBounds[bin] = bin/(double)numBins;
+		}
+
+		int[] featureIndices = new int[features.size()];
+		for(int featureIndex = 0; featureIndex < featureIndices.length; featureIndex++) {
+			featureIndices[featureIndex] = featureIndex;
+		}
+		root = new HoeffdingNode(featureIndices, 0, 0);
+	}
+
+	/**
+	 * Learns a single labelled example pair.
+	 */
+	public synchronized void learn(ExamplePair exPair)
+	{
+		HoeffdingNode node = root;
+		while(!node.isLeaf()) {
+			node.addClassCount(exPair);
+			node = node.getChildNode(exPair);
+		}
+		node.learn(exPair);
+		++numExamplePairs;
+	}
+
+	/**
+	 * Learns a batch of labelled example pairs, in order.
+	 */
+	public synchronized void learn(List<ExamplePair> examplePairs)
+	{
+		for(ExamplePair exPair : examplePairs) {
+			learn(exPair);
+		}
+	}
+
+	/**
+	 * Returns the tree learnt so far. The tree is built afresh on every call, and is not changed
+	 * by learning more example pairs.
+	 */
+	public synchronized DecisionTreeNode getRuleDecisionTree()
+	{
+		return root.toDecisionTreeNode();
+	}
+
+	/**
+	 * Number of example pairs learnt so far.
+	 */
+	public synchronized long getNumExamplePairs() {
+		return numExamplePairs;
+	}
+
+	public List<Feature> getFeatures() {
+		return features;
+	}
+
+	/**
+	 * A node of the tree being learnt. A leaf counts the scores of its example pairs, and a
+	 * feature node routes them to its children.
+	 */
+	private class HoeffdingNode {
+		// Features that may still be split on, as indices of the features of the learner
+		private int[] featureIndices;
+		private int matches;
+		private int mismatches;
+
+		// Split of a feature node
+		private SplitCandidate split = null;
+		private HoeffdingNode lessThanNode = null;
+		private HoeffdingNode greaterThanNode = null;
+
+		// Class counts of each bin of each feature of a leaf, laid out as
+		// [(feature*numBins + bin)*2 + (match ? 0 : 1)], and those of the missing scores
+		private int[] binCounts;
+		private int[] missingCounts;
+		// Class counts of the example pairs in the bins
+		private int observedMatches = 0;
+		private int observedMismatches = 0;
+		private int numSinceEvaluation = 0;
+
+		HoeffdingNode(int[] featureIndices, int matches, int mismatches)
+		{
+			this.featureIndices = featureIndices;
+			this.matches = matches;
+			this.mismatches = mismatches;
+			this.binCounts = new int[featureIndices.length*options.getNumBins()*2];
+			this.missingCounts = new int[featureIndices.length*2];
+		}
+
+		boolean isLeaf()
+		{
+			return split == null;
+		}
+
+		void addClassCount(ExamplePair exPair)
+		{
+			if(isMatch(exPair)) {
+				++matches;
+			}
+			else {
+				++mismatches;
+			}
+		}
+
+		HoeffdingNode getChildNode(ExamplePair exPair)
+		{
+			double score = exPair.getAttributeMatchScore(split.getFeature());
+			return score < split.getSplitValue() ? lessThanNode : greaterThanNode;
+		}
+
+		/**
+		 * Counts the scores of an example pair reaching this leaf, and splits the leaf if the
+		 * grace period is over and the best split is good enough.
+		 */
+		void learn(ExamplePair exPair)
+		{
+			addClassCount(exPair);
+			int classOffset = isMatch(exPair) ? 0 : 1;
+			if(classOffset == 0) {
+				++observedMatches;
+			}
+			else {
+				++observedMismatches;
+			}
+
+			int numBins = options.getNumBins();
+			for(int index = 0; index < featureIndices.length; index++) {
+				double score = exPair.getAttributeMatchScore(features.get(featureIndices[index]));
+				if(score < 0) {
+					++missingCounts[index*2 + classOffset];
+				}
+				else {
+					++binCounts[(index*numBins + getBin(score))*2 + classOffset];
+				}
+			}
+
+			if(++numSinceEvaluation >= options.getGracePeriod()) {
+				numSinceEvaluation = 0;
+				attemptToSplit();
+			}
+		}
+
+		private void attemptToSplit()
+		{
+			// Nothing to gain from splitting a pure leaf
+			if(observedMatches == 0 || observedMismatches == 0) {
+				return;
+			}
+
+			double totalInfo = NumericSplitFinder.getInfo(observedMatches, observedMismatches);
+			SplitCandidate[] splits = new SplitCandidate[featureIndices.length];
+			SplitCandidate bestSplit = null;
+			for(int index = 0; index < featureIndices.length; index++) {
+				splits[index] = getBestSplit(index, totalInfo);
+				if(bestSplit == null || Double.compare(splits[index].getInfoGain(), bestSplit.getInfoGain()) > 0) {
+					bestSplit = splits[index];
+				}
+			}
+			if(bestSplit == null || Double.compare(bestSplit.getInfoGain(), 0) <= 0) {
+				return;
+			}
+
+			double secondBestInfoGain = 0.0;
+			for(SplitCandidate split : splits) {
+				if(split != bestSplit) {
+					secondBestInfoGain = Math.max(secondBestInfoGain, split.getInfoGain());
+				}
+			}
+
+			double bound = getHoeffdingBound(observedMatches + observedMismatches);
+			if(bestSplit.getInfoGain() - secondBestInfoGain > bound || bound < options.getTieThreshold()) {
+				split(bestSplit);
+			}
+		}
+
+		/**
+		 * Scores the splits of a feature on every bin boundary, and returns the best one. The
+		 * lowest of several equally good split values wins.
+		 */
+		private SplitCandidate getBestSplit(int index, double totalInfo)
+		{
+			int numBins = options.getNumBins();
+			int total = observedMatches + observedMismatches;
+			int missingMatches = missingCounts[index*2];
+			int missingMismatches = missingCounts[index*2 + 1];
+			double missingInfo = ((missingMatches + missingMismatches)/(double)total)*
+					NumericSplitFinder.getInfo(missingMatches, missingMismatches);
+
+			// Missing scores are less than any split value
+			int lessThanMatches = missingMatches;
+			int lessThanMismatches = missingMismatches;
+			int bestBin = -1;
+			double bestInfoGain = 0.0;
+			int bestLessThanMatches = 0;
+			int bestLessThanMismatches = 0;
+			for(int bin = 1; bin < numBins; bin++) {
+				int offset = (index*numBins + bin - 1)*2;
+				lessThanMatches += binCounts[offset];
+				lessThanMismatches += binCounts[offset + 1];
+				int greaterThanMatches = observedMatches - lessThanMatches;
+				int greaterThanMismatches = observedMismatches - lessThanMismatches;
+
+				double splitInfo = ((lessThanMatches + lessThanMismatches)/(double)total)*
+						NumericSplitFinder.getInfo(lessThanMatches, lessThanMismatches) +
+						((greaterThanMatches + greaterThanMismatches)/(double)total)*
+						NumericSplitFinder.getInfo(greaterThanMatches, greaterThanMismatches) + missingInfo;
+				double infoGain = totalInfo - splitInfo;
+				if(Double.compare(infoGain, bestInfoGain) > 0) {
+					bestBin = bin;
+					bestInfoGain = infoGain;
+					bestLessThanMatches = lessThanMatches;
+					bestLessThanMismatches = lessThanMismatches;
+				}
+			}
+
+			Feature feature = features.get(featureIndices[index]);
+			if(bestBin == -1) {
+				return new SplitCandidate(feature, featureIndices[index], 0.0, 0.0);
+			}
+
+			SplitCandidate split = new SplitCandidate(feature, featureIndices[index], binLowerBounds[bestBin], bestInfoGain);
+			split.setBranchCounts(bestLessThanMatches, bestLessThanMismatches,
+					observedMatches - bestLessThanMatches, observedMismatches - bestLessThanMismatches,
+					missingMatches, missingMismatches);
+			return split;
+		}
+
+		/**
+		 * Turns the leaf into a feature node, with a new leaf for each branch of the split.
+		 */
+		private void split(SplitCandidate bestSplit)
+		{
+			int[] remainingFeatures = getRemainingFeatures(bestSplit.getFeature());
+			lessThanNode = new HoeffdingNode(remainingFeatures,
+					bestSplit.getLessThanMatches(), bestSplit.getLessThanMismatches());
+			greaterThanNode = new HoeffdingNode(remainingFeatures,
+					bestSplit.getGreaterThanMatches(), bestSplit.getGreaterThanMismatches());
+			split = bestSplit;
+
+			// Feature nodes do not count scores
+			binCounts = null;
+			missingCounts = null;
+		}
+
+		/**
+		 * Removes all the features of the attribute of the split feature.
+		 */
+		private int[] getRemainingFeatures(Feature featureToSubtract)
+		{
+			int[] remainingFeatures = new int[featureIndices.length];
+			int numRemaining = 0;
+			for(int featureIndex : featureIndices) {
+				if(features.get(featureIndex).getAttrName().equals(featureToSubtract.getAttrName())) {
+					continue;
+				}
+				remainingFeatures[numRemaining++] = featureIndex;
+			}
+
+			int[] result = new int[numRemaining];
+			System.arraycopy(remainingFeatures, 0, result, 0, numRemaining);
+			return result;
+		}
+
+		DecisionTreeNode toDecisionTreeNode()
+		{
+			List<Feature> nodeFeatures = Lists.newArrayListWithCapacity(featureIndices.length);
+			for(int featureIndex : featureIndices) {
+				nodeFeatures.add(features.get(featureIndex));
+			}
+
+			DecisionTreeNode node = new DecisionTreeNode(Lists.<ExamplePair>newArrayList(), nodeFeatures);
+			node.setClassCounts(matches, mismatches);
+			if(isLeaf()) {
+				node.setNodeType(DecisionTreeNodeType.CLASS_NODE);
+				// A tie, including a leaf yet to see an example pair, takes the default label of the
+				// batch learner
+				node.setLabel(matches > mismatches ? DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH);
+				return node;
+			}
+
+			node.setNodeType(DecisionTreeNodeType.FEATURE_NODE);
+			node.setBestFeature(split.getFeature());
+			List<DecisionTreeNode> childNodes = Lists.newArrayList();
+			for(DecisionTreeLinkType dTreeLinkType : DecisionTreeLinkType.getDecisonTreeLinkValues()) {
+				HoeffdingNode child = dTreeLinkType.equals(DecisionTreeLinkType.MATCH_LINK) ? lessThanNode : greaterThanNode;
+				DecisionTreeNode childNode = child.toDecisionTreeNode();
+				childNode.setParentFeatureName(split.getFeature());
+				childNode.setParentFeatureLinkValue(split.getSplitValue());
+				childNode.setParentLinkType(dTreeLinkType);
+				childNodes.add(childNode);
+			}
+			node.setChildNodes(childNodes);
+			return node;
+		}
+	}
+
+	/**
+	 * Bin of a score in [0, 1]. Scores below a bin boundary are in a bin below it, as they go
+	 * down the less-than branch of a split on it.
+	 */
+	private int getBin(double score)
+	{
+		int numBins = binLowerBounds.length;
+		int bin = Math.min((int)(score*numBins), numBins - 1);
+		while(bin > 0 && score < binLowerBounds[bin]) {
+			--bin;
+		}
+		while(bin < numBins - 1 && score >= binLowerBounds[bin + 1]) {
+			++bin;
+		}
+		return bin;
+	}
+
+	/**
+	 * How far the information gain measured on n example pairs may be from the one of all the
+	 * example pairs to come, with the confidence of the options.
+	 */
+	private double getHoeffdingBound(int n)
+	{
+		return Math.sqrt(INFO_GAIN_RANGE*INFO_GAIN_RANGE*Math.log(1.0/options.getSplitConfidence())/(2.0*n));
+	}
+
+	private static boolean isMatch(ExamplePair exPair)
+	{
+		return exPair.getClassLabel().equals(DecisionTreeClassLabel.MATCH);
+	}
+}
@@ -0,0 +1,61 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+/**
+ * Knobs for learning the rule decision tree incrementally with a {@link HoeffdingTreeLearner}.
+ *
+ * @author excelsior
+ *
+ */
+public class HoeffdingTreeOptions {
+
+	// Probability of the split chosen at a leaf not being the one that all the example pairs
+	// would have chosen
+	private double splitConfidence = 1e-7;
+
+	// Once the Hoeffding bound is below this, the best two features are taken to be equally good
+	// and the leaf is split on the best one
+	private double tieThreshold = 0.05;
+
+	// Number of example pairs a leaf takes in between two evaluations of its splits
+	private int gracePeriod = 200;
+
+	// Scores are counted in this many bins of equal width over [0, 1], and leaves are split on
+	// the bin boundaries. 100 bins split on the same two decimal thresholds as the batch learner.
+	private int numBins = 100;
+
+	public HoeffdingTreeOptions()
+	{
+	}
+
+	public double getSplitConfidence() {
+		return splitConfidence;
+	}
+
+	public void setSplitConfidence(double splitConfidence) {
+		this.splitConfidence = splitConfidence;
+	}
+
+	public double getTieThreshold() {
+		return tieThreshold;
+	}
+
+	public void setTieThreshold(double tieThreshold) {
+		this.tieThreshold = tieThreshold;
+	}
+
+	public int getGracePeriod() {
+		return gracePeriod;
+	}
+
+	public void setGracePeriod(int gracePeriod) {
+		this.gracePeriod = gracePeriod;
+	}
+
+	public int getNumBins() {
+		return numBins;
+	}
+
+	public void setNumBins(int numBins) {
+		this.numBins = numBins;
+	}
+}
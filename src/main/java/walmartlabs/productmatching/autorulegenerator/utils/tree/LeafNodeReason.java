@@ -0,0 +1,15 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+/**
+ * Why the learner stopped growing the tree at a node and made it a leaf node.
+ *
+ * @author excelsior
+ *
+ */
+public enum LeafNodeReason {
+	NO_EXAMPLE_PAIRS,
+	NO_FEATURES,
+	LESS_THAN_THRESHOLD,
+	PURE_CLASSIFICATION,
+	NO_BEST_FEATURE
+}
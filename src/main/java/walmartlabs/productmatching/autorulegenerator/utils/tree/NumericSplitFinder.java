@@ -0,0 +1,267 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.List;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.SplitCandidate;
+
+/**
+ * Finds the best numeric split threshold for a feature in a single sorted sweep.
+ *
+ * The scores of the feature are sorted once per node and collapsed into a
+ * {@link FeatureScoreHistogram}. The candidate thresholds are then swept in ascending order and
+ * each one is scored from the running MATCH/MISMATCH counts, instead of re-filtering the example
+ * pairs for every candidate.
+ *
+ * Candidate thresholds, information measure, tie-breaking and rounding of the chosen threshold
+ * are the same as in the list based search this replaces, so the learnt tree does not change.
+ *
+ * @author excelsior
+ *
+ */
+public class NumericSplitFinder {
+
+	// DecimalFormat is not thread safe and features are evaluated concurrently
+	private static ThreadLocal<DecimalFormat> DECIMAL_FORMATTER = new ThreadLocal<DecimalFormat>() {
+		@Override
+		protected DecimalFormat initialValue() {
+			return new DecimalFormat("##.00");
+		}
+	};
+
+	private static double LOG_2 = Math.log(2.0);
+
+	/**
+	 * Builds the score distribution of a feature over a set of example pairs.
+	 */
+	public static FeatureScoreHistogram getScoreHistogram(List<ExamplePair> examplePairs, Feature feature)
+	{
+		double[] matchScores = new double[examplePairs.size()];
+		double[] mismatchScores = new double[examplePairs.size()];
+		int matchCnt = 0;
+		int mismatchCnt = 0;
+		for(ExamplePair exPair : examplePairs) {
+			double score = exPair.getAttributeMatchScore(feature);
+			if(exPair.getClassLabel().equals(DecisionTreeClassLabel.MATCH)) {
+				matchScores[matchCnt++] = score;
+			}
+			else {
+				mismatchScores[mismatchCnt++] = score;
+			}
+		}
+
+		// Sort both classes separately and merge them, so that no boxing is needed to keep the
+		// labels attached to the scores.
+		Arrays.sort(matchScores, 0, matchCnt);
+		Arrays.sort(mismatchScores, 0, mismatchCnt);
+
+		FeatureScoreHistogram histogram = new FeatureScoreHistogram(examplePairs.size());
+		int i = 0;
+		int j = 0;
+		while(i < matchCnt || j < mismatchCnt) {
+			if(j == mismatchCnt || (i < matchCnt && Double.compare(matchScores[i], mismatchScores[j]) <= 0)) {
+				histogram.add(matchScores[i++], true);
+			}
+			else {
+				histogram.add(mismatchScores[j++], false);
+			}
+		}
+
+		return histogram;
+	}
+
+	/**
+	 * Builds the score distribution of a feature over the rows in [from, to) of a presorted
+	 * column. The rows must already be in ascending score order.
+	 */
+	public static FeatureScoreHistogram getScoreHistogram(double[] column, boolean[] matchLabels, 
+			int[] sortedRows, int from, int to)
+	{
+		FeatureScoreHistogram histogram = new FeatureScoreHistogram(to - from);
+		for(int pos = from; pos < to; pos++) {
+			int row = sortedRows[pos];
+			histogram.add(column[row], matchLabels[row]);
+		}
+		
+		return histogram;
+	}
+
+	/**
+	 * Evaluates the best split of a feature, given the information contained in the example pairs
+	 * of the node. The information gain and the branch counts are those of the rounded threshold,
+	 * which is the one the example pairs are actually partitioned on. A split with a negative
+	 * threshold has no gain.
+	 */
+	public static SplitCandidate getBestSplit(Feature feature, int featureIndex, FeatureScoreHistogram histogram, 
+			double totalInfo)
+	{
+		double bestSplitValue = getBestSplitThreshold(histogram, totalInfo);
+		int valuesBelow = histogram.getDistinctValuesBelow(bestSplitValue);
+		
+		double infoGain = 0.0;
+		// Failed to find a good split threshold value
+		if(bestSplitValue >= 0) {
+			infoGain = totalInfo - getSplitInfo(histogram, valuesBelow);
+		}
+		
+		int lessThanMatches = histogram.getMatchesBelow(valuesBelow);
+		int lessThanMismatches = histogram.getMismatchesBelow(valuesBelow);
+		SplitCandidate candidate = new SplitCandidate(feature, featureIndex, bestSplitValue, infoGain);
+		candidate.setBranchCounts(lessThanMatches, lessThanMismatches, 
+				histogram.getTotalMatches() - lessThanMatches, histogram.getTotalMismatches() - lessThanMismatches, 
+				histogram.getMissingMatches(), histogram.getMissingMismatches());
+		return candidate;
+	}
+	
+	/**
+	 * Determines the best numeric split threshold for maximizing the information gain.
+	 */
+	public static double getBestSplitThreshold(FeatureScoreHistogram histogram)
+	{
+		return getBestSplitThreshold(histogram, getInfo(histogram.getTotalMatches(), histogram.getTotalMismatches()));
+	}
+	
+	/**
+	 * Determines the best numeric split threshold for maximizing the information gain.
+	 *
+	 * A candidate threshold lies halfway between the lowest score and every other score, unless
+	 * both scores are seen only with the same class label. A feature with less than two distinct
+	 * scores has no candidates and is split at 0.0. The chosen threshold is rounded to two
+	 * decimals.
+	 */
+	private static double getBestSplitThreshold(FeatureScoreHistogram histogram, double totalInfo)
+	{
+		double bestSplitThreshold = 0.0;
+		double bestInfoGain = -999.0;
+
+		int size = histogram.size();
+		if(size <= 1) {
+			return bestSplitThreshold;
+		}
+
+		double minValue = histogram.getValue(0);
+
+		// Number of distinct scores strictly less than the current candidate threshold. The
+		// thresholds grow with the scores, so this only moves forward during the sweep.
+		int valuesBelow = 0;
+		double prevSplitValue = Double.NEGATIVE_INFINITY;
+		for(int index = 0; index < size; index++) {
+			if(!isCandidateSplit(histogram, index)) {
+				continue;
+			}
+
+			double splitValue = (minValue + histogram.getValue(index))/2.0;
+			if(Double.compare(splitValue, prevSplitValue) < 0) {
+				valuesBelow = 0;
+			}
+			while(valuesBelow < size && Double.compare(histogram.getValue(valuesBelow), splitValue) < 0) {
+				++valuesBelow;
+			}
+			prevSplitValue = splitValue;
+
+			double infoGain = totalInfo - getSplitInfo(histogram, valuesBelow);
+			if(Double.compare(infoGain, bestInfoGain) > 0) {
+				bestInfoGain = infoGain;
+				bestSplitThreshold = splitValue;
+			}
+		}
+
+		return Double.valueOf(DECIMAL_FORMATTER.get().format(bestSplitThreshold));
+	}
+
+	/**
+	 * Number of candidate split thresholds scored by the search for the best one.
+	 */
+	public static int getNumCandidateSplits(FeatureScoreHistogram histogram)
+	{
+		if(histogram.size() <= 1) {
+			return 0;
+		}
+
+		int numCandidateSplits = 0;
+		for(int index = 0; index < histogram.size(); index++) {
+			if(isCandidateSplit(histogram, index)) {
+				++numCandidateSplits;
+			}
+		}
+		return numCandidateSplits;
+	}
+
+	/**
+	 * Is the threshold halfway between the lowest score and the score at the given index a
+	 * candidate ? It is not if both scores are seen only with the same class label.
+	 */
+	private static boolean isCandidateSplit(FeatureScoreHistogram histogram, int index)
+	{
+		return !(isPure(histogram, 0) && isPure(histogram, index) &&
+				(histogram.getMatches(0) > 0) == (histogram.getMatches(index) > 0));
+	}
+
+	/**
+	 * Calculates the information left after splitting the feature at a specific value.
+	 */
+	public static double getSplitInfo(FeatureScoreHistogram histogram, double splitValue)
+	{
+		return getSplitInfo(histogram, histogram.getDistinctValuesBelow(splitValue));
+	}
+
+	/**
+	 * Calculates the information left after sending the first <code>valuesBelow</code> distinct
+	 * scores down the less-than branch and the remaining ones down the greater-than-or-equal
+	 * branch. Pairs with a missing score are accounted for in a branch of their own as well.
+	 */
+	private static double getSplitInfo(FeatureScoreHistogram histogram, int valuesBelow)
+	{
+		int totalExPairsCnt = histogram.getTotal();
+
+		int lessThanMatches = histogram.getMatchesBelow(valuesBelow);
+		int lessThanMismatches = histogram.getMismatchesBelow(valuesBelow);
+		int greaterThanMatches = histogram.getTotalMatches() - lessThanMatches;
+		int greaterThanMismatches = histogram.getTotalMismatches() - lessThanMismatches;
+		int missingMatches = histogram.getMissingMatches();
+		int missingMismatches = histogram.getMissingMismatches();
+
+		double featureInfo = 0.0;
+		featureInfo += ((lessThanMatches + lessThanMismatches)/(double)totalExPairsCnt)*
+				getInfo(lessThanMatches, lessThanMismatches);
+		featureInfo += ((greaterThanMatches + greaterThanMismatches)/(double)totalExPairsCnt)*
+				getInfo(greaterThanMatches, greaterThanMismatches);
+		featureInfo += ((missingMatches + missingMismatches)/(double)totalExPairsCnt)*
+				getInfo(missingMatches, missingMismatches);
+
+		return featureInfo;
+	}
+
+	/**
+	 * Determines the total information contained in a set of examples with the given class counts.
+	 */
+	public static double getInfo(int matches, int mismatches)
+	{
+		int totalExamples = matches + mismatches;
+		if(totalExamples == 0) {
+			return 0.0;
+		}
+
+		double matchInfo = 0.0;
+		double mismatchInfo = 0.0;
+		if(matches > 0) {
+			matchInfo = -(matches/(double)(totalExamples))*
+					(Math.log(matches/(double)(totalExamples))/LOG_2);
+		}
+		if(mismatches > 0) {
+			mismatchInfo = -(mismatches/(double)(totalExamples))*
+					(Math.log(mismatches/(double)(totalExamples))/LOG_2);
+		}
+
+		return matchInfo + mismatchInfo;
+	}
+
+	private static boolean isPure(FeatureScoreHistogram histogram, int index)
+	{
+		return histogram.getMatches(index) == 0 || histogram.getMismatches(index) == 0;
+	}
+}
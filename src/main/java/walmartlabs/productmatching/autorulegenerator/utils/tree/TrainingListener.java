@@ -0,0 +1,36 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNode;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.SplitCandidate;
+
+/**
+ * Receives the events of learning a rule decision tree.
+ *
+ * The learner only builds the events when a listener is configured, so learning without one
+ * costs nothing. Events of different nodes, and of the features of a node, may be reported from
+ * several threads at once when the tree is learnt on a pool.
+ *
+ * @author excelsior
+ *
+ */
+public interface TrainingListener {
+
+	/**
+	 * A candidate feature of a node has been evaluated. The histogram holds the distribution of
+	 * the scores of the feature over the example pairs of the node, from which the candidate
+	 * split thresholds were taken.
+	 */
+	void featureEvaluated(Feature feature, FeatureScoreHistogram histogram, SplitCandidate split);
+
+	/**
+	 * A feature node has been created and its example pairs partitioned according to the chosen
+	 * split. The elapsed time covers the node itself, not the subtrees below it.
+	 */
+	void featureNodeCreated(DecisionTreeNode node, SplitCandidate split, long elapsedNanos);
+
+	/**
+	 * A leaf node has been created.
+	 */
+	void leafNodeCreated(DecisionTreeNode node, LeafNodeReason reason, long elapsedNanos);
+}
@@ -0,0 +1,129 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNode;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.SplitCandidate;
+
+/**
+ * Listener that only counts what happened while learning the tree, and summarizes it once
+ * learning is over. Cheap enough to be left on for large datasets.
+ *
+ * @author excelsior
+ *
+ */
+public class TrainingStatistics implements TrainingListener {
+	private AtomicLong featureNodes = new AtomicLong();
+	private AtomicLongArray leafNodes = new AtomicLongArray(LeafNodeReason.values().length);
+
+	// Features evaluated across all the nodes, and the candidate split thresholds scored for them
+	private AtomicLong featuresEvaluated = new AtomicLong();
+	private AtomicLong candidateSplits = new AtomicLong();
+
+	// Example pairs that went through a partition, summed over all the feature nodes
+	private AtomicLong examplePairsPartitioned = new AtomicLong();
+
+	// Time spent in the nodes themselves, summed over all the nodes
+	private AtomicLong featureNodeNanos = new AtomicLong();
+	private AtomicLong leafNodeNanos = new AtomicLong();
+	private AtomicLong maxNodeNanos = new AtomicLong();
+
+	@Override
+	public void featureEvaluated(Feature feature, FeatureScoreHistogram histogram, SplitCandidate split)
+	{
+		featuresEvaluated.incrementAndGet();
+		candidateSplits.addAndGet(NumericSplitFinder.getNumCandidateSplits(histogram));
+	}
+
+	@Override
+	public void featureNodeCreated(DecisionTreeNode node, SplitCandidate split, long elapsedNanos)
+	{
+		featureNodes.incrementAndGet();
+		examplePairsPartitioned.addAndGet(node.getNumExamples());
+		featureNodeNanos.addAndGet(elapsedNanos);
+		updateMaxNodeNanos(elapsedNanos);
+	}
+
+	@Override
+	public void leafNodeCreated(DecisionTreeNode node, LeafNodeReason reason, long elapsedNanos)
+	{
+		leafNodes.incrementAndGet(reason.ordinal());
+		leafNodeNanos.addAndGet(elapsedNanos);
+		updateMaxNodeNanos(elapsedNanos);
+	}
+
+	private void updateMaxNodeNanos(long elapsedNanos)
+	{
+		long maxNanos = maxNodeNanos.get();
+		while(elapsedNanos > maxNanos && !maxNodeNanos.compareAndSet(maxNanos, elapsedNanos)) {
+			maxNanos = maxNodeNanos.get();
+		}
+	}
+
+	public long getFeatureNodes() {
+		return featureNodes.get();
+	}
+
+	public long getLeafNodes() {
+		long totalLeafNodes = 0;
+		for(LeafNodeReason reason : LeafNodeReason.values()) {
+			totalLeafNodes += getLeafNodes(reason);
+		}
+		return totalLeafNodes;
+	}
+
+	public long getLeafNodes(LeafNodeReason reason) {
+		return leafNodes.get(reason.ordinal());
+	}
+
+	public long getFeaturesEvaluated() {
+		return featuresEvaluated.get();
+	}
+
+	public long getCandidateSplits() {
+		return candidateSplits.get();
+	}
+
+	public long getExamplePairsPartitioned() {
+		return examplePairsPartitioned.get();
+	}
+
+	public long getFeatureNodeNanos() {
+		return featureNodeNanos.get();
+	}
+
+	public long getLeafNodeNanos() {
+		return leafNodeNanos.get();
+	}
+
+	public long getMaxNodeNanos() {
+		return maxNodeNanos.get();
+	}
+
+	/**
+	 * Returns a human readable summary of the counters.
+	 */
+	public String getSummary()
+	{
+		StringBuilder summary = new StringBuilder();
+		summary.append("Feature nodes : ").append(getFeatureNodes()).append("\n");
+		summary.append("Leaf nodes : ").append(getLeafNodes()).append("\n");
+		for(LeafNodeReason reason : LeafNodeReason.values()) {
+			summary.append("\t").append(reason).append(" : ").append(getLeafNodes(reason)).append("\n");
+		}
+		summary.append("Features evaluated : ").append(getFeaturesEvaluated())
+			.append(" with ").append(getCandidateSplits()).append(" candidate splits\n");
+		summary.append("Example pairs partitioned : ").append(getExamplePairsPartitioned()).append("\n");
+		summary.append("Time in feature nodes : ").append(getFeatureNodeNanos()/1000000).append(" ms\n");
+		summary.append("Time in leaf nodes : ").append(getLeafNodeNanos()/1000000).append(" ms\n");
+		summary.append("Slowest node : ").append(getMaxNodeNanos()/1000000).append(" ms");
+		return summary.toString();
+	}
+
+	@Override
+	public String toString() {
+		return getSummary();
+	}
+}
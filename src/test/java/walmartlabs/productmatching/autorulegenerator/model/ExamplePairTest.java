@@ -0,0 +1,130 @@
+package walmartlabs.productmatching.autorulegenerator.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * @author excelsior
+ *
+ */
+public class ExamplePairTest {
+	private ExampleSchema schema = new ExampleSchema();
+	private List<Feature> features = Lists.newArrayList();
+
+	public ExamplePairTest()
+	{
+		for(String attrName : new String[] { "name", "city", "cuisine" }) {
+			int attrIndex = schema.addAttribute(attrName, Lists.newArrayList(new Feature(attrName, DataType.STRING)));
+			features.addAll(schema.getFeatures(attrIndex));
+		}
+	}
+
+	@Test
+	public void testEagerLazyAndMapScoresAgree()
+	{
+		// No cuisine for the source item
+		String[] sourceValues = { "thai house", "austin", null };
+		String[] targetValues = { "thai house cafe", "austin tx", "thai" };
+		ExamplePair eagerExPair = createExamplePair(sourceValues, targetValues, false, false);
+		ExamplePair lazyExPair = createExamplePair(sourceValues, targetValues, true, false);
+		ExamplePair mapExPair = createExamplePair(sourceValues, targetValues, false, true);
+		ExamplePair lazyMapExPair = createExamplePair(sourceValues, targetValues, true, true);
+
+		assertTrue(eagerExPair.getAttributeMatchScore(features.get(0)) > 0.0);
+		// Scored one feature at a time, in another order than the features
+		for(int featureIndex = features.size() - 1; featureIndex >= 0; featureIndex--) {
+			Feature feature = features.get(featureIndex);
+			double score = eagerExPair.getAttributeMatchScore(feature);
+			assertEquals(score, lazyExPair.getAttributeMatchScore(feature), 0.0);
+			assertEquals(score, mapExPair.getAttributeMatchScore(feature), 0.0);
+			assertEquals(score, lazyMapExPair.getAttributeMatchScore(feature), 0.0);
+		}
+		assertEquals(0.0, eagerExPair.getAttributeMatchScore(features.get(2)), 0.0);
+
+		Map<Feature, Double> scoreMap = mapExPair.getAttributeMatchScoreMap();
+		assertEquals(scoreMap, eagerExPair.getAttributeMatchScoreMap());
+		assertEquals(scoreMap, createExamplePair(sourceValues, targetValues, true, false).getAttributeMatchScoreMap());
+		assertEquals(scoreMap, lazyMapExPair.getAttributeMatchScoreMap());
+
+		List<ExamplePair> exPairs = Lists.newArrayList(eagerExPair, lazyExPair, mapExPair, lazyMapExPair);
+		for(Feature feature : features) {
+			double[] scores = ExamplePair.getAttributeMatchScores(exPairs, feature);
+			double[] calculatedScores = ExamplePair.calculateAttributeMatchScores(exPairs, feature);
+			for(int index = 0; index < exPairs.size(); index++) {
+				assertEquals(scores[0], scores[index], 0.0);
+				assertEquals(scores[0], calculatedScores[index], 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testScoreMapOnlyHoldsTheFeaturesOfTheSourceItem()
+	{
+		String[] sourceValues = { "pizza bar", null, "italian" };
+		String[] targetValues = { "pizza bar", "dallas", "italian" };
+		for(boolean isLazyScoring : new boolean[] { false, true }) {
+			Map<Feature, Double> scoreMap = createExamplePair(sourceValues, targetValues, isLazyScoring, false)
+					.getAttributeMatchScoreMap();
+			assertEquals(2, scoreMap.size());
+			assertEquals(2, scoreMap.entrySet().size());
+			assertTrue(scoreMap.containsKey(features.get(0)));
+			assertFalse(scoreMap.containsKey(features.get(1)));
+			assertNull(scoreMap.get(features.get(1)));
+			assertTrue(scoreMap.containsKey(features.get(2)));
+			assertEquals(1.0, scoreMap.get(features.get(2)), 0.0);
+
+			// Features of other schemas, and other keys, are not in the map
+			assertFalse(scoreMap.containsKey(new Feature("phone", DataType.STRING)));
+			assertFalse(scoreMap.containsKey("name"));
+
+			List<Feature> keys = Lists.newArrayList();
+			for(Map.Entry<Feature, Double> entry : scoreMap.entrySet()) {
+				keys.add(entry.getKey());
+				assertEquals(scoreMap.get(entry.getKey()), entry.getValue());
+			}
+			assertEquals(Lists.newArrayList(features.get(0), features.get(2)), keys);
+		}
+	}
+
+	/**
+	 * Example pair of items sharing the schema, or of items keeping their values in maps.
+	 */
+	private ExamplePair createExamplePair(String[] sourceValues, String[] targetValues, boolean isLazyScoring,
+			boolean isMapBacked)
+	{
+		Example sourceEx;
+		Example targetEx;
+		if(isMapBacked) {
+			sourceEx = new Example("1", getFeatureValueMap(sourceValues));
+			targetEx = new Example("2", getFeatureValueMap(targetValues));
+		}
+		else {
+			sourceEx = new Example("1", schema, sourceValues);
+			targetEx = new Example("2", schema, targetValues);
+		}
+		return new ExamplePair(sourceEx, targetEx, DecisionTreeClassLabel.MATCH, isLazyScoring);
+	}
+
+	private Map<Feature, String> getFeatureValueMap(String[] values)
+	{
+		Map<Feature, String> featureValueMap = Maps.newHashMap();
+		for(int index = 0; index < values.length; index++) {
+			if(values[index] != null) {
+				featureValueMap.put(features.get(index), values[index]);
+			}
+		}
+		return featureValueMap;
+	}
+}
@@ -0,0 +1,73 @@
+package walmartlabs.productmatching.autorulegenerator.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author excelsior
+ *
+ */
+public class ExampleTest {
+
+	@Test
+	public void testSchemaValues()
+	{
+		ExampleSchema schema = new ExampleSchema();
+		Feature name = new Feature("Name", DataType.STRING);
+		Feature phone = new Feature("phone", DataType.STRING);
+		List<Feature> features = Lists.newArrayList(name, phone);
+		assertEquals(0, schema.addAttribute("Name", Lists.newArrayList(name)));
+		assertEquals(1, schema.addAttribute("phone", Lists.newArrayList(phone)));
+
+		Example dense = new Example("1", schema, new String[] {"cafe bizou", null});
+		assertEquals("cafe bizou", dense.getValueForAttribute("NAME"));
+		assertEquals("NA", dense.getValueForAttribute("phone"));
+		assertEquals("NA", dense.getValueForAttribute("city"));
+		assertEquals(1, dense.getFeatureValueMap().size());
+		assertNull(dense.getFeatureValueMap().get(phone));
+
+		Example sparse = new Example("2", schema, new int[] {1}, new String[] {"818-788-3536"});
+		assertEquals("NA", sparse.getValueForAttribute("name"));
+		assertEquals("818-788-3536", sparse.getFeatureValueMap().get(features.get(1)));
+	}
+
+	@Test
+	public void testAttributesDifferingInCase()
+	{
+		ExampleSchema schema = new ExampleSchema();
+		Feature lowerName = new Feature("name", DataType.STRING);
+		Feature upperName = new Feature("Name", DataType.STRING);
+		assertEquals(0, schema.addAttribute("name", Lists.newArrayList(lowerName)));
+		assertEquals(1, schema.addAttribute("Name", Lists.newArrayList(upperName)));
+		assertEquals(0, schema.addAttribute("name", Lists.newArrayList(lowerName)));
+		assertEquals(2, schema.getNumAttributes());
+		assertEquals(1, schema.getAttributeIndex(upperName));
+
+		// Other cases get the first attribute added
+		assertEquals(0, schema.getAttributeIndex("NAME"));
+		assertEquals(1, schema.getAttributeIndex("Name"));
+
+		Example example = new Example("1", schema, new String[] {"cafe bizou", "bizou"});
+		assertEquals("cafe bizou", example.getValueForAttribute("name"));
+		assertEquals("bizou", example.getValueForAttribute("Name"));
+		assertEquals("bizou", example.getFeatureValueMap().get(upperName));
+	}
+
+	@Test
+	public void testInternedValues()
+	{
+		ExampleSchema schema = new ExampleSchema();
+		String value = schema.intern(new String("french bistro"));
+		assertSame(value, schema.intern(new String("french bistro")));
+		assertEquals(1, schema.getNumDistinctValues());
+	}
+}
@@ -0,0 +1,124 @@
+package walmartlabs.productmatching.autorulegenerator.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+import walmartlabs.productmatching.autorulegenerator.utils.DecisionTreeUtils;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author excelsior
+ *
+ */
+public class FeatureMatrixTest {
+	private static String[][] RESTAURANTS = {
+		{ "thai house", "thai house cafe", "austin", "austin" },
+		{ "pizza bar", "pizza bar", "dallas", "dallas tx" },
+		{ "sushi deli", "taco deli", "austin", "austin" },
+		{ "noodle bowl", "burger bowl", "houston", "dallas" },
+		{ "corner bakery", "corner bakery cafe", "houston", "houston" },
+		{ "blue diner", "red grill", "austin", "dallas" },
+	};
+
+	@Test
+	public void testColumnsAreScoredOnDemand()
+	{
+		List<ExamplePair> lazyExPairs = createExamplePairs(true);
+		List<ExamplePair> eagerExPairs = createExamplePairs(false);
+		List<Feature> features = getFeatures(lazyExPairs);
+		FeatureMatrix matrix = new FeatureMatrix(lazyExPairs, features);
+		assertFalse(matrix.isScored(0));
+		assertFalse(matrix.isScored(1));
+
+		// A root with fewer example pairs than the leaf threshold evaluates no feature
+		DecisionTreeNode root = DecisionTreeUtils.learnRuleDecisionTree(matrix, lazyExPairs.size() + 1);
+		assertEquals(DecisionTreeNodeType.CLASS_NODE, root.getNodeType());
+		assertFalse(matrix.isScored(0));
+		assertFalse(matrix.isScored(1));
+
+		root = DecisionTreeUtils.learnRuleDecisionTree(matrix, 1);
+		assertEquals(DecisionTreeNodeType.FEATURE_NODE, root.getNodeType());
+		assertTrue(matrix.isScored(0));
+		assertTrue(matrix.isScored(1));
+		for(int featureIndex = 0; featureIndex < features.size(); featureIndex++) {
+			assertArrayEquals(ExamplePair.getAttributeMatchScores(eagerExPairs, features.get(featureIndex)),
+					matrix.getColumn(featureIndex), 0.0);
+		}
+	}
+
+	@Test
+	public void testLazyPairsOnlyScoreTheFeaturesOfTheTree()
+	{
+		List<ExamplePair> lazyExPairs = createExamplePairs(true);
+		List<Feature> features = getFeatures(lazyExPairs);
+		Feature name = features.get(0);
+
+		FeatureMatrix matrix = new FeatureMatrix(lazyExPairs, Lists.newArrayList(name));
+		DecisionTreeNode root = DecisionTreeUtils.learnRuleDecisionTree(matrix, 1);
+		assertEquals(name, root.getBestFeature());
+		assertTrue(matrix.isScored(0));
+		assertEquals(1, matrix.getNumFeatures());
+
+		// The pairs still score on their own, the same as the matrix did
+		double[] nameScores = matrix.getColumn(0);
+		for(int row = 0; row < lazyExPairs.size(); row++) {
+			assertEquals(nameScores[row], lazyExPairs.get(row).getAttributeMatchScore(name), 0.0);
+		}
+	}
+
+	@Test
+	public void testSortedRows()
+	{
+		List<ExamplePair> exPairs = createExamplePairs(false);
+		FeatureMatrix matrix = new FeatureMatrix(exPairs, getFeatures(exPairs));
+		double[] column = matrix.getColumn(0);
+		int[] rows = matrix.copySortedRows(0);
+		assertEquals(exPairs.size(), rows.length);
+		for(int pos = 1; pos < rows.length; pos++) {
+			assertTrue(column[rows[pos-1]] < column[rows[pos]] ||
+					(column[rows[pos-1]] == column[rows[pos]] && rows[pos-1] < rows[pos]));
+		}
+
+		// Every call sorts a fresh array
+		rows[0] = -1;
+		assertTrue(matrix.copySortedRows(0)[0] >= 0);
+	}
+
+	/**
+	 * Restaurants with the same name and city match.
+	 */
+	private static List<ExamplePair> createExamplePairs(boolean isLazyScoring)
+	{
+		ExampleSchema schema = new ExampleSchema();
+		schema.addAttribute("name", Lists.newArrayList(new Feature("name", DataType.STRING)));
+		schema.addAttribute("city", Lists.newArrayList(new Feature("city", DataType.STRING)));
+
+		List<ExamplePair> exPairs = Lists.newArrayList();
+		for(int index = 0; index < RESTAURANTS.length; index++) {
+			String[] restaurant = RESTAURANTS[index];
+			Example sourceEx = new Example("s" + index, schema, new String[] { restaurant[0], restaurant[2] });
+			Example targetEx = new Example("t" + index, schema, new String[] { restaurant[1], restaurant[3] });
+			DecisionTreeClassLabel label = index < 2 || index == 4 ? DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH;
+			exPairs.add(new ExamplePair(sourceEx, targetEx, label, isLazyScoring));
+		}
+		return exPairs;
+	}
+
+	private static List<Feature> getFeatures(List<ExamplePair> exPairs)
+	{
+		ExampleSchema schema = exPairs.get(0).getSourceItem().getSchema();
+		List<Feature> features = Lists.newArrayList();
+		for(int attrIndex = 0; attrIndex < schema.getNumAttributes(); attrIndex++) {
+			features.addAll(schema.getFeatures(attrIndex));
+		}
+		return features;
+	}
+}
@@ -0,0 +1,68 @@
+package walmartlabs.productmatching.autorulegenerator.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * @author excelsior
+ *
+ */
+public class FeatureRegistryTest {
+
+	@Test
+	public void testCanonicalFeatures()
+	{
+		FeatureRegistry registry = new FeatureRegistry();
+		Feature name = registry.getFeature("name", DataType.STRING);
+		Feature phone = registry.getFeature("phone", DataType.STRING);
+		assertEquals(0, name.getId());
+		assertEquals(1, phone.getId());
+		assertSame(name, registry.getFeature("name", DataType.STRING));
+		assertEquals(2, registry.size());
+
+		// Equal, but not from the registry
+		Feature otherName = new Feature("name", DataType.STRING);
+		assertEquals(name, otherName);
+		assertEquals(name.hashCode(), otherName.hashCode());
+		assertFalse(registry.isRegistered(otherName));
+		assertTrue(registry.isRegistered(name));
+		assertEquals(0, registry.getId(otherName));
+		assertSame(name, registry.getCanonicalFeature(otherName));
+		assertEquals(-1, registry.getId(new Feature("city", DataType.STRING)));
+	}
+
+	@Test
+	public void testDatasetTakesTheRegistryOfItsSchema()
+	{
+		ExampleSchema schema = new ExampleSchema();
+		schema.addAttribute("name", Lists.newArrayList(new Feature("name", DataType.STRING)));
+		Feature name = schema.getFeatures(0).get(0);
+		Example sourceEx = new Example("1", schema, new String[] {"cafe bizou"});
+		Example targetEx = new Example("2", schema, new String[] {"bizou"});
+		List<ExamplePair> exPairs = Lists.newArrayList(new ExamplePair(sourceEx, targetEx, DecisionTreeClassLabel.MATCH));
+
+		Dataset dataset = new Dataset("Restaurant Dataset", Lists.newArrayList(new Feature("name", DataType.STRING)), exPairs);
+		assertSame(schema.getFeatureRegistry(), dataset.getFeatureRegistry());
+		assertSame(name, dataset.getFeatures().get(0));
+
+		// Example pairs without a schema
+		Map<Feature, Double> scores = Maps.newHashMap();
+		scores.put(name, 0.5);
+		dataset = new Dataset("Restaurant Dataset", Lists.newArrayList(name),
+				Lists.newArrayList(new ExamplePair(null, null, DecisionTreeClassLabel.MATCH, scores)));
+		assertEquals(1, dataset.getFeatureRegistry().size());
+		assertEquals(name, dataset.getFeatures().get(0));
+	}
+}
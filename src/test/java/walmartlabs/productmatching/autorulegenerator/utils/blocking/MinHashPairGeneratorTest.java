@@ -0,0 +1,148 @@
+package walmartlabs.productmatching.autorulegenerator.utils.blocking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+import walmartlabs.productmatching.autorulegenerator.utils.match.MatchUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * @author excelsior
+ *
+ */
+public class MinHashPairGeneratorTest {
+	private static int MAX_NUM_TOKENS = 5;
+
+	private Feature name = new Feature("name", DataType.STRING);
+	private Feature city = new Feature("city", DataType.STRING);
+	private List<String> idKeys = Lists.newArrayList("name", "city");
+
+	@Test
+	public void testJaccardFloor()
+	{
+		// One token out of the four of the other value
+		assertEquals(0.25, MinHashPairGenerator.getJaccardFloor(1.0, 4), 1e-9);
+		// One of two tokens in the four of the other value
+		assertEquals(0.2, MinHashPairGenerator.getJaccardFloor(0.5, 4), 1e-9);
+		assertEquals(0.0, MinHashPairGenerator.getJaccardFloor(0.0, 4), 0.0);
+		// A higher containment never lowers the floor, and longer values always do
+		double prevFloor = 0.0;
+		for(int percent = 5; percent <= 100; percent += 5) {
+			double floor = MinHashPairGenerator.getJaccardFloor(percent/100.0, MAX_NUM_TOKENS);
+			assertTrue(floor >= prevFloor);
+			assertTrue(MinHashPairGenerator.getJaccardFloor(percent/100.0, 2*MAX_NUM_TOKENS) < floor);
+			prevFloor = floor;
+		}
+	}
+
+	@Test
+	public void testMeasuredRecallReachesTarget()
+	{
+		for(double minScore : new double[] { 0.25, 0.5 }) {
+			double targetRecall = 0.9;
+			MinHashPairGenerator generator = MinHashPairGenerator.forTargetRecall(minScore, MAX_NUM_TOKENS, targetRecall, 64);
+			assertTrue(MinHashPairGenerator.getCandidateProbability(
+					MinHashPairGenerator.getJaccardFloor(minScore, MAX_NUM_TOKENS),
+					generator.getNumBands(), generator.getRowsPerBand()) >= targetRecall);
+
+			List<Example> examples = createExamples(150);
+			generator.index(examples, idKeys);
+
+			int numPairs = 0;
+			int numSimilarPairs = 0;
+			int numSimilarCandidates = 0;
+			int numCandidates = 0;
+			for(int i = 0; i < examples.size(); i++) {
+				int[] candidates = generator.getCandidates(i);
+				numCandidates += candidates.length;
+				for(int j = i + 1; j < examples.size(); j++) {
+					++numPairs;
+					double score = MatchUtils.getExamplePairSimilarityScore(examples.get(i), examples.get(j), idKeys);
+					if(score >= minScore) {
+						++numSimilarPairs;
+						if(Arrays.binarySearch(candidates, j) >= 0) {
+							++numSimilarCandidates;
+						}
+					}
+				}
+			}
+
+			assertTrue(numSimilarPairs > 50);
+			assertTrue(numSimilarCandidates/(double)numSimilarPairs >= targetRecall);
+			assertTrue(numCandidates < numPairs);
+		}
+	}
+
+	@Test
+	public void testUnreachableTargetRecall()
+	{
+		try {
+			MinHashPairGenerator.forTargetRecall(0.25, 50, 0.99, 4);
+			fail("Four hash functions cannot reach the target recall");
+		}
+		catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("0.99"));
+		}
+	}
+
+	/**
+	 * Examples in families whose names share most of their tokens, in a handful of cities.
+	 */
+	private List<Example> createExamples(int numExamples)
+	{
+		Random random = new Random(7);
+		List<Example> examples = Lists.newArrayList();
+		List<String> baseTokens = null;
+		for(int index = 0; index < numExamples; index++) {
+			if(index % 5 == 0) {
+				baseTokens = Lists.newArrayList();
+				int numTokens = 2 + random.nextInt(MAX_NUM_TOKENS - 1);
+				while(baseTokens.size() < numTokens) {
+					String token = "t" + random.nextInt(400);
+					if(!baseTokens.contains(token)) {
+						baseTokens.add(token);
+					}
+				}
+			}
+
+			// Drop some of the tokens of the family
+			List<String> tokens = Lists.newArrayList();
+			for(String token : baseTokens) {
+				if(tokens.isEmpty() || random.nextInt(3) > 0) {
+					tokens.add(token);
+				}
+			}
+
+			Map<Feature, String> featureValueMap = Maps.newHashMap();
+			featureValueMap.put(name, joinTokens(tokens));
+			featureValueMap.put(city, "c" + random.nextInt(30) + (random.nextBoolean() ? " city" : ""));
+			examples.add(new Example(String.valueOf(index), featureValueMap));
+		}
+		return examples;
+	}
+
+	private static String joinTokens(List<String> tokens)
+	{
+		StringBuilder value = new StringBuilder();
+		for(String token : tokens) {
+			if(value.length() > 0) {
+				value.append(" ");
+			}
+			value.append(token);
+		}
+		return value.toString();
+	}
+}
@@ -0,0 +1,64 @@
+package walmartlabs.productmatching.autorulegenerator.utils.blocking;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+import walmartlabs.productmatching.autorulegenerator.utils.input.DatasetReader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * @author excelsior
+ *
+ */
+public class TokenBlockingPairGeneratorTest {
+	private Feature name = new Feature("name", DataType.STRING);
+
+	@Test
+	public void testOnlyPairsSharingTokensAreCandidates()
+	{
+		List<Example> examples = Lists.newArrayList(
+				createExample("1", "arnie morton of chicago"),
+				createExample("2", "carnegie delicatessen"),
+				createExample("3", "arnie morton"),
+				createExample("4", "hotel bel-air"));
+
+		TokenBlockingPairGenerator generator = new TokenBlockingPairGenerator(DatasetReader.MATCH_LOWER_LIMIT_SCORE);
+		generator.index(examples, Lists.newArrayList("name"));
+
+		assertEquals("[2]", Arrays.toString(generator.getCandidates(0)));
+		assertEquals("[]", Arrays.toString(generator.getCandidates(1)));
+		assertEquals("[]", Arrays.toString(generator.getCandidates(2)));
+		assertEquals("[]", Arrays.toString(generator.getCandidates(3)));
+	}
+
+	@Test
+	public void testZeroMinimumKeepsAllPairs()
+	{
+		List<Example> examples = Lists.newArrayList(
+				createExample("1", "fenix"),
+				createExample("2", "grill on the alley"),
+				createExample("3", "restaurant katsu"));
+
+		TokenBlockingPairGenerator generator = new TokenBlockingPairGenerator(0.0);
+		generator.index(examples, Lists.newArrayList("name"));
+
+		assertEquals("[1, 2]", Arrays.toString(generator.getCandidates(0)));
+	}
+
+	private Example createExample(String id, String value)
+	{
+		Map<Feature, String> featureValueMap = Maps.newHashMap();
+		featureValueMap.put(name, value);
+		return new Example(id, featureValueMap);
+	}
+}
@@ -0,0 +1,111 @@
+package walmartlabs.productmatching.autorulegenerator.utils.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+
+/**
+ * @author excelsior
+ *
+ */
+public class ArffExampleIteratorTest {
+
+	private static String HEADER = 
+			"% restaurants\n" +
+			"@relation \"fodors-zagat\"\n" +
+			"@attribute name string\n" +
+			"@attribute 'street address' string\n" +
+			"@attribute class {'0', '1'}\n" +
+			"\n" +
+			"@data\n";
+
+	@Test
+	public void testQuotedValues() throws IOException
+	{
+		ArffExampleIterator exampleIterator = new ArffExampleIterator(new StringReader(HEADER +
+				"\"art's deli, studio city\", '12224 \\'ventura\\' blvd.', '1'\n" +
+				"\"campanile\", ?, '4',\n"));
+		assertEquals("fodors-zagat", exampleIterator.getRelationName());
+		List<Feature> features = exampleIterator.getFeatures();
+		assertEquals("street address", features.get(1).getAttrName());
+		assertEquals(DataType.NOMINAL, features.get(2).getDataType());
+
+		Example first = exampleIterator.next();
+		assertEquals("art's deli, studio city", first.getFeatureValueMap().get(features.get(0)));
+		assertEquals("12224 'ventura' blvd.", first.getFeatureValueMap().get(features.get(1)));
+		assertEquals("1", first.getFeatureValueMap().get(features.get(2)));
+
+		// Missing value, and a comma at the end of the row
+		Example second = exampleIterator.next();
+		assertEquals(2, second.getFeatureValueMap().size());
+		assertNull(second.getFeatureValueMap().get(features.get(1)));
+		assertEquals("4", second.getFeatureValueMap().get(features.get(2)));
+
+		assertFalse(exampleIterator.hasNext());
+		exampleIterator.close();
+	}
+
+	@Test
+	public void testMalformedRows() throws IOException
+	{
+		assertMalformedRow("\"campanile\", ?\n", "fewer values than the 3 attributes");
+		assertMalformedRow("\"campanile\", ?, '4', '5'\n", "more values than the 3 attributes");
+		assertMalformedRow("\"campanile, ?, '4'\n", "unterminated quoted value");
+		assertMalformedRow("{0 \"campanile\"\n", "sparse row is not closed with }");
+	}
+
+	/**
+	 * The row follows a well-formed one, which is still handed out.
+	 */
+	private static void assertMalformedRow(String row, String reason) throws IOException
+	{
+		ArffExampleIterator exampleIterator = new ArffExampleIterator(new StringReader(HEADER +
+				"\"hotel bel-air\", '701 stone canyon rd.', '1'\n" + row));
+		assertEquals("hotel bel-air", exampleIterator.next().getFeatureValueMap().get(exampleIterator.getFeatures().get(0)));
+		try {
+			exampleIterator.next();
+			fail("Malformed row should not be read");
+		}
+		catch (IllegalStateException e) {
+			assertEquals("Malformed data row at line 9 : " + reason, e.getCause().getMessage());
+		}
+		finally {
+			exampleIterator.close();
+		}
+	}
+
+	@Test
+	public void testSparseRows() throws IOException
+	{
+		ArffExampleIterator exampleIterator = new ArffExampleIterator(new StringReader(HEADER +
+				"{0 \"hotel bel-air\", 2 '2'}\n" +
+				"{1 \"701 stone canyon rd.\"}\n" +
+				"{}\n"));
+		List<Feature> features = exampleIterator.getFeatures();
+
+		Example first = exampleIterator.next();
+		assertEquals(2, first.getFeatureValueMap().size());
+		assertEquals("hotel bel-air", first.getFeatureValueMap().get(features.get(0)));
+		assertEquals("2", first.getFeatureValueMap().get(features.get(2)));
+
+		Example second = exampleIterator.next();
+		assertEquals(1, second.getFeatureValueMap().size());
+		assertEquals("701 stone canyon rd.", second.getFeatureValueMap().get(features.get(1)));
+
+		assertEquals(0, exampleIterator.next().getFeatureValueMap().size());
+		assertFalse(exampleIterator.hasNext());
+		exampleIterator.close();
+	}
+}
@@ -0,0 +1,147 @@
+package walmartlabs.productmatching.autorulegenerator.utils.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+/**
+ * @author excelsior
+ *
+ */
+public class ExamplePairDumpWriterTest {
+	private Feature name = new Feature("name", DataType.STRING);
+
+	@Test
+	public void testPairsAreDumpedInOrder() throws IOException
+	{
+		File matchedFile = createTempFile();
+		File mismatchedFile = createTempFile();
+
+		// Small batches and queue, so that handing pairs over has to wait for the dump
+		ExamplePairDumpWriter dumpWriter = new ExamplePairDumpWriter(matchedFile, mismatchedFile, 2, 3);
+		List<String> matchedIds = Lists.newArrayList();
+		List<String> mismatchedIds = Lists.newArrayList();
+		for(int call = 0; call < 10; call++) {
+			List<ExamplePair> exPairs = Lists.newArrayList();
+			for(int index = 0; index < 7; index++) {
+				String id = call + "-" + index;
+				boolean isMatch = (call + index) % 3 == 0;
+				exPairs.add(createExamplePair(id, isMatch));
+				(isMatch ? matchedIds : mismatchedIds).add(id);
+			}
+			dumpWriter.write(exPairs);
+		}
+		dumpWriter.close();
+
+		assertEquals(70, dumpWriter.getNumPairsDumped());
+		assertEquals(matchedIds, getDumpedIds(matchedFile));
+		assertEquals(mismatchedIds, getDumpedIds(mismatchedFile));
+	}
+
+	@Test(timeout = 10000)
+	public void testFailureIsThrownFromClose() throws IOException
+	{
+		ExamplePairDumpWriter dumpWriter = new ExamplePairDumpWriter(createTempFile(), createTempFile(), 1, 1);
+
+		// Pairs without items cannot be formatted, and the queue fills up far beyond its capacity
+		List<ExamplePair> exPairs = Lists.newArrayList();
+		for(int index = 0; index < 50; index++) {
+			exPairs.add(new ExamplePair(null, null, DecisionTreeClassLabel.MISMATCH, Maps.<Feature, Double>newHashMap()));
+		}
+		dumpWriter.write(exPairs);
+		dumpWriter.write(exPairs);
+
+		try {
+			dumpWriter.close();
+			fail("Dumping pairs without items should fail");
+		}
+		catch (IOException e) {
+			assertTrue(e.getCause() instanceof NullPointerException);
+		}
+		assertEquals(0, dumpWriter.getNumPairsDumped());
+	}
+
+	@Test
+	public void testDumpingCanBeTurnedOff() throws IOException
+	{
+		File dumpDirectory = createTempFile();
+		dumpDirectory.delete();
+		dumpDirectory.mkdir();
+
+		List<Example> examples = Lists.newArrayList(createExample("1", "thai house"), createExample("2", "thai house"));
+		List<String> idKeys = Lists.newArrayList("name");
+		ArffDatasetReader reader = new ArffDatasetReader();
+		reader.setDumpDirectory(dumpDirectory);
+
+		reader.setDumpingExamplePairs(false);
+		assertEquals(1, reader.getExamplePairs(examples, idKeys).size());
+		assertEquals(0, dumpDirectory.listFiles().length);
+
+		reader.setDumpingExamplePairs(true);
+		assertEquals(1, reader.getExamplePairs(examples, idKeys).size());
+		File matchedFile = new File(dumpDirectory, "matched_pairs.txt");
+		File mismatchedFile = new File(dumpDirectory, "mismatched_pairs.txt");
+		assertEquals(Lists.newArrayList("1"), getDumpedIds(matchedFile));
+		assertTrue(getDumpedIds(mismatchedFile).isEmpty());
+
+		assertTrue(matchedFile.delete());
+		assertTrue(mismatchedFile.delete());
+		assertTrue(dumpDirectory.delete());
+		assertFalse(dumpDirectory.exists());
+	}
+
+	/**
+	 * Source ids of the pairs of a dump, in the order they were dumped.
+	 */
+	private static List<String> getDumpedIds(File dumpFile) throws IOException
+	{
+		List<String> ids = Lists.newArrayList();
+		for(String line : Files.readLines(dumpFile, Charsets.UTF_8)) {
+			if(line.startsWith("ID|#")) {
+				ids.add(line.split("\\|#")[1]);
+			}
+		}
+		return ids;
+	}
+
+	private ExamplePair createExamplePair(String id, boolean isMatch)
+	{
+		Map<Feature, Double> scores = Maps.newHashMap();
+		scores.put(name, isMatch ? 1.0 : 0.0);
+		return new ExamplePair(createExample(id, "a"), createExample(id + "'", isMatch ? "a" : "b"),
+				isMatch ? DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH, scores);
+	}
+
+	private Example createExample(String id, String value)
+	{
+		Map<Feature, String> featureValueMap = Maps.newHashMap();
+		featureValueMap.put(name, value);
+		return new Example(id, featureValueMap);
+	}
+
+	private static File createTempFile() throws IOException
+	{
+		File file = File.createTempFile("dump", ".txt");
+		file.deleteOnExit();
+		return file;
+	}
+}
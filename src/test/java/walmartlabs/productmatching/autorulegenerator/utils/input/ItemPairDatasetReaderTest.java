@@ -1,16 +1,26 @@
 package walmartlabs.productmatching.autorulegenerator.utils.input;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
 import walmartlabs.productmatching.autorulegenerator.model.Dataset;
 import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.Example;
 import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.FeatureRegistry;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
 
 public class ItemPairDatasetReaderTest {
 
@@ -41,4 +51,70 @@ public class ItemPairDatasetReaderTest {
 		System.out.println("Matched Pairs : " + matchedCount);
 		System.out.println("Mismatched Pairs : " + mismatchedCount);
 	}
+	
+	@Test
+	public void testChunkedParseMatchesSequentialParse() throws IOException
+	{
+		File matchFile = createItemPairFile(0, 150);
+		File mismatchFile = createItemPairFile(150, 220);
+		Dataset sequentialDataset = ItemPairDatasetReader.parseDataset(matchFile, mismatchFile, "Restaurant Dataset");
+		
+		// Chunks of a few item pairs, many more than the threads of the pool
+		ForkJoinPool pool = new ForkJoinPool(4);
+		List<Dataset> chunkedDatasets = null;
+		try {
+			chunkedDatasets = ItemPairDatasetReader.parseFilesInChunks(Lists.newArrayList(matchFile, mismatchFile), 
+					Lists.newArrayList(DecisionTreeClassLabel.MATCH, DecisionTreeClassLabel.MISMATCH), false, 
+					new FeatureRegistry(), pool, 100);
+		}
+		finally {
+			pool.shutdown();
+		}
+		
+		Dataset chunkedDataset = chunkedDatasets.get(0);
+		assertEquals(sequentialDataset.getFeatures().toString(), chunkedDataset.getFeatures().toString());
+		List<ExamplePair> exPairs = sequentialDataset.getExamplePairs();
+		List<ExamplePair> chunkedExPairs = Lists.newArrayList(chunkedDataset.getExamplePairs());
+		chunkedExPairs.addAll(chunkedDatasets.get(1).getExamplePairs());
+		assertEquals(220, exPairs.size());
+		assertEquals(exPairs.size(), chunkedExPairs.size());
+		for(int index = 0; index < exPairs.size(); index++) {
+			ExamplePair exPair = exPairs.get(index);
+			ExamplePair chunkedExPair = chunkedExPairs.get(index);
+			assertEquals(exPair.getClassLabel(), chunkedExPair.getClassLabel());
+			assertSameExample(exPair.getSourceItem(), chunkedExPair.getSourceItem());
+			assertSameExample(exPair.getTargetItem(), chunkedExPair.getTargetItem());
+			for(int featureIndex = 0; featureIndex < sequentialDataset.getFeatures().size(); featureIndex++) {
+				assertEquals(exPair.getAttributeMatchScore(sequentialDataset.getFeatures().get(featureIndex)), 
+						chunkedExPair.getAttributeMatchScore(chunkedDataset.getFeatures().get(featureIndex)), 0.0);
+			}
+		}
+	}
+	
+	private static void assertSameExample(Example expected, Example actual)
+	{
+		assertEquals(expected.getId(), actual.getId());
+		for(Feature feature : expected.getFeatureValueMap().keySet()) {
+			assertEquals(expected.getValueForAttribute(feature.getAttrName()), actual.getValueForAttribute(feature.getAttrName()));
+		}
+	}
+	
+	private static File createItemPairFile(int from, int to) throws IOException
+	{
+		StringBuilder content = new StringBuilder("@relation \"Restaurant Dataset\"\n\n@attribute name string\n" +
+				"@attribute city string\n\n@data\n\n");
+		for(int index = from; index < to; index++) {
+			content.append("ID|#s").append(index).append("|#t").append(index).append("|#\n");
+			content.append("name|#restaurant ").append(index % 17).append("|#restaurant ").append(index % 13).append("|#\n");
+			if(index % 3 > 0) {
+				content.append("city|#city ").append(index % 5).append("|#city ").append(index % 7).append("|#\n");
+			}
+			content.append("\n");
+		}
+		
+		File file = File.createTempFile("pairs", ".txt");
+		file.deleteOnExit();
+		Files.write(content.toString(), file, Charsets.UTF_8);
+		return file;
+	}
 }
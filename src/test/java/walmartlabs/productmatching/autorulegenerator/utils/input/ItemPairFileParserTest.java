@@ -0,0 +1,190 @@
+package walmartlabs.productmatching.autorulegenerator.utils.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.Dataset;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.ExampleSchema;
+import walmartlabs.productmatching.autorulegenerator.model.FeatureRegistry;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Checks that scanning the bytes of a file gives the same item pairs as reading it line by line.
+ *
+ * @author excelsior
+ *
+ */
+public class ItemPairFileParserTest {
+	private static String[] ATTRIBUTES = { "name", "city", "Cuisine" };
+	private static String[] VALUES = { "thai house", "café du monde", "Zürich", "東京 sushi", "", " padded ",
+		"pizza|bar", "a#b", "NA" };
+	private static String[] LINE_BREAKS = { "\n", "\r\n", "\r" };
+
+	@Test
+	public void testSameItemPairsAsLineParser() throws IOException
+	{
+		Random random = new Random(11);
+		for(int run = 0; run < 20; run++) {
+			File file = createItemPairFile(random, 30);
+			// Whole file at once, and in windows of a few lines
+			for(long windowSize : new long[] { ItemPairFileParser.MAX_WINDOW_SIZE, 128, 200 + random.nextInt(300) }) {
+				assertSameItemPairs(file, windowSize);
+			}
+		}
+	}
+
+	@Test
+	public void testMalformedLines() throws IOException
+	{
+		String header = "@relation \"Restaurant Dataset\"\r\n\r\n@attribute name string\r\n\r\n@data\r\n\r\n";
+		assertMalformedLine(header + "ID|#1|#2|#\r\nname|#a|#b|#\r\n\r\nID|#3|#\r\n", 10, "no source and target ids");
+		assertMalformedLine(header + "ID|#1|#2|#\n|#|#\n", 8, "no attribute name");
+	}
+
+	@Test
+	public void testAttributesDifferingInCase() throws IOException
+	{
+		File file = createTempFile("@relation \"Restaurant Dataset\"\n\n@attribute name string\n" +
+				"@attribute Name string\n\n@data\n\nID|#1|#2|#\nName|#bizou|#cafe|#\nname|#cafe bizou|#cafe|#\n\n");
+		for(Dataset dataset : new Dataset[] { parseBytes(file, Charset.defaultCharset()),
+				ItemPairDatasetReader.parseFileByLine(file, DecisionTreeClassLabel.MATCH, false, new FeatureRegistry()) }) {
+			Example sourceEx = dataset.getExamplePairs().get(0).getSourceItem();
+			assertEquals(2, sourceEx.getSchema().getNumAttributes());
+			assertEquals("cafe bizou", sourceEx.getValueForAttribute("name"));
+			assertEquals("bizou", sourceEx.getValueForAttribute("Name"));
+		}
+	}
+
+	private static void assertSameItemPairs(File file, long maxWindowSize)
+	{
+		Charset charset = Charset.defaultCharset();
+		Dataset lineDataset = ItemPairDatasetReader.parseFileByLine(file, DecisionTreeClassLabel.MATCH, false,
+				new FeatureRegistry());
+		Dataset byteDataset = parseBytes(file, charset, maxWindowSize);
+
+		assertEquals(lineDataset.getName(), byteDataset.getName());
+		assertEquals(lineDataset.getFeatures().toString(), byteDataset.getFeatures().toString());
+		List<ExamplePair> lineExPairs = lineDataset.getExamplePairs();
+		List<ExamplePair> byteExPairs = byteDataset.getExamplePairs();
+		assertTrue(lineExPairs.size() > 0);
+		assertEquals(lineExPairs.size(), byteExPairs.size());
+		for(int index = 0; index < lineExPairs.size(); index++) {
+			assertSameExample(lineExPairs.get(index).getSourceItem(), byteExPairs.get(index).getSourceItem());
+			assertSameExample(lineExPairs.get(index).getTargetItem(), byteExPairs.get(index).getTargetItem());
+		}
+	}
+
+	private static void assertSameExample(Example expected, Example actual)
+	{
+		assertEquals(expected.getId(), actual.getId());
+		ExampleSchema schema = expected.getSchema();
+		assertEquals(schema.getNumAttributes(), actual.getSchema().getNumAttributes());
+		for(int attrIndex = 0; attrIndex < schema.getNumAttributes(); attrIndex++) {
+			assertEquals(schema.getAttrName(attrIndex), actual.getSchema().getAttrName(attrIndex));
+			assertEquals(expected.getValue(attrIndex), actual.getValue(attrIndex));
+		}
+	}
+
+	private static Dataset parseBytes(File file, Charset charset)
+	{
+		return parseBytes(file, charset, ItemPairFileParser.MAX_WINDOW_SIZE);
+	}
+
+	private static Dataset parseBytes(File file, Charset charset, long maxWindowSize)
+	{
+		FeatureRegistry featureRegistry = new FeatureRegistry();
+		ItemPairFileParser parser = new ItemPairFileParser(file, charset, DecisionTreeClassLabel.MATCH, false, featureRegistry);
+		try {
+			parser.parse(maxWindowSize);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return new Dataset(parser.getDatasetName(), parser.getFeatures(), parser.getExamplePairs(), featureRegistry);
+	}
+
+	private static void assertMalformedLine(String content, int lineNumber, String reason) throws IOException
+	{
+		File file = createTempFile(content);
+		for(int parserIndex = 0; parserIndex < 2; parserIndex++) {
+			try {
+				if(parserIndex == 0) {
+					ItemPairDatasetReader.parseFileByLine(file, DecisionTreeClassLabel.MATCH, false, new FeatureRegistry());
+				}
+				else {
+					parseBytes(file, Charset.defaultCharset());
+				}
+				fail("Malformed line should not parse");
+			}
+			catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("Malformed item pair at line " + lineNumber +
+						" of " + file + " : " + reason));
+			}
+		}
+	}
+
+	/**
+	 * Item pairs with any of the line breaks, some attributes missing or undeclared, empty and
+	 * trailing fields, and values that are not ASCII.
+	 */
+	private static File createItemPairFile(Random random, int numPairs) throws IOException
+	{
+		StringBuilder content = new StringBuilder();
+		appendLine(content, random, "@relation \"Restaurant Dataset\"");
+		appendLine(content, random, "");
+		for(String attribute : ATTRIBUTES) {
+			appendLine(content, random, "@attribute " + attribute + " string");
+		}
+		appendLine(content, random, "  @data");
+		appendLine(content, random, "");
+		for(int pair = 0; pair < numPairs; pair++) {
+			appendLine(content, random, "ID|#" + pair + "|# t" + pair + " |#");
+			for(String attribute : new String[] { "name", "city", "Cuisine", "phone", "cuisine" }) {
+				if(random.nextInt(4) == 0) {
+					continue;
+				}
+				String sourceValue = VALUES[random.nextInt(VALUES.length)];
+				String targetValue = VALUES[random.nextInt(VALUES.length)];
+				switch(random.nextInt(4)) {
+				case 0:
+					appendLine(content, random, "1.0 ==> " + attribute + "|#" + sourceValue);
+					break;
+				case 1:
+					appendLine(content, random, attribute + "|#" + sourceValue + "|#|#");
+					break;
+				default:
+					appendLine(content, random, " " + attribute + " |#" + sourceValue + "|#" + targetValue + "|#");
+				}
+			}
+			appendLine(content, random, random.nextBoolean() ? "" : " \t");
+		}
+		return createTempFile(content.toString());
+	}
+
+	private static void appendLine(StringBuilder content, Random random, String line)
+	{
+		content.append(line).append(LINE_BREAKS[random.nextInt(LINE_BREAKS.length)]);
+	}
+
+	private static File createTempFile(String content) throws IOException
+	{
+		File file = File.createTempFile("pairs", ".txt");
+		file.deleteOnExit();
+		Files.write(content, file, Charset.defaultCharset());
+		return file;
+	}
+}
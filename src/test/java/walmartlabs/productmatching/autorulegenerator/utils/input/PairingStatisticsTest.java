@@ -0,0 +1,53 @@
+package walmartlabs.productmatching.autorulegenerator.utils.input;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author excelsior
+ *
+ */
+public class PairingStatisticsTest {
+
+	@Test
+	public void testMinAndMaxOfIncreasingScores()
+	{
+		PairingStatistics pairingStats = new PairingStatistics();
+		pairingStats.addScore(0.3);
+		pairingStats.addScore(0.6);
+		pairingStats.addScore(0.9);
+
+		assertEquals(0.3, pairingStats.getMinScore(), 1e-9);
+		assertEquals(0.9, pairingStats.getMaxScore(), 1e-9);
+		assertEquals(0.6, pairingStats.getAverageScore(), 1e-9);
+	}
+
+	@Test
+	public void testMerge()
+	{
+		PairingStatistics first = new PairingStatistics();
+		first.addScore(0.5);
+		first.addPairWorthMatching(false);
+
+		PairingStatistics second = new PairingStatistics();
+		second.addScore(1.0);
+		second.addPairWorthMatching(true);
+		second.addScore(0.1);
+		second.addPairBelowLimit();
+
+		// Nothing scored yet
+		PairingStatistics merged = new PairingStatistics();
+		assertEquals(0.0, merged.getMinScore(), 1e-9);
+		assertEquals(0.0, merged.getAverageScore(), 0.0);
+
+		merged.merge(first);
+		merged.merge(second);
+		assertEquals(3, merged.getNumPairs());
+		assertEquals(2, merged.getNumPairsWorthMatching());
+		assertEquals(1, merged.getNumSureMatches());
+		assertEquals(1, merged.getNumPairsBelowLimit());
+		assertEquals(0.1, merged.getMinScore(), 1e-9);
+		assertEquals(1.0, merged.getMaxScore(), 1e-9);
+	}
+}
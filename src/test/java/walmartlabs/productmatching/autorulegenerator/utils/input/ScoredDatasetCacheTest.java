@@ -0,0 +1,184 @@
+package walmartlabs.productmatching.autorulegenerator.utils.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.Dataset;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.walmart.productgenome.pairComparison.utils.comparers.ComparersFactory;
+import com.walmart.productgenome.pairComparison.utils.comparers.IComparer;
+
+/**
+ * @author excelsior
+ *
+ */
+public class ScoredDatasetCacheTest {
+
+	@Test
+	public void testStoreAndLoad() throws IOException
+	{
+		List<Feature> features = Lists.newArrayList();
+		for(IComparer comparer : ComparersFactory.MATCH_COMPARERS) {
+			features.add(new Feature("name", comparer));
+		}
+
+		List<ExamplePair> exPairs = Lists.newArrayList();
+		exPairs.add(getExamplePair("1", "thai house", "2", "thai house cafe", features, DecisionTreeClassLabel.MATCH));
+		exPairs.add(getExamplePair("3", "pizza bar", "4", "sushi deli", features, DecisionTreeClassLabel.MISMATCH));
+		Dataset dataset = new Dataset("Restaurant Dataset", features, exPairs);
+
+		List<File> inputFiles = Lists.newArrayList(createTempFile("match", "pairs"), createTempFile("mismatch", "pairs"));
+		ScoredDatasetCache cache = new ScoredDatasetCache(createTempFile("dataset", ""));
+		cache.store(dataset, inputFiles);
+
+		Dataset cachedDataset = cache.load(inputFiles);
+		assertEquals("Restaurant Dataset", cachedDataset.getName());
+		assertEquals(features, cachedDataset.getFeatures());
+		assertEquals(exPairs.size(), cachedDataset.getExamplePairs().size());
+		for(int index = 0; index < exPairs.size(); index++) {
+			ExamplePair exPair = exPairs.get(index);
+			ExamplePair cachedExPair = cachedDataset.getExamplePairs().get(index);
+			assertEquals(exPair.getClassLabel(), cachedExPair.getClassLabel());
+			assertEquals(exPair.getSourceItem().getId(), cachedExPair.getSourceItem().getId());
+			assertEquals(exPair.getTargetItem().getId(), cachedExPair.getTargetItem().getId());
+			for(Feature feature : features) {
+				assertEquals(exPair.getAttributeMatchScore(feature), cachedExPair.getAttributeMatchScore(feature), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testStaleCacheIsNotLoaded() throws IOException
+	{
+		File matchFile = createTempFile("match", "pairs");
+		File mismatchFile = createTempFile("mismatch", "pairs");
+		List<File> inputFiles = Lists.newArrayList(matchFile, mismatchFile);
+		ScoredDatasetCache cache = new ScoredDatasetCache(createTempFile("dataset", ""));
+		cache.store(createDataset(), inputFiles);
+
+		// Same content, other modification time : the fingerprint of the content still matches
+		assertTrue(matchFile.setLastModified(matchFile.lastModified() - 60000));
+		assertNotNull(cache.load(inputFiles));
+
+		// Other content
+		Files.write("other pairs", matchFile, Charsets.UTF_8);
+		assertNull(cache.load(inputFiles));
+
+		// Other inputs
+		assertNull(cache.load(Lists.newArrayList(mismatchFile, matchFile)));
+	}
+
+	@Test
+	public void testTruncatedCacheFailsToLoad() throws IOException
+	{
+		List<File> inputFiles = Lists.newArrayList(createTempFile("match", "pairs"));
+		File cacheFile = createTempFile("dataset", "");
+		ScoredDatasetCache cache = new ScoredDatasetCache(cacheFile);
+		cache.store(createDataset(), inputFiles);
+
+		for(long length : new long[] { cacheFile.length() - 8, 30 }) {
+			RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+			try {
+				file.setLength(length);
+			}
+			finally {
+				file.close();
+			}
+
+			try {
+				cache.load(inputFiles);
+				fail("Truncated cache should not load");
+			}
+			catch (IOException e) {
+				// Expected
+			}
+		}
+	}
+
+	@Test
+	public void testCorruptCacheIsRebuilt() throws IOException
+	{
+		File matchFile = createTempFile("match", "pairs");
+		File mismatchFile = createTempFile("mismatch", "pairs");
+		Files.write(getItemPairFile("1", "thai house", "2", "thai house"), matchFile, Charsets.UTF_8);
+		Files.write(getItemPairFile("3", "pizza bar", "4", "sushi deli"), mismatchFile, Charsets.UTF_8);
+		List<File> inputFiles = Lists.newArrayList(matchFile, mismatchFile);
+
+		File cacheFile = createTempFile("dataset", "");
+		ScoredDatasetCache cache = new ScoredDatasetCache(cacheFile);
+		Dataset dataset = ItemPairDatasetReader.parseDataset(matchFile, mismatchFile, "Restaurant Dataset", cache);
+		assertEquals(2, dataset.getExamplePairs().size());
+
+		// Garbage where the number of features is
+		RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+		try {
+			file.seek(24 + 4 + "Restaurant Dataset".length());
+			file.writeInt(-5);
+		}
+		finally {
+			file.close();
+		}
+
+		dataset = ItemPairDatasetReader.parseDataset(matchFile, mismatchFile, "Restaurant Dataset", cache);
+		assertEquals(2, dataset.getExamplePairs().size());
+		assertEquals(2, cache.load(inputFiles).getExamplePairs().size());
+	}
+
+	private static Dataset createDataset()
+	{
+		List<Feature> features = Lists.newArrayList();
+		for(IComparer comparer : ComparersFactory.MATCH_COMPARERS) {
+			features.add(new Feature("name", comparer));
+		}
+
+		List<ExamplePair> exPairs = Lists.newArrayList();
+		exPairs.add(getExamplePair("1", "thai house", "2", "thai house cafe", features, DecisionTreeClassLabel.MATCH));
+		return new Dataset("Restaurant Dataset", features, exPairs);
+	}
+
+	private static String getItemPairFile(String sourceId, String sourceName, String targetId, String targetName)
+	{
+		return "@relation \"Restaurant Dataset\"\n\n@attribute name string\n\n@data\n\n" +
+				"ID|#" + sourceId + "|#" + targetId + "|#\n" +
+				"1.0 ==> name|#" + sourceName + "|#" + targetName + "|#\n\n";
+	}
+
+	private static File createTempFile(String prefix, String content) throws IOException
+	{
+		File file = File.createTempFile(prefix, ".txt");
+		file.deleteOnExit();
+		Files.write(content, file, Charsets.UTF_8);
+		return file;
+	}
+
+	private static ExamplePair getExamplePair(String sourceId, String sourceName, String targetId, String targetName,
+			List<Feature> features, DecisionTreeClassLabel label)
+	{
+		Map<Feature, String> sourceValues = Maps.newHashMap();
+		Map<Feature, String> targetValues = Maps.newHashMap();
+		for(Feature feature : features) {
+			sourceValues.put(feature, sourceName);
+			targetValues.put(feature, targetName);
+		}
+		return new ExamplePair(new Example(sourceId, sourceValues), new Example(targetId, targetValues), label);
+	}
+}
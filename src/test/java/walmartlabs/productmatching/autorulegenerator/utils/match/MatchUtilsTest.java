@@ -1,13 +1,99 @@
 package walmartlabs.productmatching.autorulegenerator.utils.match;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
 import org.junit.Ignore;
 import org.junit.Test;
 
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 public class MatchUtilsTest {
 
 	private MatchUtils matchUtils = new MatchUtils();
+	private static String[] TOKENS = { "thai", "house", "cafe", "pizza", "bar", "sushi", "deli", "grill" };
+	private List<String> idKeys = Lists.newArrayList("name", "city", "cuisine");
+	
+	@Test
+	public void testUnprunedScoreIsTheExactScore()
+	{
+		List<Example> examples = createExamples(40);
+		int[] scoringOrder = MatchUtils.getIdKeysScoringOrder(examples, idKeys);
+		for(int i = 0; i < examples.size(); i++) {
+			for(int j = i + 1; j < examples.size(); j++) {
+				double score = MatchUtils.getExamplePairSimilarityScore(examples.get(i), examples.get(j), idKeys);
+				assertEquals(score, MatchUtils.getExamplePairSimilarityScore(examples.get(i), examples.get(j), idKeys, 
+						scoringOrder, 0.0), 0.0);
+				assertEquals(score, MatchUtils.getExamplePairSimilarityScore(examples.get(i), examples.get(j), idKeys, 
+						new int[] { 2, 0, 1 }, 0.0), 0.0);
+			}
+		}
+	}
+	
+	@Test
+	public void testPruningKeepsPairsReachingTheMinimum()
+	{
+		List<Example> examples = createExamples(40);
+		int[] scoringOrder = MatchUtils.getIdKeysScoringOrder(examples, idKeys);
+		int numPruned = 0;
+		int numReaching = 0;
+		for(double minScore : new double[] { 0.25, 0.5, 1.0/3, 2.0/3, 0.9 }) {
+			for(int i = 0; i < examples.size(); i++) {
+				for(int j = i + 1; j < examples.size(); j++) {
+					double score = MatchUtils.getExamplePairSimilarityScore(examples.get(i), examples.get(j), idKeys);
+					double prunedScore = MatchUtils.getExamplePairSimilarityScore(examples.get(i), examples.get(j), 
+							idKeys, scoringOrder, minScore);
+					if(score >= minScore) {
+						++numReaching;
+						assertEquals(score, prunedScore, 0.0);
+					}
+					else {
+						// Either the score, summed in the scoring order, or a bound on it still below the minimum
+						assertTrue(prunedScore >= score - 1e-9 && prunedScore < minScore);
+						if(prunedScore > score + 1e-9) {
+							++numPruned;
+						}
+					}
+				}
+			}
+		}
+		assertTrue(numPruned > 0);
+		assertTrue(numReaching > 0);
+	}
+	
+	/**
+	 * Examples whose values share tokens, with some values missing or empty.
+	 */
+	private List<Example> createExamples(int numExamples)
+	{
+		Random random = new Random(3);
+		List<Example> examples = Lists.newArrayList();
+		for(int index = 0; index < numExamples; index++) {
+			Map<Feature, String> featureValueMap = Maps.newHashMap();
+			for(String idKey : idKeys) {
+				int numTokens = random.nextInt(4);
+				if(numTokens == 0 && random.nextBoolean()) {
+					continue;
+				}
+				StringBuilder value = new StringBuilder();
+				for(int token = 0; token < numTokens; token++) {
+					value.append(token > 0 ? " " : "").append(TOKENS[random.nextInt(TOKENS.length)]);
+				}
+				featureValueMap.put(new Feature(idKey, DataType.STRING), value.toString());
+			}
+			examples.add(new Example(String.valueOf(index), featureValueMap));
+		}
+		return examples;
+	}
 	
 	@Test
 	public void testName()
@@ -0,0 +1,173 @@
+package walmartlabs.productmatching.autorulegenerator.utils.match;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeLinkType;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNode;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNodeType;
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+import walmartlabs.productmatching.autorulegenerator.model.MatchingRule;
+import walmartlabs.productmatching.autorulegenerator.model.MatchingRulePredicate;
+import walmartlabs.productmatching.autorulegenerator.utils.DecisionTreeUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * @author excelsior
+ *
+ */
+public class MatchingRuleEvaluatorTest {
+	private Feature name = new Feature("name", DataType.STRING);
+	private Feature phone = new Feature("phone", DataType.STRING);
+
+	@Test
+	public void testExtractMatchingRules()
+	{
+		List<MatchingRule> rules = DecisionTreeUtils.extractMatchingRules(createTree());
+		assertEquals(2, rules.size());
+
+		// The less-than branch comes first
+		MatchingRule phoneRule = rules.get(0);
+		assertEquals(Lists.newArrayList(new MatchingRulePredicate(name, DecisionTreeLinkType.MATCH_LINK, 0.5),
+				new MatchingRulePredicate(phone, DecisionTreeLinkType.MISMATCH_LINK, 0.8)), phoneRule.getPredicates());
+		assertEquals(DecisionTreeClassLabel.MATCH, phoneRule.getLabel());
+		assertEquals(4, phoneRule.getMatches());
+		assertEquals(1, phoneRule.getMismatches());
+		assertEquals(16.67, phoneRule.getRecall(), 1e-9);
+		assertEquals(80.0, phoneRule.getPrecision(), 1e-9);
+
+		MatchingRule nameRule = rules.get(1);
+		assertEquals(Lists.newArrayList(new MatchingRulePredicate(name, DecisionTreeLinkType.MISMATCH_LINK, 0.5)),
+				nameRule.getPredicates());
+		assertEquals(20, nameRule.getMatches());
+		assertEquals(2, nameRule.getMismatches());
+		assertEquals(83.33, nameRule.getRecall(), 1e-9);
+		assertEquals(90.91, nameRule.getPrecision(), 1e-9);
+
+		assertEquals(0, DecisionTreeUtils.extractMatchingRules(null).size());
+	}
+
+	@Test
+	public void testDecisionsAtThresholds()
+	{
+		List<MatchingRule> rules = DecisionTreeUtils.extractMatchingRules(createTree());
+		MatchingRuleEvaluator evaluator = new MatchingRuleEvaluator(rules);
+		assertEquals(Lists.newArrayList(name, phone), evaluator.getFeatures());
+
+		// A score equal to the split value takes the greater-than branch
+		assertSame(rules.get(1), evaluator.getFiringRule(createExamplePair(0.5, 0.0)));
+		assertSame(rules.get(0), evaluator.getFiringRule(createExamplePair(0.49, 0.8)));
+		assertNull(evaluator.getFiringRule(createExamplePair(0.49, 0.79)));
+		assertEquals(DecisionTreeClassLabel.MISMATCH, evaluator.evaluate(createExamplePair(0.49, 0.79)));
+		assertEquals(DecisionTreeClassLabel.MATCH, evaluator.evaluate(createExamplePair(1.0, 1.0)));
+
+		// A missing score is less than any split value, and an absent feature scores 0.0
+		assertSame(rules.get(0), evaluator.getFiringRule(createExamplePair(-1.0, 0.9)));
+		assertSame(rules.get(0), evaluator.getFiringRule(createExamplePair(null, 0.9)));
+		assertNull(evaluator.getFiringRule(createExamplePair(0.3, null)));
+		assertNull(evaluator.getFiringRule(createExamplePair(0.3, -1.0)));
+	}
+
+	@Test
+	public void testEvaluateItems()
+	{
+		MatchingRuleEvaluator evaluator = new MatchingRuleEvaluator(DecisionTreeUtils.extractMatchingRules(createTree()));
+		assertEquals(DecisionTreeClassLabel.MATCH, evaluator.evaluate(createExample("thai house", null),
+				createExample("thai house", "555 1234")));
+		assertEquals(DecisionTreeClassLabel.MATCH, evaluator.evaluate(createExample(null, "555 1234"),
+				createExample("thai house", "555 1234")));
+		assertEquals(DecisionTreeClassLabel.MISMATCH, evaluator.evaluate(createExample("pizza bar", "555 9876"),
+				createExample("sushi deli", "555 1234")));
+	}
+
+	@Test
+	public void testMismatchRulesNeverFire()
+	{
+		MatchingRule mismatchRule = new MatchingRule(Lists.<MatchingRulePredicate>newArrayList(),
+				DecisionTreeClassLabel.MISMATCH, 0, 5);
+		MatchingRule nameRule = new MatchingRule(Lists.newArrayList(
+				new MatchingRulePredicate(name, DecisionTreeLinkType.MISMATCH_LINK, 0.5)), DecisionTreeClassLabel.MATCH, 5, 0);
+		MatchingRuleEvaluator evaluator = new MatchingRuleEvaluator(Lists.newArrayList(mismatchRule, nameRule));
+		assertNull(evaluator.getFiringRule(createExamplePair(0.2, 0.0)));
+		assertSame(nameRule, evaluator.getFiringRule(createExamplePair(0.7, 0.0)));
+	}
+
+	/**
+	 * name < 0.5 ? (phone < 0.8 ? MISMATCH : MATCH) : MATCH
+	 */
+	private DecisionTreeNode createTree()
+	{
+		DecisionTreeNode phoneNode = createFeatureNode(phone, 0.8, createLeafNode(DecisionTreeClassLabel.MISMATCH, 0, 9),
+				createLeafNode(DecisionTreeClassLabel.MATCH, 4, 1));
+		DecisionTreeNode root = createFeatureNode(name, 0.5, phoneNode, createLeafNode(DecisionTreeClassLabel.MATCH, 20, 2));
+		root.setClassCounts(24, 12);
+		return root;
+	}
+
+	private static DecisionTreeNode createLeafNode(DecisionTreeClassLabel label, int matches, int mismatches)
+	{
+		DecisionTreeNode node = new DecisionTreeNode(Lists.<ExamplePair>newArrayList(), Lists.<Feature>newArrayList());
+		node.setNodeType(DecisionTreeNodeType.CLASS_NODE);
+		node.setLabel(label);
+		node.setClassCounts(matches, mismatches);
+		return node;
+	}
+
+	private static DecisionTreeNode createFeatureNode(Feature feature, double splitValue,
+			DecisionTreeNode lessThanNode, DecisionTreeNode greaterThanNode)
+	{
+		DecisionTreeNode node = new DecisionTreeNode(Lists.<ExamplePair>newArrayList(), Lists.<Feature>newArrayList());
+		node.setNodeType(DecisionTreeNodeType.FEATURE_NODE);
+		node.setBestFeature(feature);
+		node.setClassCounts(lessThanNode.getMatches() + greaterThanNode.getMatches(),
+				lessThanNode.getMismatches() + greaterThanNode.getMismatches());
+
+		lessThanNode.setParentFeatureName(feature);
+		lessThanNode.setParentFeatureLinkValue(splitValue);
+		lessThanNode.setParentLinkType(DecisionTreeLinkType.MATCH_LINK);
+		greaterThanNode.setParentFeatureName(feature);
+		greaterThanNode.setParentFeatureLinkValue(splitValue);
+		greaterThanNode.setParentLinkType(DecisionTreeLinkType.MISMATCH_LINK);
+		node.setChildNodes(Lists.newArrayList(lessThanNode, greaterThanNode));
+		return node;
+	}
+
+	/**
+	 * Example pair with the given scores, a null score leaving the feature out.
+	 */
+	private ExamplePair createExamplePair(Double nameScore, Double phoneScore)
+	{
+		Map<Feature, Double> scores = Maps.newHashMap();
+		if(nameScore != null) {
+			scores.put(name, nameScore);
+		}
+		if(phoneScore != null) {
+			scores.put(phone, phoneScore);
+		}
+		return new ExamplePair(null, null, DecisionTreeClassLabel.MISMATCH, scores);
+	}
+
+	private Example createExample(String nameValue, String phoneValue)
+	{
+		Map<Feature, String> featureValueMap = Maps.newHashMap();
+		if(nameValue != null) {
+			featureValueMap.put(name, nameValue);
+		}
+		if(phoneValue != null) {
+			featureValueMap.put(phone, phoneValue);
+		}
+		return new Example("1", featureValueMap);
+	}
+}
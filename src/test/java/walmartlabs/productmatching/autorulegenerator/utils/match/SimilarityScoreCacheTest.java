@@ -0,0 +1,63 @@
+package walmartlabs.productmatching.autorulegenerator.utils.match;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * @author excelsior
+ *
+ */
+public class SimilarityScoreCacheTest {
+	private Object scorer = new Object();
+
+	@Test
+	public void testHitsAndMisses()
+	{
+		SimilarityScoreCache cache = new SimilarityScoreCache(100);
+		assertNull(cache.getIfPresent(scorer, "chicago", "chicago il", false));
+		cache.put(scorer, "chicago", "chicago il", false, 0.75);
+		assertEquals(0.75, cache.getIfPresent(scorer, "chicago", "chicago il", false), 1e-9);
+
+		// Another scorer does not share the score
+		assertNull(cache.getIfPresent(new Object(), "chicago", "chicago il", false));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testSymmetry()
+	{
+		SimilarityScoreCache cache = new SimilarityScoreCache(100);
+		cache.put(scorer, "thai", "thai food", true, 0.5);
+		assertEquals(0.5, cache.getIfPresent(scorer, "thai food", "thai", true), 1e-9);
+
+		cache.put(scorer, "bistro", "french bistro", false, 0.4);
+		assertNull(cache.getIfPresent(scorer, "french bistro", "bistro", false));
+	}
+
+	@Test
+	public void testEviction()
+	{
+		SimilarityScoreCache cache = new SimilarityScoreCache(2, 1);
+		cache.put(scorer, "a", "b", false, 0.1);
+		cache.put(scorer, "a", "c", false, 0.2);
+		// Touch (a, b) so that (a, c) is the least recently used
+		cache.getIfPresent(scorer, "a", "b", false);
+		cache.put(scorer, "a", "d", false, 0.3);
+
+		assertEquals(2, cache.size());
+		assertEquals(0.1, cache.getIfPresent(scorer, "a", "b", false), 1e-9);
+		assertNull(cache.getIfPresent(scorer, "a", "c", false));
+	}
+
+	@Test
+	public void testNullValuesAreNotCached()
+	{
+		SimilarityScoreCache cache = new SimilarityScoreCache(10);
+		cache.put(scorer, null, "b", false, 0.1);
+		assertNull(cache.getIfPresent(scorer, null, "b", false));
+		assertEquals(0, cache.size());
+	}
+}
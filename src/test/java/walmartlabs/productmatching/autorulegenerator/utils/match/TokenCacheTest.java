@@ -0,0 +1,105 @@
+package walmartlabs.productmatching.autorulegenerator.utils.match;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.Example;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+import walmartlabs.productmatching.autorulegenerator.utils.input.ArffDatasetReader;
+import walmartlabs.productmatching.autorulegenerator.utils.input.ItemPairDatasetReader;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.walmart.productgenome.pairComparison.utils.tokenizers.StandardAnalyzerTokenizer;
+
+/**
+ * @author excelsior
+ *
+ */
+public class TokenCacheTest {
+
+	@Test
+	public void testHitsAndMisses()
+	{
+		TokenCache cache = new TokenCache(new StandardAnalyzerTokenizer());
+		List<String> tokens = cache.tokenize("thai house");
+		assertEquals(Lists.newArrayList("thai", "house"), tokens);
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		assertEquals(tokens, cache.tokenize("thai house"));
+		assertEquals(1, cache.getHitCount());
+
+		// The token shared by both values is kept once
+		List<String> otherTokens = cache.tokenize("thai kitchen");
+		assertSame(tokens.get(0), otherTokens.get(0));
+		assertEquals(2, cache.size());
+		assertEquals(3, cache.getNumTokens());
+		assertEquals(2, cache.getMissCount());
+
+		// Callers get their own copy
+		tokens.clear();
+		assertEquals(2, cache.tokenize("thai house").size());
+	}
+
+	@Test
+	public void testClear()
+	{
+		TokenCache cache = new TokenCache(new StandardAnalyzerTokenizer());
+		cache.tokenize("thai house");
+		cache.tokenize("thai house");
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getNumTokens());
+
+		// The counts are kept, and the value is tokenized again
+		assertEquals(Lists.newArrayList("thai", "house"), cache.tokenize("thai house"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testReadersClearTheCache() throws IOException
+	{
+		TokenCache cache = MatchUtils.getTokenCache();
+		Feature name = new Feature("name", DataType.STRING);
+		List<Example> examples = Lists.newArrayList();
+		for(String value : new String[] { "thai house", "thai house cafe", "pizza bar" }) {
+			Map<Feature, String> featureValueMap = Maps.newHashMap();
+			featureValueMap.put(name, value);
+			examples.add(new Example(String.valueOf(examples.size()), featureValueMap));
+		}
+
+		ArffDatasetReader reader = new ArffDatasetReader();
+		reader.setDumpingExamplePairs(false);
+		reader.getExamplePairs(examples, Lists.newArrayList("name"));
+		assertEquals(0, cache.size());
+
+		File matchFile = createItemPairFile("thai house", "thai house cafe");
+		File mismatchFile = createItemPairFile("pizza bar", "sushi deli");
+		cache.tokenize("thai house");
+		assertTrue(cache.size() > 0);
+		ItemPairDatasetReader.parseDataset(matchFile, mismatchFile, "Restaurant Dataset");
+		assertEquals(0, cache.size());
+	}
+
+	private static File createItemPairFile(String sourceName, String targetName) throws IOException
+	{
+		File file = File.createTempFile("pairs", ".txt");
+		file.deleteOnExit();
+		Files.write("@relation \"Restaurant Dataset\"\n\n@attribute name string\n\n@data\n\n" +
+				"ID|#1|#2|#\n1.0 ==> name|#" + sourceName + "|#" + targetName + "|#\n\n", file, Charsets.UTF_8);
+		return file;
+	}
+}
@@ -0,0 +1,87 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeLinkType;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNode;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNodeType;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author excelsior
+ *
+ */
+public class CompiledDecisionTreeTest {
+
+	@Test
+	public void testClassify()
+	{
+		Feature name = new Feature("name", DataType.STRING);
+		Feature phone = new Feature("phone", DataType.STRING);
+
+		// name < 0.5 ? MISMATCH : (phone < 0.8 ? MISMATCH : MATCH)
+		DecisionTreeNode phoneNode = createFeatureNode(phone, 0.8,
+				createLeafNode(DecisionTreeClassLabel.MISMATCH), createLeafNode(DecisionTreeClassLabel.MATCH));
+		DecisionTreeNode root = createFeatureNode(name, 0.5, createLeafNode(DecisionTreeClassLabel.MISMATCH), phoneNode);
+
+		// Score vectors are laid out as [phone, name]
+		List<Feature> features = Lists.newArrayList(phone, name);
+		CompiledDecisionTree tree = CompiledDecisionTree.compile(root, features);
+		assertEquals(5, tree.getNumNodes());
+
+		double[][] scores = {
+			{ 1.0, 0.4 },
+			{ 0.7, 0.9 },
+			{ 0.8, 0.5 },
+			{ -1.0, 1.0 }
+		};
+		boolean[] isMatch = tree.classify(scores);
+		assertEquals(false, isMatch[0]);
+		assertEquals(false, isMatch[1]);
+		assertEquals(true, isMatch[2]);
+		assertEquals(false, isMatch[3]);
+		assertEquals(DecisionTreeClassLabel.MATCH, tree.classify(scores[2]));
+	}
+
+	@Test
+	public void testSingleLeafTree()
+	{
+		CompiledDecisionTree tree = CompiledDecisionTree.compile(createLeafNode(DecisionTreeClassLabel.MATCH),
+				Lists.<Feature>newArrayList());
+		assertEquals(DecisionTreeClassLabel.MATCH, tree.classify(new double[0]));
+	}
+
+	private static DecisionTreeNode createLeafNode(DecisionTreeClassLabel label)
+	{
+		DecisionTreeNode node = new DecisionTreeNode(Lists.<ExamplePair>newArrayList(), Lists.<Feature>newArrayList());
+		node.setNodeType(DecisionTreeNodeType.CLASS_NODE);
+		node.setLabel(label);
+		return node;
+	}
+
+	private static DecisionTreeNode createFeatureNode(Feature feature, double splitValue,
+			DecisionTreeNode lessThanNode, DecisionTreeNode greaterThanNode)
+	{
+		DecisionTreeNode node = new DecisionTreeNode(Lists.<ExamplePair>newArrayList(), Lists.<Feature>newArrayList());
+		node.setNodeType(DecisionTreeNodeType.FEATURE_NODE);
+		node.setBestFeature(feature);
+
+		lessThanNode.setParentFeatureName(feature);
+		lessThanNode.setParentFeatureLinkValue(splitValue);
+		lessThanNode.setParentLinkType(DecisionTreeLinkType.MATCH_LINK);
+		greaterThanNode.setParentFeatureName(feature);
+		greaterThanNode.setParentFeatureLinkValue(splitValue);
+		greaterThanNode.setParentLinkType(DecisionTreeLinkType.MISMATCH_LINK);
+		node.setChildNodes(Lists.newArrayList(lessThanNode, greaterThanNode));
+		return node;
+	}
+}
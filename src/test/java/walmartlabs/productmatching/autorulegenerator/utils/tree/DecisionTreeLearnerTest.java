@@ -0,0 +1,333 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.text.DecimalFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.Dataset;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeLinkType;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNode;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNodeType;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+import walmartlabs.productmatching.autorulegenerator.model.FeatureMatrix;
+import walmartlabs.productmatching.autorulegenerator.utils.input.ItemPairDatasetReader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Checks the learner on the presorted feature matrix against the list based learner it replaced,
+ * and a learner running on a pool against a sequential one.
+ *
+ * @author excelsior
+ *
+ */
+public class DecisionTreeLearnerTest {
+	private static int[] LEAF_THRESHOLDS = { 0, 5, 20 };
+
+	@Test
+	public void testSameTreeAsListLearner()
+	{
+		List<List<Feature>> featureLists = Lists.newArrayList();
+		List<List<ExamplePair>> exPairLists = getFixtures(featureLists);
+		for(int fixture = 0; fixture < exPairLists.size(); fixture++) {
+			List<ExamplePair> exPairs = exPairLists.get(fixture);
+			List<Feature> features = featureLists.get(fixture);
+			for(int leafThreshold : LEAF_THRESHOLDS) {
+				DecisionTreeNode expected = ListDecisionTreeLearner.learnRuleDecisionTree(exPairs, features, leafThreshold);
+				DecisionTreeNode actual = new DecisionTreeLearner(new FeatureMatrix(exPairs, features), leafThreshold)
+						.learnRuleDecisionTree();
+				assertEquals(describe(expected), describe(actual));
+			}
+		}
+	}
+
+	@Test
+	public void testPoolRunMatchesSequentialRun()
+	{
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<List<Feature>> featureLists = Lists.newArrayList();
+			List<List<ExamplePair>> exPairLists = getFixtures(featureLists);
+			for(int fixture = 0; fixture < exPairLists.size(); fixture++) {
+				List<ExamplePair> exPairs = exPairLists.get(fixture);
+				List<Feature> features = featureLists.get(fixture);
+				for(int leafThreshold : LEAF_THRESHOLDS) {
+					String expected = describe(new DecisionTreeLearner(new FeatureMatrix(exPairs, features), leafThreshold)
+							.learnRuleDecisionTree());
+
+					// Every node evaluates its features, and forks its subtrees, on the pool
+					DecisionTreeLearningOptions options = new DecisionTreeLearningOptions(leafThreshold);
+					options.setForkJoinPool(pool);
+					options.setMinParallelFeatureEvaluationSize(1);
+					options.setMinParallelSubtreeSize(1);
+					for(int run = 0; run < 3; run++) {
+						DecisionTreeNode actual = new DecisionTreeLearner(new FeatureMatrix(exPairs, features), options)
+								.learnRuleDecisionTree();
+						assertEquals(expected, describe(actual));
+					}
+				}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The restaurant item pairs, and random scores with ties and missing values. The features of
+	 * each set of example pairs are added to the given list.
+	 */
+	private static List<List<ExamplePair>> getFixtures(List<List<Feature>> featureLists)
+	{
+		List<List<ExamplePair>> fixtures = Lists.newArrayList();
+		String dataDirPath = System.getProperty("user.dir") + "/src/main/resources/data/restaurant/";
+		Dataset dataset = ItemPairDatasetReader.parseDataset(new File(dataDirPath + "matched_pairs_with_phone.txt"),
+				new File(dataDirPath + "mismatched_pairs_with_phone.txt"), "Restaurant Dataset");
+		fixtures.add(dataset.getExamplePairs());
+		featureLists.add(dataset.getFeatures());
+
+		Random random = new Random(5);
+		for(int run = 0; run < 6; run++) {
+			List<Feature> features = createFeatures(2 + run % 3);
+			fixtures.add(createExamplePairs(random, 100 + run*80, features, 2 + run*3));
+			featureLists.add(features);
+		}
+		return fixtures;
+	}
+
+	/**
+	 * Example pairs whose MATCH pairs tend to score higher, on scores taking a few distinct values.
+	 */
+	private static List<ExamplePair> createExamplePairs(Random random, int numExPairs, List<Feature> features,
+			int numValues)
+	{
+		List<ExamplePair> exPairs = Lists.newArrayList();
+		for(int i = 0; i < numExPairs; i++) {
+			boolean isMatch = random.nextInt(3) == 0;
+			Map<Feature, Double> scores = Maps.newHashMap();
+			for(Feature feature : features) {
+				double score = random.nextInt(numValues)/(double)(numValues - 1);
+				if(isMatch && random.nextBoolean()) {
+					score = Math.min(1.0, score + 0.3);
+				}
+				if(random.nextInt(20) == 0) {
+					score = -1.0;
+				}
+				scores.put(feature, score);
+			}
+			exPairs.add(new ExamplePair(null, null, isMatch ? DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH,
+					scores));
+		}
+		return exPairs;
+	}
+
+	private static List<Feature> createFeatures(int numFeatures)
+	{
+		List<Feature> features = Lists.newArrayList();
+		for(int featureIndex = 0; featureIndex < numFeatures; featureIndex++) {
+			features.add(new Feature("attr" + featureIndex, DataType.NUMERIC));
+		}
+		return features;
+	}
+
+	/**
+	 * Structure, features, thresholds and class counts of a tree, one node per line.
+	 */
+	private static String describe(DecisionTreeNode dtree)
+	{
+		StringBuilder description = new StringBuilder();
+		describe(dtree, "", description);
+		return description.toString();
+	}
+
+	private static void describe(DecisionTreeNode node, String prefix, StringBuilder description)
+	{
+		description.append(prefix).append(node.getParentFeatureName()).append(' ').append(node.getParentLinkType())
+			.append(' ').append(node.getParentFeatureLinkValue()).append(" : ").append(node.getNodeType())
+			.append(' ').append(node.getBestFeature()).append(' ').append(node.getLabel()).append(' ')
+			.append(node.getMatches()).append('/').append(node.getMismatches()).append(' ')
+			.append(node.getFeatures()).append('\n');
+		for(DecisionTreeNode childNode : node.getChildNodes()) {
+			describe(childNode, prefix + "|\t", description);
+		}
+	}
+
+	/**
+	 * The learner as it was before the feature matrix : every candidate threshold of every
+	 * feature filters the example pairs of the node into new lists.
+	 */
+	private static class ListDecisionTreeLearner {
+		private static DecimalFormat DECIMAL_FORMATTER = new DecimalFormat("##.00");
+
+		static DecisionTreeNode learnRuleDecisionTree(List<ExamplePair> examplePairs, List<Feature> features,
+				int leafThreshold)
+		{
+			if(examplePairs.isEmpty()) {
+				return createNode(examplePairs, features, null, DecisionTreeClassLabel.MISMATCH);
+			}
+
+			int matches = getMatches(examplePairs);
+			int mismatches = examplePairs.size() - matches;
+			DecisionTreeClassLabel majorityClassLabel = matches > mismatches ?
+					DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH;
+			if(features.isEmpty() || examplePairs.size() < leafThreshold) {
+				return createNode(examplePairs, features, null, majorityClassLabel);
+			}
+			if(matches == 0 || mismatches == 0) {
+				return createNode(examplePairs, features, null, majorityClassLabel);
+			}
+
+			Feature bestFeature = null;
+			double maxInfoGain = -999;
+			for(Feature feature : features) {
+				double infoGain = 0.0;
+				double splitValue = getBestSplitThreshold(examplePairs, feature);
+				if(splitValue >= 0) {
+					infoGain = getInfo(examplePairs) - getSplitInfo(examplePairs, feature, splitValue);
+				}
+				if(Double.compare(infoGain, maxInfoGain) > 0) {
+					maxInfoGain = infoGain;
+					bestFeature = feature;
+				}
+			}
+			if(Double.compare(maxInfoGain, 0) <= 0) {
+				return createNode(examplePairs, features, null, majorityClassLabel);
+			}
+
+			DecisionTreeNode root = createNode(examplePairs, features, bestFeature, null);
+			double splitValue = getBestSplitThreshold(examplePairs, bestFeature);
+			List<Feature> remainingFeatures = Lists.newArrayList();
+			for(Feature feature : features) {
+				if(!feature.getAttrName().equals(bestFeature.getAttrName())) {
+					remainingFeatures.add(feature);
+				}
+			}
+
+			List<DecisionTreeNode> childNodes = Lists.newArrayList();
+			for(DecisionTreeLinkType linkType : DecisionTreeLinkType.getDecisonTreeLinkValues()) {
+				List<ExamplePair> exPairs = filter(examplePairs, bestFeature, splitValue, linkType.getOperatorToApply());
+				DecisionTreeNode childNode = learnRuleDecisionTree(exPairs, remainingFeatures, leafThreshold);
+				childNode.setParentFeatureName(bestFeature);
+				childNode.setParentFeatureLinkValue(splitValue);
+				childNode.setParentLinkType(linkType);
+				childNodes.add(childNode);
+			}
+			root.setChildNodes(childNodes);
+			return root;
+		}
+
+		/**
+		 * Candidate thresholds lie halfway between the lowest score and every other score, unless
+		 * both scores are only seen with the same class label.
+		 */
+		private static double getBestSplitThreshold(List<ExamplePair> exPairs, Feature feature)
+		{
+			Map<Double, List<ExamplePair>> valueExPairsMap = Maps.newTreeMap();
+			for(ExamplePair exPair : exPairs) {
+				double score = exPair.getAttributeMatchScore(feature);
+				if(!valueExPairsMap.containsKey(score)) {
+					valueExPairsMap.put(score, Lists.<ExamplePair>newArrayList());
+				}
+				valueExPairsMap.get(score).add(exPair);
+			}
+
+			double bestSplitThreshold = 0.0;
+			double bestInfoGain = -999.0;
+			List<Double> values = Lists.newArrayList(valueExPairsMap.keySet());
+			if(values.size() <= 1) {
+				return bestSplitThreshold;
+			}
+
+			List<ExamplePair> minValueExPairs = valueExPairsMap.get(values.get(0));
+			for(Double value : values) {
+				List<ExamplePair> valueExPairs = valueExPairsMap.get(value);
+				if(isPure(minValueExPairs) && isPure(valueExPairs) &&
+				   minValueExPairs.get(0).getClassLabel().equals(valueExPairs.get(0).getClassLabel())) {
+					continue;
+				}
+
+				double splitValue = (values.get(0) + value)/2.0;
+				double infoGain = getInfo(exPairs) - getSplitInfo(exPairs, feature, splitValue);
+				if(Double.compare(infoGain, bestInfoGain) > 0) {
+					bestInfoGain = infoGain;
+					bestSplitThreshold = splitValue;
+				}
+			}
+			return Double.valueOf(DECIMAL_FORMATTER.format(bestSplitThreshold));
+		}
+
+		private static double getSplitInfo(List<ExamplePair> exPairs, Feature feature, double splitValue)
+		{
+			double featureInfo = 0.0;
+			for(String operator : new String[] { "<", ">=", "?" }) {
+				List<ExamplePair> branchExPairs = filter(exPairs, feature, splitValue, operator);
+				featureInfo += (branchExPairs.size()/(double)exPairs.size())*getInfo(branchExPairs);
+			}
+			return featureInfo;
+		}
+
+		private static List<ExamplePair> filter(List<ExamplePair> exPairs, Feature feature, double splitValue,
+				String operator)
+		{
+			List<ExamplePair> filteredExPairs = Lists.newArrayList();
+			for(ExamplePair exPair : exPairs) {
+				double score = exPair.getAttributeMatchScore(feature);
+				if((operator.equals("<") && Double.compare(score, splitValue) < 0) ||
+				   (operator.equals(">=") && Double.compare(score, splitValue) >= 0) ||
+				   (operator.equals("?") && score < 0)) {
+					filteredExPairs.add(exPair);
+				}
+			}
+			return filteredExPairs;
+		}
+
+		private static double getInfo(List<ExamplePair> exPairs)
+		{
+			int matches = getMatches(exPairs);
+			return NumericSplitFinder.getInfo(matches, exPairs.size() - matches);
+		}
+
+		private static boolean isPure(List<ExamplePair> exPairs)
+		{
+			int matches = getMatches(exPairs);
+			return matches == 0 || matches == exPairs.size();
+		}
+
+		private static int getMatches(List<ExamplePair> exPairs)
+		{
+			int matches = 0;
+			for(ExamplePair exPair : exPairs) {
+				if(exPair.getClassLabel().equals(DecisionTreeClassLabel.MATCH)) {
+					++matches;
+				}
+			}
+			return matches;
+		}
+
+		private static DecisionTreeNode createNode(List<ExamplePair> exPairs, List<Feature> features,
+				Feature bestFeature, DecisionTreeClassLabel label)
+		{
+			DecisionTreeNode node = new DecisionTreeNode(exPairs, features);
+			if(bestFeature != null) {
+				node.setBestFeature(bestFeature);
+				node.setNodeType(DecisionTreeNodeType.FEATURE_NODE);
+			}
+			else {
+				node.setLabel(label);
+				node.setNodeType(DecisionTreeNodeType.CLASS_NODE);
+			}
+			return node;
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeClassLabel;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeLinkType;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNode;
+import walmartlabs.productmatching.autorulegenerator.model.DecisionTreeNodeType;
+import walmartlabs.productmatching.autorulegenerator.model.ExamplePair;
+import walmartlabs.productmatching.autorulegenerator.model.Feature;
+import walmartlabs.productmatching.autorulegenerator.model.Feature.DataType;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * @author excelsior
+ *
+ */
+public class HoeffdingTreeLearnerTest {
+	private Feature name = new Feature("name", DataType.STRING);
+	private Feature color = new Feature("color", DataType.STRING);
+	private Feature phone = new Feature("phone", DataType.STRING);
+
+	@Test
+	public void testLeafBeforeGracePeriod()
+	{
+		HoeffdingTreeLearner learner = new HoeffdingTreeLearner(Lists.newArrayList(color, name));
+		learner.learn(createExamplePairs(0, 150));
+
+		DecisionTreeNode root = learner.getRuleDecisionTree();
+		assertEquals(DecisionTreeNodeType.CLASS_NODE, root.getNodeType());
+		assertEquals(40, root.getMatches());
+		assertEquals(110, root.getMismatches());
+		assertEquals(DecisionTreeClassLabel.MISMATCH, root.getLabel());
+	}
+
+	@Test
+	public void testSplitOnSeparatingFeature()
+	{
+		HoeffdingTreeLearner learner = new HoeffdingTreeLearner(Lists.newArrayList(color, name));
+		// Mini-batches and single example pairs
+		learner.learn(createExamplePairs(0, 500));
+		for(ExamplePair exPair : createExamplePairs(500, 1000)) {
+			learner.learn(exPair);
+		}
+		assertEquals(1000, learner.getNumExamplePairs());
+
+		DecisionTreeNode root = learner.getRuleDecisionTree();
+		assertEquals(DecisionTreeNodeType.FEATURE_NODE, root.getNodeType());
+		assertEquals(name, root.getBestFeature());
+		assertEquals(1000, root.getNumExamples());
+
+		List<DecisionTreeNode> childNodes = root.getChildNodes();
+		assertEquals(2, childNodes.size());
+		DecisionTreeNode lessThanNode = childNodes.get(0);
+		DecisionTreeNode greaterThanNode = childNodes.get(1);
+		assertEquals(DecisionTreeLinkType.MATCH_LINK, lessThanNode.getParentLinkType());
+		assertEquals(0.6, lessThanNode.getParentFeatureLinkValue(), 0.0);
+		assertEquals(DecisionTreeNodeType.CLASS_NODE, lessThanNode.getNodeType());
+		assertEquals(DecisionTreeClassLabel.MISMATCH, lessThanNode.getLabel());
+		assertEquals(0, lessThanNode.getMatches());
+		assertEquals(Lists.newArrayList(color), lessThanNode.getFeatures());
+
+		assertEquals(DecisionTreeLinkType.MISMATCH_LINK, greaterThanNode.getParentLinkType());
+		assertEquals(DecisionTreeNodeType.CLASS_NODE, greaterThanNode.getNodeType());
+		assertEquals(DecisionTreeClassLabel.MATCH, greaterThanNode.getLabel());
+		assertEquals(0, greaterThanNode.getMismatches());
+		assertEquals(1000, lessThanNode.getNumExamples() + greaterThanNode.getNumExamples());
+	}
+
+	@Test
+	public void testTieThreshold()
+	{
+		// The phone scores are the name scores, so neither feature ever leads the other
+		HoeffdingTreeOptions options = new HoeffdingTreeOptions();
+		options.setTieThreshold(0.0);
+		HoeffdingTreeLearner learner = new HoeffdingTreeLearner(Lists.newArrayList(name, phone), options);
+		learner.learn(createTiedExamplePairs(0, 10000));
+		assertEquals(DecisionTreeNodeType.CLASS_NODE, learner.getRuleDecisionTree().getNodeType());
+
+		// The bound drops below the default tie threshold of 0.05 past 3224 example pairs, and the
+		// leaf is split on the first of the tied features at the next evaluation
+		learner = new HoeffdingTreeLearner(Lists.newArrayList(name, phone));
+		learner.learn(createTiedExamplePairs(0, 3200));
+		assertEquals(DecisionTreeNodeType.CLASS_NODE, learner.getRuleDecisionTree().getNodeType());
+		learner.learn(createTiedExamplePairs(3200, 3400));
+		DecisionTreeNode root = learner.getRuleDecisionTree();
+		assertEquals(DecisionTreeNodeType.FEATURE_NODE, root.getNodeType());
+		assertEquals(name, root.getBestFeature());
+		assertEquals(0.6, root.getChildNodes().get(0).getParentFeatureLinkValue(), 0.0);
+	}
+
+	@Test
+	public void testTiedLeafIsMismatch()
+	{
+		HoeffdingTreeLearner learner = new HoeffdingTreeLearner(Lists.newArrayList(color, name));
+		DecisionTreeNode root = learner.getRuleDecisionTree();
+		assertEquals(0, root.getNumExamples());
+		assertEquals(DecisionTreeClassLabel.MISMATCH, root.getLabel());
+
+		learner.learn(createTiedExamplePairs(55, 65));
+		root = learner.getRuleDecisionTree();
+		assertEquals(5, root.getMatches());
+		assertEquals(5, root.getMismatches());
+		assertEquals(DecisionTreeClassLabel.MISMATCH, root.getLabel());
+	}
+
+	@Test
+	public void testSecondLevelSplit()
+	{
+		HoeffdingTreeLearner learner = new HoeffdingTreeLearner(Lists.newArrayList(name, color));
+		// Matching pairs also need a color score of at least 0.3
+		Random random = new Random(3);
+		List<ExamplePair> examplePairs = Lists.newArrayList();
+		for(int i = 0; i < 20000; i++) {
+			Map<Feature, Double> scores = Maps.newHashMap();
+			scores.put(name, random.nextInt(100)/100.0);
+			scores.put(color, random.nextInt(100)/100.0);
+			boolean isMatch = scores.get(name) >= 0.6 && scores.get(color) >= 0.3;
+			examplePairs.add(new ExamplePair(null, null, isMatch ? DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH,
+					scores));
+		}
+		learner.learn(examplePairs);
+
+		DecisionTreeNode root = learner.getRuleDecisionTree();
+		assertEquals(name, root.getBestFeature());
+		DecisionTreeNode lessThanNode = root.getChildNodes().get(0);
+		DecisionTreeNode greaterThanNode = root.getChildNodes().get(1);
+		assertEquals(0.6, lessThanNode.getParentFeatureLinkValue(), 0.0);
+		assertEquals(DecisionTreeNodeType.CLASS_NODE, lessThanNode.getNodeType());
+		assertEquals(DecisionTreeClassLabel.MISMATCH, lessThanNode.getLabel());
+
+		assertEquals(DecisionTreeNodeType.FEATURE_NODE, greaterThanNode.getNodeType());
+		assertEquals(color, greaterThanNode.getBestFeature());
+		assertEquals(Lists.newArrayList(color), greaterThanNode.getFeatures());
+		DecisionTreeNode lowColorNode = greaterThanNode.getChildNodes().get(0);
+		DecisionTreeNode highColorNode = greaterThanNode.getChildNodes().get(1);
+		assertEquals(0.3, lowColorNode.getParentFeatureLinkValue(), 0.0);
+		assertEquals(DecisionTreeClassLabel.MISMATCH, lowColorNode.getLabel());
+		assertEquals(0, lowColorNode.getMatches());
+		assertEquals(DecisionTreeClassLabel.MATCH, highColorNode.getLabel());
+		assertEquals(0, highColorNode.getMismatches());
+		assertEquals(20000, lessThanNode.getNumExamples() + greaterThanNode.getNumExamples());
+	}
+
+	/**
+	 * Example pairs matching on a name score of at least 0.6, with a phone score equal to the
+	 * name score.
+	 */
+	private List<ExamplePair> createTiedExamplePairs(int from, int to)
+	{
+		List<ExamplePair> examplePairs = Lists.newArrayList();
+		for(ExamplePair exPair : createExamplePairs(from, to)) {
+			Map<Feature, Double> scores = Maps.newHashMap();
+			scores.put(name, exPair.getAttributeMatchScore(name));
+			scores.put(phone, exPair.getAttributeMatchScore(name));
+			examplePairs.add(new ExamplePair(null, null, exPair.getClassLabel(), scores));
+		}
+		return examplePairs;
+	}
+
+	/**
+	 * Example pairs matching on a name score of at least 0.6, with a color score unrelated to the
+	 * label.
+	 */
+	private List<ExamplePair> createExamplePairs(int from, int to)
+	{
+		List<ExamplePair> examplePairs = Lists.newArrayList();
+		for(int i = from; i < to; i++) {
+			double nameScore = (i % 100)/100.0;
+			double colorScore = ((i*37 + i/100) % 100)/100.0;
+			Map<Feature, Double> scores = Maps.newHashMap();
+			scores.put(name, nameScore);
+			scores.put(color, colorScore);
+			DecisionTreeClassLabel label = nameScore >= 0.6 ? DecisionTreeClassLabel.MATCH : DecisionTreeClassLabel.MISMATCH;
+			examplePairs.add(new ExamplePair(null, null, label, scores));
+		}
+		return examplePairs;
+	}
+}
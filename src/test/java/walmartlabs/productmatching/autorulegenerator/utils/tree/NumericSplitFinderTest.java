@@ -0,0 +1,60 @@
+package walmartlabs.productmatching.autorulegenerator.utils.tree;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author excelsior
+ *
+ */
+public class NumericSplitFinderTest {
+
+	@Test
+	public void testSeparableScores()
+	{
+		FeatureScoreHistogram histogram = new FeatureScoreHistogram(4);
+		histogram.add(0.1, false);
+		histogram.add(0.2, false);
+		histogram.add(0.8, true);
+		histogram.add(0.9, true);
+		
+		assertEquals(1.0, NumericSplitFinder.getInfo(histogram.getTotalMatches(), histogram.getTotalMismatches()), 1e-9);
+		
+		double splitValue = NumericSplitFinder.getBestSplitThreshold(histogram);
+		assertEquals(0.45, splitValue, 1e-9);
+		assertEquals(0.0, NumericSplitFinder.getSplitInfo(histogram, splitValue), 1e-9);
+		// Halfway to 0.8 and 0.9, the scores only seen with the other class label
+		assertEquals(2, NumericSplitFinder.getNumCandidateSplits(histogram));
+	}
+	
+	@Test
+	public void testRepeatedAndMissingScores()
+	{
+		FeatureScoreHistogram histogram = new FeatureScoreHistogram(2);
+		histogram.add(-1.0, true);
+		histogram.add(0.5, false);
+		histogram.add(0.5, true);
+		histogram.add(0.5, false);
+		
+		assertEquals(2, histogram.size());
+		assertEquals(1, histogram.getMissingMatches());
+		assertEquals(0, histogram.getMissingMismatches());
+		assertEquals(1, histogram.getDistinctValuesBelow(0.5));
+		assertEquals(1, histogram.getMatchesBelow(1));
+		assertEquals(0, histogram.getMismatchesBelow(1));
+		assertEquals(-0.25, NumericSplitFinder.getBestSplitThreshold(histogram), 1e-9);
+		assertEquals(1, NumericSplitFinder.getNumCandidateSplits(histogram));
+	}
+	
+	@Test
+	public void testSingleValueIsNotSplit()
+	{
+		FeatureScoreHistogram histogram = new FeatureScoreHistogram(2);
+		histogram.add(0.3, true);
+		histogram.add(0.3, false);
+		
+		assertEquals(0.0, NumericSplitFinder.getBestSplitThreshold(histogram), 1e-9);
+		assertEquals(0, NumericSplitFinder.getNumCandidateSplits(histogram));
+	}
+}